@@ -1,10 +1,13 @@
 package extraordinary;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 import extraordinary.content.DynamicNicheChannel;
 import extraordinary.helpers.HelperModules;
 import extraordinary.ideas.CreativeNotes;
+import extraordinary.ideas.DraftDedupIndex;
 import extraordinary.logic.AlphaBlueprint;
 import extraordinary.logic.AutoStyleSelector;
 import extraordinary.logic.ConceptVision;
@@ -13,9 +16,14 @@ import extraordinary.models.ContentRequest;
 import extraordinary.models.Niche;
 import extraordinary.models.Style;
 import extraordinary.models.VideoPlan;
+import extraordinary.render.farm.RenderFarm;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("farm")) { // render farm: worker / submit / status / cancel
+            RenderFarm.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         System.out.println("The Extordinaire");
 
         ConceptVision vision = new ConceptVision();
@@ -59,7 +67,9 @@ public class Main {
         // --- Output ---
         System.out.println("\n" + plan);
 
-        String saved = notes.saveDraftToFile(plan.toString());
-        if (saved != null) System.out.println("[Saved to] " + saved);
+        List<DraftDedupIndex.Match> similar = notes.findNearDuplicates(plan.toString());
+        if (!similar.isEmpty()) System.out.println("[Near-duplicate of] " + CreativeNotes.describe(similar.get(0)));
+        long saved = notes.saveDraftToJournal(plan.toString());
+        if (saved > 0) System.out.println("[Saved draft #" + saved + " to] " + CreativeNotes.JOURNAL_DIR.toAbsolutePath());
     }
 }
@@ -12,18 +12,51 @@ import extraordinary.logic.ScriptGenerator;
 import extraordinary.logic.AutoStyleSelector;
 import extraordinary.content.DynamicNicheChannel;
 import extraordinary.ideas.CreativeNotes;
+import extraordinary.ideas.DraftDedupIndex;
+import extraordinary.core.LayoutRule;
 
 import extraordinary.gui.preview.MasterPreviewWindow;
 import extraordinary.gui.preview.ClipPreviewWindow;
+import extraordinary.media.MediaProbeService;
+
+import extraordinary.render.CutdownExport;
+import extraordinary.render.CutdownPlanner;
+import extraordinary.render.EncoderSettings;
+import extraordinary.render.ExportManifest;
+import extraordinary.render.ExportMode;
+import extraordinary.render.FrameTarget;
+import extraordinary.render.HlsExport;
+import extraordinary.render.LayoutFit;
+import extraordinary.render.MultiTargetExport;
+import extraordinary.render.NarrationRemix;
+import extraordinary.render.OverlayMode;
+import extraordinary.render.ProxyMedia;
+import extraordinary.render.RenderClip;
+import extraordinary.render.RenderJob;
+import extraordinary.render.RenderJobService;
+import extraordinary.render.RenderResult;
+import extraordinary.render.SegmentCache;
+import extraordinary.render.SegmentExport;
+import extraordinary.render.SinglePassExport;
+import extraordinary.render.SubtitleTrack;
+import extraordinary.render.TargetSet;
+import extraordinary.render.Thumbnails;
+import extraordinary.render.farm.FarmJob;
+import extraordinary.render.farm.RenderSpool;
+import extraordinary.render.farm.SpoolSubmission;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.beans.property.*;
 import javafx.collections.*;
 import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.TextFieldTableCell;
 import javafx.scene.layout.*;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
@@ -54,6 +87,27 @@ public class App extends Application {
     private final ObjectProperty<TreeItem<SceneNode>> selectedNode = new SimpleObjectProperty<>();
     private final ListProperty<ClipItem> currentClips = new SimpleListProperty<>(FXCollections.observableArrayList());
 
+    // Background exports (progress/cancel shown next to the export button)
+    private final RenderJobService renderJobs = new RenderJobService(1, Platform::runLater);
+    private final DoubleProperty exportProgress = new SimpleDoubleProperty(0);
+    private final IntegerProperty exportsRunning = new SimpleIntegerProperty(0);
+    private final ObjectProperty<ExportMode> exportMode = new SimpleObjectProperty<>(ExportMode.CACHED);
+    private final ObjectProperty<TargetSet> targetSet = new SimpleObjectProperty<>(TargetSet.LANDSCAPE); // what export renders
+    private final ObjectProperty<OverlayMode> overlayMode = new SimpleObjectProperty<>(OverlayMode.DRAWTEXT);
+    private final ObjectProperty<FitMode> fitMode = new SimpleObjectProperty<>(FitMode.OFF); // trim clips to a layout window
+    private VideoPlan lastPlan; // last generated script; its segments go into the subtitle track
+    private SegmentCache segmentCache; // opened on first cached export
+    private ExportManifest exportManifest; // opened on first single-file export
+    private final ObjectProperty<RenderSpool> farmSpool = new SimpleObjectProperty<>(); // null = render in this JVM
+    private MediaProbeService mediaProbes; // opened on first use; clips are probed in the background when added
+    private ProxyMedia proxies; // low-res copies for the preview windows, built after the probe
+    private ThumbnailCache thumbnails; // filmstrips in the clip table, posters in the scene tree
+
+    // Thumbnail sizes (px high); strips show this many frames of the trimmed clip
+    private static final int STRIP_HEIGHT = 36;
+    private static final int STRIP_FRAMES = 5;
+    private static final int POSTER_HEIGHT = 28;
+
     // External preview windows
     private MasterPreviewWindow masterPreview;
     private ClipPreviewWindow clipPreview;
@@ -62,6 +116,18 @@ public class App extends Application {
     private enum SceneKind { ROOT, START, BODY, END, SUBSCENE }
     private enum SubTag { HOOK, INTERLUDE, FACT1, FACT2, CUSTOM }
 
+    /** Export length: clips as edited, or fitted to a LayoutRule window (see {@link LayoutFit}). */
+    private enum FitMode {
+        OFF("Full clips", null),
+        SHORTS("Fit 30–59s", LayoutRule.shortsPreset()),
+        VIDEO_2MIN("Fit 90–120s", LayoutRule.videoPreset2min());
+
+        final String label;
+        final LayoutRule rule;
+        FitMode(String label, LayoutRule rule) { this.label = label; this.rule = rule; }
+        @Override public String toString() { return label; }
+    }
+
     public static class SceneNode {
         private final SceneKind kind;
         private final SubTag tag;               // only for SUBSCENE
@@ -194,10 +260,14 @@ public class App extends Application {
                 String hook = vision.ideateHook(req);
                 String script = scripter.generate(req, hook);
                 VideoPlan plan = channel.assembleVideo(hook, script);
+                lastPlan = plan;
 
                 scriptText.set(plan.toString());
-                String saved = notes.saveDraftToFile(plan.toString());
-                status.set((saved != null) ? "Script generated. Saved to: " + saved : "Script generated.");
+                List<DraftDedupIndex.Match> similar = notes.findNearDuplicates(plan.toString()); // before it is indexed itself
+                long saved = notes.saveDraftToJournal(plan.toString());
+                String msg = (saved > 0) ? "Script generated. Saved draft #" + saved + " to: " + CreativeNotes.JOURNAL_DIR : "Script generated.";
+                if (!similar.isEmpty()) msg += " Near-duplicate of " + CreativeNotes.describe(similar.get(0)) + ".";
+                status.set(msg);
             } catch (Exception ex) {
                 status.set("Script generation failed: " + ex.getMessage());
             }
@@ -265,11 +335,31 @@ public class App extends Application {
         sceneTree.getSelectionModel().select(0);
         selectedNode.bind(sceneTree.getSelectionModel().selectedItemProperty());
 
-        // dark cell styling + color badges
+        // dark cell styling + color badges (+ poster of the scene's first clip)
+        ThumbnailCache thumbs = thumbnails();
         sceneTree.setCellFactory(tv -> new TreeCell<>() {
+            private final ThumbnailCache.View poster = (thumbs != null) ? thumbs.newView() : null;
+            // Fixed slot: the row keeps its size whether or not the poster has loaded yet.
+            private final StackPane posterSlot = (poster != null) ? new StackPane(poster) : null;
+
+            {
+                if (poster != null) {
+                    double w = Math.ceil(POSTER_HEIGHT * 16 / 9.0);
+                    poster.setFitWidth(w);
+                    posterSlot.setMinSize(w, POSTER_HEIGHT);
+                    posterSlot.setPrefSize(w, POSTER_HEIGHT);
+                    posterSlot.setMaxSize(w, POSTER_HEIGHT);
+                    // a load that finishes after this cell was laid out must still show up
+                    poster.imageProperty().addListener((obs, was, now) -> requestLayout());
+                }
+            }
+
             @Override protected void updateItem(SceneNode node, boolean empty) {
                 super.updateItem(node, empty);
-                if (empty || node == null) { setText(null); setGraphic(null); setStyle(""); return; }
+                if (empty || node == null) {
+                    if (poster != null) poster.show(null);
+                    setText(null); setGraphic(null); setStyle(""); return;
+                }
 
                 String color;
                 if (node.getKind() == SceneKind.START) color = "#33cc66";          // green
@@ -289,6 +379,13 @@ public class App extends Application {
 
                 Label lbl = new Label(node.getTitle());
                 HBox row = new HBox(8, dot, lbl);
+                row.setAlignment(Pos.CENTER_LEFT);
+                if (poster != null) {
+                    ClipItem first = node.getClips().isEmpty() ? null : node.getClips().get(0);
+                    poster.show(first == null ? null : new ThumbnailCache.Spec(
+                            first.getPath(), first.getInSec(), first.getOutSec(), 1, POSTER_HEIGHT));
+                    row.getChildren().add(1, posterSlot);
+                }
                 setGraphic(row);
                 setText(null);
 
@@ -378,6 +475,29 @@ public class App extends Application {
         table.setEditable(true);
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_ALL_COLUMNS);
 
+        // Filmstrip of the trimmed clip; cells load theirs only while visible
+        TableColumn<ClipItem, ThumbnailCache.Spec> stripCol = new TableColumn<>("Preview");
+        stripCol.setCellValueFactory(c -> {
+            ClipItem ci = c.getValue();
+            return Bindings.createObjectBinding(
+                    () -> new ThumbnailCache.Spec(ci.getPath(), ci.getInSec(), ci.getOutSec(), STRIP_FRAMES, STRIP_HEIGHT),
+                    ci.pathProperty(), ci.inSecProperty(), ci.outSecProperty());
+        });
+        stripCol.setCellFactory(col -> new TableCell<>() {
+            private final ThumbnailCache.View strip = (thumbs != null) ? thumbs.newView() : null;
+
+            @Override protected void updateItem(ThumbnailCache.Spec spec, boolean empty) {
+                super.updateItem(spec, empty);
+                setText(null);
+                if (strip == null) { setGraphic(null); return; }
+                strip.show(empty ? null : spec);
+                setGraphic(empty ? null : strip);
+            }
+        });
+        stripCol.setEditable(false);
+        stripCol.setSortable(false);
+        stripCol.setPrefWidth(STRIP_FRAMES * STRIP_HEIGHT * 16 / 9.0 + 12);
+
         TableColumn<ClipItem, String> nameCol = new TableColumn<>("Purpose");
         nameCol.setCellValueFactory(c -> c.getValue().labelProperty());
         nameCol.setCellFactory(TextFieldTableCell.forTableColumn());
@@ -398,7 +518,9 @@ public class App extends Application {
         overlayCol.setCellValueFactory(c -> c.getValue().overlayTextProperty());
         overlayCol.setCellFactory(TextFieldTableCell.forTableColumn());
 
-        table.getColumns().setAll(nameCol, fileCol, pathCol, inCol, outCol, overlayCol);
+        table.getColumns().setAll(stripCol, nameCol, fileCol, pathCol, inCol, outCol, overlayCol);
+        // the tree shows each scene's first clip: redraw it when the selected scene's clips change
+        currentClips.addListener((ListChangeListener<ClipItem>) ch -> sceneTree.refresh());
 
         selectedNode.addListener((obs, old, ti) -> {
             if (ti == null) { table.setItems(FXCollections.observableArrayList()); return; }
@@ -413,14 +535,22 @@ public class App extends Application {
         Button addClipBtn = new Button("Add Clip");
         addClipBtn.setOnAction(e -> {
             FileChooser fc = new FileChooser();
-            fc.setTitle("Choose a video/image clip");
+            fc.setTitle("Choose video/image clips");
             fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Media", "*.mp4", "*.mov", "*.mkv", "*.png", "*.jpg", "*.jpeg"));
-            File f = fc.showOpenDialog(stage);
-            if (f != null) {
-                ClipItem ci = new ClipItem(f.getAbsolutePath());
-                ci.setLabel("Clip");
-                currentClips.get().add(ci);
-                status.set("Added: " + f.getName());
+            List<File> files = fc.showOpenMultipleDialog(stage);
+            if (files != null && !files.isEmpty()) {
+                List<Path> paths = new ArrayList<>();
+                for (File f : files) {
+                    ClipItem ci = new ClipItem(f.getAbsolutePath());
+                    ci.setLabel("Clip");
+                    currentClips.get().add(ci);
+                    paths.add(f.toPath());
+                }
+                // previews and smart export then hit the probe cache; slow-to-scrub sources get a proxy
+                MediaProbeService probes = mediaProbes();
+                ProxyMedia proxyMedia = proxies();
+                if (probes != null) probes.prefetch(paths, proxyMedia == null ? null : proxyMedia::request);
+                status.set(files.size() == 1 ? "Added: " + files.get(0).getName() : "Added " + files.size() + " clips");
             }
         });
 
@@ -466,25 +596,85 @@ public class App extends Application {
         ToggleGroup orientGroup = new ToggleGroup();
         RadioButton rbLand = new RadioButton("Landscape"); rbLand.setToggleGroup(orientGroup); rbLand.setSelected(true);
         RadioButton rbPort = new RadioButton("Portrait");  rbPort.setToggleGroup(orientGroup);
-        rbLand.setOnAction(e -> orientation.set("LANDSCAPE"));
-        rbPort.setOnAction(e -> orientation.set("PORTRAIT"));
+        rbLand.setOnAction(e -> { orientation.set("LANDSCAPE"); targetSet.set(TargetSet.LANDSCAPE); });
+        rbPort.setOnAction(e -> { orientation.set("PORTRAIT"); targetSet.set(TargetSet.SHORTS); });
 
         Button exportBtn = new Button("Save Video (Render)");
         exportBtn.setOnAction(e -> renderExport(stage));
+        Button cutdownBtn = new Button("Save Cutdowns (15/30/60s)");
+        cutdownBtn.setOnAction(e -> renderCutdowns(stage));
+
+        ComboBox<ExportMode> exportModeBox = new ComboBox<>();
+        exportModeBox.getItems().addAll(ExportMode.values());
+        exportModeBox.valueProperty().bindBidirectional(exportMode);
+        exportModeBox.setButtonCell(new ListCell<>() {
+            @Override protected void updateItem(ExportMode it, boolean empty) {
+                super.updateItem(it, empty);
+                setText(empty || it == null ? null : it.toString());
+                setStyle("-fx-text-fill: white; -fx-background-color: #202020;");
+            }
+        });
+
+        ComboBox<TargetSet> targetSetBox = new ComboBox<>();
+        targetSetBox.getItems().addAll(TargetSet.values());
+        targetSetBox.valueProperty().bindBidirectional(targetSet);
+        targetSetBox.setButtonCell(new ListCell<>() {
+            @Override protected void updateItem(TargetSet it, boolean empty) {
+                super.updateItem(it, empty);
+                setText(empty || it == null ? null : it.toString());
+                setStyle("-fx-text-fill: white; -fx-background-color: #202020;");
+            }
+        });
+
+        ComboBox<OverlayMode> overlayModeBox = new ComboBox<>();
+        overlayModeBox.getItems().addAll(OverlayMode.values());
+        overlayModeBox.valueProperty().bindBidirectional(overlayMode);
+        overlayModeBox.setButtonCell(new ListCell<>() {
+            @Override protected void updateItem(OverlayMode it, boolean empty) {
+                super.updateItem(it, empty);
+                setText(empty || it == null ? null : it.toString());
+                setStyle("-fx-text-fill: white; -fx-background-color: #202020;");
+            }
+        });
+
+        Button farmBtn = new Button();
+        farmBtn.textProperty().bind(javafx.beans.binding.Bindings.createStringBinding(
+                () -> farmSpool.get() == null ? "Render: this PC" : "Render: farm (" + farmSpool.get().root().getFileName() + ")",
+                farmSpool));
+        farmBtn.setOnAction(e -> chooseFarmSpool(stage));
+
+        ComboBox<FitMode> fitModeBox = new ComboBox<>();
+        fitModeBox.getItems().addAll(FitMode.values());
+        fitModeBox.valueProperty().bindBidirectional(fitMode);
+        fitModeBox.setButtonCell(new ListCell<>() {
+            @Override protected void updateItem(FitMode it, boolean empty) {
+                super.updateItem(it, empty);
+                setText(empty || it == null ? null : it.toString());
+                setStyle("-fx-text-fill: white; -fx-background-color: #202020;");
+            }
+        });
+
+        ProgressBar exportBar = new ProgressBar();
+        exportBar.progressProperty().bind(exportProgress);
+        exportBar.visibleProperty().bind(exportsRunning.greaterThan(0));
+        Button cancelExportBtn = new Button("Cancel Export");
+        cancelExportBtn.disableProperty().bind(exportsRunning.isEqualTo(0));
+        cancelExportBtn.setOnAction(e -> renderJobs.active().forEach(RenderJobService.Handle::cancel));
 
         VBox timelineBox = new VBox(8,
                 new Label("Clips in Selected Node:"),
                 table,
                 new HBox(8, addClipBtn, removeClipBtn, duplicateClipBtn, moveUpBtn, moveDownBtn),
-                new HBox(12, new Label("Orientation:"), rbLand, rbPort),
-                exportBtn
+                new HBox(12, new Label("Orientation:"), rbLand, rbPort, new Label("Mode:"), exportModeBox),
+                new HBox(12, new Label("Targets:"), targetSetBox, new Label("Text:"), overlayModeBox, new Label("Length:"), fitModeBox),
+                new HBox(8, exportBtn, cutdownBtn, farmBtn, cancelExportBtn, exportBar)
         );
         timelineBox.setPadding(new Insets(10));
         timelineBox.setStyle("-fx-background-color: #161616; -fx-background-radius: 14; -fx-border-radius: 14; -fx-border-color: #2a2a2a;");
 
         // Wire preview buttons (external windows)
         masterPreviewBtn.setOnAction(e -> {
-            if (masterPreview == null) masterPreview = new MasterPreviewWindow();
+            if (masterPreview == null) masterPreview = new MasterPreviewWindow(mediaProbes(), proxies());
             boolean portrait = "PORTRAIT".equals(orientation.get());
             masterPreview.open(collectAllClipsInOrder(), portrait);
         });
@@ -492,7 +682,7 @@ public class App extends Application {
         clipPreviewBtn.setOnAction(e -> {
             ClipItem sel = table.getSelectionModel().getSelectedItem();
             if (sel != null) {
-                if (clipPreview == null) clipPreview = new ClipPreviewWindow();
+                if (clipPreview == null) clipPreview = new ClipPreviewWindow(mediaProbes(), proxies());
                 boolean portrait = "PORTRAIT".equals(orientation.get());
                 clipPreview.open(sel, portrait);
             } else {
@@ -526,6 +716,51 @@ public class App extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        renderJobs.close(); // stops any ffmpeg still running
+        if (mediaProbes != null) mediaProbes.close();
+        if (proxies != null) proxies.close();
+        if (thumbnails != null) thumbnails.close();
+    }
+
+    /** Probe cache, opened on first use; null if its directory cannot be created. */
+    private MediaProbeService mediaProbes() {
+        if (mediaProbes == null) {
+            try {
+                mediaProbes = MediaProbeService.openDefault();
+            } catch (IOException e) {
+                status.set("Media probe cache unavailable: " + e.getMessage());
+            }
+        }
+        return mediaProbes;
+    }
+
+    /** Proxy store, opened on first use; null if its directory cannot be created. */
+    private ProxyMedia proxies() {
+        if (proxies == null) {
+            try {
+                proxies = ProxyMedia.openDefault(Platform::runLater);
+            } catch (IOException e) {
+                status.set("Proxy cache unavailable: " + e.getMessage());
+            }
+        }
+        return proxies;
+    }
+
+    /** Thumbnail cache, opened on first use; null if its directory cannot be created. */
+    private ThumbnailCache thumbnails() {
+        if (thumbnails == null) {
+            try {
+                thumbnails = new ThumbnailCache(Thumbnails.openDefault(), mediaProbes(),
+                        ThumbnailCache.DEFAULT_MAX_PIXELS, 2);
+            } catch (IOException e) {
+                status.set("Thumbnail cache unavailable: " + e.getMessage());
+            }
+        }
+        return thumbnails;
+    }
+
     // ----------------- CSS & Helpers -----------------
 
     /** CSS for clean dark theme, including TreeView (scenes) and white table text. */
@@ -699,102 +934,218 @@ public class App extends Application {
                 return;
             }
 
-            Path workDir = Files.createTempDirectory("extord_export");
+            Path narration = narrationWav();
 
-            Path narration = TTSService.getLatestDummyWav();
-            if (narration == null || !Files.exists(narration)) {
-                narration = TTSService.generateDummyWav(scriptText.get());
+            TargetSet set = targetSet.get();
+            // Fitted: clips trimmed to the sections' allotments, so only shipped frames are encoded.
+            FitMode fit = fitMode.get();
+            LayoutFit.Plan fitted = (fit.rule != null)
+                    ? LayoutFit.compile(layoutSections(), fit.rule, set.targets().get(0).fps()) : null;
+            List<RenderClip> renderClips = (fitted != null) ? fitted.clips() : toRenderClips(clips);
+            if (renderClips.isEmpty()) {
+                status.set("Nothing left to export after fitting.");
+                return;
             }
 
-            boolean portrait = "PORTRAIT".equals(orientation.get());
-            int targetW = portrait ? 1080 : 1920;
-            int targetH = portrait ? 1920 : 1080;
-
-            List<String> filterParts = new ArrayList<>();
-            StringBuilder inputArgs = new StringBuilder();
-
-            int idx = 0;
-            for (ClipItem c : clips) {
-                inputArgs.append(" -ss ").append(c.getInSec())
-                        .append(" -to ").append(c.getOutSec() > 0 ? c.getOutSec() : 1e9)
-                        .append(" -i ").append(quote(c.getPath()));
-
-                String vLabel = "v" + idx;
-                String aLabel = "a" + idx;
-
-                String scalePad = String.format(Locale.US,
-                        "scale=w=%d:h=%d:force_original_aspect_ratio=decrease," +
-                                "pad=%d:%d:(ow-iw)/2:(oh-ih)/2",
-                        targetW, targetH, targetW, targetH);
-
-                String overlay = "";
-                if (c.getOverlayText() != null && !c.getOverlayText().isBlank()) {
-                    overlay = ",drawtext=text='" + c.getOverlayText().replace(":", "\\:").replace("'", "\\'")
-                            + "':x=(w-text_w)/2:y=h-200:fontsize=48:fontcolor=white:box=1:boxcolor=black@0.5:boxborderw=10";
+            if (exportMode.get() == ExportMode.HLS) {
+                Path dir = chooseDirectory(stage);
+                if (dir == null) { status.set("Export canceled."); return; }
+                for (FrameTarget t : set.targets()) {
+                    Path outDir = set.isMulti() ? dir.resolve(t.name()) : dir;
+                    submitExport("HLS " + outDir.getFileName(), new HlsExport(
+                            renderClips, narration, outDir, t, EncoderSettings.DEFAULT,
+                            HlsExport.DEFAULT_LADDER, fitted != null ? fitted.sectionStarts() : sceneStarts())
+                            .withProbes(mediaProbes()));
                 }
-
-                filterParts.add(String.format(Locale.US,
-                        "[%d:v]fps=30,%s%s[%s];[%d:a]anull[%s]",
-                        idx, scalePad, overlay, vLabel, idx, aLabel));
-                idx++;
+                return;
             }
+            Path outFile = chooseSavePath(stage, set.isMulti() ? "output.mp4" : "output_" + set.targets().get(0).name() + ".mp4");
+            if (outFile == null) { status.set("Export canceled."); return; }
 
-            StringBuilder videoStreams = new StringBuilder();
-            StringBuilder audioStreams = new StringBuilder();
-            for (int i = 0; i < clips.size(); i++) {
-                videoStreams.append("[").append("v").append(i).append("]");
-                audioStreams.append("[").append("a").append(i).append("]");
+            if (set.isMulti()) {
+                // One decode for every target; segment caching is per target, so it does not apply here.
+                submitExport(set + " " + outFile.getFileName(), MultiTargetExport.of(
+                        renderClips, narration, set, outFile, EncoderSettings.DEFAULT).withProbes(mediaProbes()));
+                return;
+            }
+            FrameTarget target = set.targets().get(0);
+            ExportMode mode = exportMode.get();
+            OverlayMode overlays = overlayMode.get();
+            SubtitleTrack track = SubtitleTrack.of(renderClips).withPlan(lastPlan);
+            java.util.function.Function<Path, RenderJob> full;
+            String recipe;
+            if (mode != ExportMode.SINGLE_PASS) {
+                if (segmentCache == null) segmentCache = SegmentCache.openDefault();
+                int parallelism = (mode == ExportMode.CACHED) ? 1 : SegmentExport.cores();
+                SegmentExport export = new SegmentExport(renderClips, narration, outFile,
+                        target, EncoderSettings.DEFAULT, segmentCache,
+                        parallelism, mode == ExportMode.SMART).withSubtitles(track, overlays).withProbes(mediaProbes());
+                full = export::withBedAudio;
+                recipe = (mode == ExportMode.SMART) ? "segments-smart" : "segments";
+            } else {
+                SinglePassExport export = new SinglePassExport(renderClips, narration, outFile,
+                        target, EncoderSettings.DEFAULT).withSubtitles(track, overlays).withProbes(mediaProbes());
+                full = export::withBedAudio;
+                recipe = "single-pass";
+            }
+            // Burnt-in captions shape the picture; a soft track is remuxed on its own (see NarrationRemix).
+            if (overlays == OverlayMode.BURN_IN) recipe += "|" + overlays.name() + "|" + SegmentCache.hash(track.toSrt());
+            else if (overlays == OverlayMode.SOFT) recipe += "|" + overlays.name();
+
+            RenderSpool spool = farmSpool.get();
+            if (spool != null && FarmJob.farmable(mode)) {
+                // Workers share the spool's file system; their segment cache is their own.
+                // The topic is the project for fair sharing between batches.
+                FarmJob job = FarmJob.of(outFile.getFileName().toString(), mode, renderClips, narration, outFile,
+                        target, EncoderSettings.DEFAULT, overlays, track);
+                if (!topic.get().isBlank()) job = job.withProject(topic.get().strip(), 1.0);
+                submitExport(outFile.getFileName() + " (farm)", new SpoolSubmission(spool, job));
+                return;
             }
 
-            // Concatenate processed clips
-            String concat = String.format(Locale.US, "%s%sconcat=n=%d:v=1:a=1[vcat][acat]",
-                    videoStreams, audioStreams, clips.size());
-
-            // narration input is last (index = number of clip inputs)
-            String narrationIn = String.format("[%d:a]", clips.size());
+            // Narration-only edits remux against the previous output instead of re-rendering.
+            if (exportManifest == null) exportManifest = ExportManifest.openDefault();
+            NarrationRemix remix = new NarrationRemix(
+                    renderClips, target, EncoderSettings.DEFAULT, recipe, narration, outFile, exportManifest, full);
+            if (overlays == OverlayMode.SOFT) remix = remix.withSoftSubtitles(track);
+            submitExport(outFile.getFileName().toString(), remix);
+        } catch (Exception ex) {
+            status.set("Export error: " + ex.getMessage());
+        }
+    }
 
-            // Build final filter graph with sidechain ducking
-            String filterComplex = String.join(";",
-                    String.join(";", filterParts),
-                    concat,
-                    narrationIn + "anull[nar]",
-                    "[acat][nar]sidechaincompress=threshold=0.05:ratio=8:attack=5:release=200:makeup=3[mix]"
-            );
+    /** Pick the render farm spool folder; cancelling the chooser switches back to local rendering. */
+    private void chooseFarmSpool(Stage stage) {
+        Path dir = chooseDirectory(stage, "Render Farm Spool Folder (cancel = render on this PC)");
+        if (dir == null) {
+            farmSpool.set(null);
+            status.set("Rendering on this PC.");
+            return;
+        }
+        try {
+            farmSpool.set(new RenderSpool(dir));
+            status.set("Exports go to the farm spool " + dir + " (start workers with: Main farm worker " + dir + ")");
+        } catch (IOException ex) {
+            status.set("Farm spool error: " + ex.getMessage());
+        }
+    }
 
-            Path outFile = chooseSavePath(stage, portrait ? "output_portrait.mp4" : "output_landscape.mp4");
+    /** 15/30/60 s cutdowns of the scene tree, per target of the chosen set; shared ranges encode once. */
+    private void renderCutdowns(Stage stage) {
+        try {
+            List<LayoutFit.Section> sections = layoutSections();
+            if (sections.isEmpty()) {
+                status.set("No clips in scenes. Add clips first.");
+                return;
+            }
+            Path narration = narrationWav();
+            Path outFile = chooseSavePath(stage, "cutdown.mp4");
             if (outFile == null) { status.set("Export canceled."); return; }
 
-            List<String> cmd = new ArrayList<>();
-            cmd.add("ffmpeg");
-            cmd.add("-y");
-            // clip inputs
-            if (!inputArgs.toString().isBlank()) {
-                for (String s : inputArgs.toString().trim().split(" ")) if (!s.isBlank()) cmd.add(s);
-            }
-            // narration input
-            cmd.add("-i"); cmd.add(narration.toAbsolutePath().toString());
-            // filters & maps
-            cmd.add("-filter_complex"); cmd.add(filterComplex);
-            cmd.add("-map"); cmd.add("[vcat]");
-            cmd.add("-map"); cmd.add("[mix]");
-            // enc params
-            cmd.add("-c:v"); cmd.add("libx264");
-            cmd.add("-pix_fmt"); cmd.add("yuv420p");
-            cmd.add("-crf"); cmd.add("18");
-            cmd.add("-preset"); cmd.add("veryfast");
-            cmd.add("-r"); cmd.add("30");
-            cmd.add("-c:a"); cmd.add("aac");
-            cmd.add("-b:a"); cmd.add("192k");
-            cmd.add(outFile.toAbsolutePath().toString());
-
-            status.set("Rendering… Ensure ffmpeg is installed and on PATH.");
-            int exit = runProcess(cmd);
-            status.set(exit == 0 ? "Export complete: " + outFile : "Export failed. Check ffmpeg output/paths.");
+            if (segmentCache == null) segmentCache = SegmentCache.openDefault();
+            TargetSet set = targetSet.get();
+            for (FrameTarget target : set.targets()) {
+                List<CutdownPlanner.Cut> cuts = CutdownPlanner.plan(sections, CutdownPlanner.standardVariants(), target.fps());
+                Path base = set.outputFor(outFile, target);
+                submitExport("cutdowns " + base.getFileName(), new CutdownExport(
+                        cuts, narration, CutdownExport.outputsFor(base, cuts),
+                        target, EncoderSettings.DEFAULT, segmentCache, SegmentExport.cores()));
+            }
         } catch (Exception ex) {
             status.set("Export error: " + ex.getMessage());
         }
     }
 
+    /** The narration WAV (generated from the script if there is none yet). */
+    private Path narrationWav() throws IOException {
+        Path narration = TTSService.getLatestDummyWav();
+        if (narration == null || !Files.exists(narration)) {
+            narration = TTSService.generateDummyWav(scriptText.get());
+        }
+        return narration;
+    }
+
+    /**
+     * The scene tree as LayoutEngine sections: Start = HOOK, body scenes (with their subscenes)
+     * = SECTION1.., End = END last. Scenes without clips are left out.
+     */
+    private List<LayoutFit.Section> layoutSections() {
+        List<LayoutFit.Section> body = new ArrayList<>();
+        LayoutFit.Section hook = null, end = null;
+        for (TreeItem<SceneNode> ti : scenesRoot.getChildren()) {
+            List<ClipItem> items = new ArrayList<>(ti.getValue().getClips());
+            for (TreeItem<SceneNode> sub : ti.getChildren()) {
+                if (sub.getValue().getKind() == SceneKind.SUBSCENE) items.addAll(sub.getValue().getClips());
+            }
+            List<RenderClip> clips = toRenderClips(items);
+            if (clips.isEmpty()) continue;
+            switch (ti.getValue().getKind()) {
+                case START -> hook = new LayoutFit.Section("HOOK", 2.0, clips);
+                case END   -> end = new LayoutFit.Section("END", 0.7, clips);
+                case BODY  -> body.add(new LayoutFit.Section("SECTION" + (body.size() + 1), 1.0, clips));
+                default    -> { }
+            }
+        }
+        List<LayoutFit.Section> out = new ArrayList<>();
+        if (hook != null) out.add(hook);
+        out.addAll(body);
+        if (end != null) out.add(end);
+        return out;
+    }
+
+    /** Runs an export in the background; the UI stays editable and shows progress/cancel. */
+    private void submitExport(String name, RenderJob job) {
+        status.set("Rendering " + name + "… Ensure ffmpeg is installed and on PATH.");
+        exportsRunning.set(exportsRunning.get() + 1);
+        exportProgress.set(ProgressBar.INDETERMINATE_PROGRESS);
+        RenderJobService.Handle h = renderJobs.submit(name, job, p -> {
+            exportProgress.set(p.fraction() >= 0 ? p.fraction() : ProgressBar.INDETERMINATE_PROGRESS);
+            status.set(name + ": " + p.describe());
+        });
+        h.result().thenAcceptAsync(r -> {
+            exportsRunning.set(exportsRunning.get() - 1);
+            if (r.status() == RenderResult.Status.FAILED) System.err.println(r.message());
+            String msg = r.message();
+            int nl = msg.indexOf('\n');
+            status.set(nl > 0 ? msg.substring(0, nl) + " (details in console)" : msg);
+        }, Platform::runLater);
+    }
+
+    /** Immutable copies of the clips for background jobs (FX properties stay on the FX thread). */
+    private static List<RenderClip> toRenderClips(List<ClipItem> clips) {
+        List<RenderClip> out = new ArrayList<>(clips.size());
+        for (ClipItem c : clips) {
+            if (c.getPath() == null || c.getPath().isBlank()) continue;
+            out.add(new RenderClip(c.getPath(), c.getInSec(), c.getOutSec(), c.getOverlayText()));
+        }
+        return out;
+    }
+
+    /**
+     * Output time at which each top-level scene starts, in export order (HLS segment cues).
+     * Stops at the first clip without an out point, since later starts are unknown.
+     */
+    private List<Double> sceneStarts() {
+        List<Double> starts = new ArrayList<>();
+        double t = 0;
+        for (TreeItem<SceneNode> ti : scenesRoot.getChildren()) {
+            SceneKind k = ti.getValue().getKind();
+            if (k != SceneKind.START && k != SceneKind.END && k != SceneKind.BODY) continue;
+            List<ClipItem> items = new ArrayList<>(ti.getValue().getClips());
+            for (TreeItem<SceneNode> sub : ti.getChildren()) {
+                if (sub.getValue().getKind() == SceneKind.SUBSCENE) items.addAll(sub.getValue().getClips());
+            }
+            List<RenderClip> clips = toRenderClips(items);
+            if (clips.isEmpty()) continue;
+            starts.add(t);
+            for (RenderClip c : clips) {
+                if (c.openEnded()) return starts;
+                t += c.durationSec();
+            }
+        }
+        return starts;
+    }
+
     private List<ClipItem> collectAllClipsInOrder() {
         List<ClipItem> all = new ArrayList<>();
         for (TreeItem<SceneNode> ti : scenesRoot.getChildren()) {
@@ -820,18 +1171,16 @@ public class App extends Application {
         return (f != null) ? f.toPath() : null;
     }
 
-    private static int runProcess(List<String> cmd) throws IOException, InterruptedException {
-        ProcessBuilder pb = new ProcessBuilder(cmd);
-        pb.redirectErrorStream(true);
-        Process p = pb.start();
-        try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
-            String line;
-            while ((line = r.readLine()) != null) System.out.println(line);
-        }
-        return p.waitFor();
+    private static Path chooseDirectory(Stage stage) {
+        return chooseDirectory(stage, "HLS Output Folder");
     }
 
-    private static String quote(String s) { return "\"" + s.replace("\"", "\\\"") + "\""; }
+    private static Path chooseDirectory(Stage stage, String title) {
+        DirectoryChooser dc = new DirectoryChooser();
+        dc.setTitle(title);
+        File f = dc.showDialog(stage);
+        return (f != null) ? f.toPath() : null;
+    }
 
     // --- Reuse helpers ---
     private static String baseName(String path) {
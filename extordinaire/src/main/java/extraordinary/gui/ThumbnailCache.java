@@ -0,0 +1,176 @@
+package extraordinary.gui;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import extraordinary.media.MediaInfo;
+import extraordinary.media.MediaProbeService;
+import extraordinary.render.StillImages;
+import extraordinary.render.Thumbnails;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+/**
+ * Clip thumbnails for table and tree cells: decoded {@link Image}s in memory over the
+ * {@link Thumbnails} files on disk.
+ *
+ * Notes:
+ *  - Memory tier: LRU bounded by total pixels (not entry count, so a few wide strips and many
+ *    small posters share one budget). FX thread only.
+ *  - Loads are requested by cells as they are shown (only visible cells exist), run on a small
+ *    pool newest-first, so scrolling fast through thousands of clips loads what is on screen now
+ *    instead of everything passed on the way. Cancelled requests are skipped when dequeued.
+ *  - Open-ended clips take their length from the probe cache.
+ */
+public final class ThumbnailCache implements AutoCloseable {
+
+    /** Default memory budget: ~64 MB of ARGB pixels. */
+    public static final long DEFAULT_MAX_PIXELS = 16L << 20;
+
+    /** What a cell shows: frames evenly spread over the trimmed clip, at a fixed height. */
+    public record Spec(String path, double inSec, double outSec, int frames, int height) {
+        public Spec {
+            if (frames < 1) throw new IllegalArgumentException("frames must be >= 1");
+        }
+    }
+
+    private final Thumbnails disk;
+    private final MediaProbeService probes; // null = open-ended clips show their in point
+    private final long maxPixels;
+    private final Map<Spec, Image> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long pixels;
+    private final ThreadPoolExecutor pool;
+
+    public ThumbnailCache(Thumbnails disk, MediaProbeService probes, long maxPixels, int threads) {
+        if (maxPixels <= 0) throw new IllegalArgumentException("maxPixels must be > 0");
+        this.disk = disk;
+        this.probes = probes;
+        this.maxPixels = maxPixels;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new NewestFirst(), r -> {
+            Thread t = new Thread(r, "thumbnails-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /** The image if it is in memory (FX thread). */
+    public Image cached(Spec spec) {
+        return memory.get(spec);
+    }
+
+    /**
+     * Hands the image to {@code onLoaded} on the FX thread: at once if in memory (returns null),
+     * else after a background load (returns its future; cancel it when the cell moves on).
+     * A failed load never calls back.
+     */
+    public Future<?> load(Spec spec, Consumer<Image> onLoaded) {
+        Image hit = memory.get(spec);
+        if (hit != null) {
+            onLoaded.accept(hit);
+            return null;
+        }
+        return pool.submit(() -> {
+            Image img = decode(spec);
+            if (img != null) Platform.runLater(() -> { put(spec, img); onLoaded.accept(img); });
+        });
+    }
+
+    private Image decode(Spec spec) {
+        try {
+            Path src = Path.of(spec.path());
+            boolean still = StillImages.isStill(spec.path());
+            int frames = still ? 1 : spec.frames();
+            double duration = -1;
+            if (!still && spec.outSec() <= 0 && probes != null) {
+                MediaInfo info = probes.probeNow(src);
+                if (info != null) duration = info.durationSec();
+            }
+            double[] times = Thumbnails.stripTimes(spec.inSec(), spec.outSec(), duration, frames);
+            Path file = disk.ensure(src, times, spec.height());
+            Image img = new Image(file.toUri().toString());
+            return img.isError() ? null : img;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null; // missing/unreadable source: the cell keeps its text only
+        }
+    }
+
+    private void put(Spec spec, Image img) {
+        Image old = memory.put(spec, img);
+        if (old != null) pixels -= pixelsOf(old);
+        pixels += pixelsOf(img);
+        Iterator<Image> it = memory.values().iterator(); // least recently used first
+        while (pixels > maxPixels && it.hasNext()) {
+            Image eldest = it.next();
+            if (eldest == img) continue;
+            pixels -= pixelsOf(eldest);
+            it.remove();
+        }
+    }
+
+    private static long pixelsOf(Image img) {
+        return (long) img.getWidth() * (long) img.getHeight();
+    }
+
+    /** A view for one cell; see {@link View}. */
+    public View newView() {
+        return new View();
+    }
+
+    /** Stops loading and trims the disk tier to its budget ({@link Thumbnails} also trims as it goes). */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        try {
+            disk.evict();
+        } catch (IOException ignored) {
+            // trimmed next time
+        }
+    }
+
+    /**
+     * Shows one spec at a time: switching specs (the cell was reused for another clip) cancels the
+     * pending load, and a late result for an earlier spec is dropped.
+     */
+    public final class View extends ImageView {
+        private Spec showing;
+        private Future<?> pending;
+
+        private View() {
+            setPreserveRatio(true);
+            setSmooth(true);
+        }
+
+        /** @param spec null (or no path) clears the view */
+        public void show(Spec spec) {
+            if (Objects.equals(spec, showing)) return;
+            if (pending != null) pending.cancel(false);
+            pending = null;
+            showing = spec;
+            setImage(null);
+            if (spec == null || spec.path() == null || spec.path().isBlank()) return;
+            setFitHeight(spec.height());
+            pending = load(spec, img -> { if (spec.equals(showing)) setImage(img); });
+        }
+    }
+
+    /** Work queue that hands out the most recently queued request first. */
+    private static final class NewestFirst extends LinkedBlockingDeque<Runnable> {
+        @Override public boolean offer(Runnable r) { return offerFirst(r); }
+    }
+}
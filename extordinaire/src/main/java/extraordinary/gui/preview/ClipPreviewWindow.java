@@ -4,6 +4,9 @@ import java.io.File;
 import java.text.DecimalFormat;
 
 import extraordinary.gui.App.ClipItem;
+import extraordinary.media.MediaInfo;
+import extraordinary.media.MediaProbeService;
+import extraordinary.render.ProxyMedia;
 import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -38,6 +41,7 @@ public class ClipPreviewWindow {
     private final Slider outSlider  = new Slider(0, 1, 1);
 
     private final Label titleLbl = new Label("");
+    private final Label infoLbl  = new Label(""); // codec/size/fps from the probe cache
     private final Label timeLbl  = new Label("00:00 / 00:00");
     private final Label inLbl    = new Label("In: 0.00s");
     private final Label outLbl   = new Label("Out: 0.00s");
@@ -51,6 +55,9 @@ public class ClipPreviewWindow {
 
     private boolean wasPlayingBeforeDrag = false;
     private ClipItem boundClip;
+    private final MediaProbeService probes; // null = learn the length from the player only
+    private final ProxyMedia proxies;       // null = always play the source
+    private String loadedPath;
 
     private static final DecimalFormat SEC = new DecimalFormat("0.00");
 
@@ -71,6 +78,19 @@ public class ClipPreviewWindow {
         }
     };
 
+    public ClipPreviewWindow() {
+        this(null, null);
+    }
+
+    /**
+     * @param probes  known clips get their length and format before the player is ready
+     * @param proxies plays a clip's proxy, when built, instead of the source (trims stay source times)
+     */
+    public ClipPreviewWindow(MediaProbeService probes, ProxyMedia proxies) {
+        this.probes = probes;
+        this.proxies = proxies;
+    }
+
     public void open(ClipItem clip, boolean portrait) {
         boundClip = clip;
         ensureStage(portrait);
@@ -189,7 +209,7 @@ public class ClipPreviewWindow {
         HBox applyRow = new HBox(10, applyBtn);
         applyRow.setAlignment(Pos.CENTER_LEFT);
 
-        VBox bottom = new VBox(10, titleLbl, transport, seekSlider, trimGrid, applyRow);
+        VBox bottom = new VBox(10, new VBox(2, titleLbl, infoLbl), transport, seekSlider, trimGrid, applyRow);
         bottom.setPadding(new Insets(10));
         bottom.setStyle("-fx-background-color: #141414; -fx-text-fill: white;");
 
@@ -201,6 +221,7 @@ public class ClipPreviewWindow {
         scene.getRoot().setStyle("-fx-base: #141414; -fx-control-inner-background: #141414; -fx-text-fill: white;");
         titleLbl.setStyle("-fx-text-fill: white; -fx-font-size: 14;");
         timeLbl.setStyle("-fx-text-fill: #d0d0d0;");
+        infoLbl.setStyle("-fx-text-fill: #9a9a9a;");
         inLbl.setStyle("-fx-text-fill: #d0d0d0;");
         outLbl.setStyle("-fx-text-fill: #d0d0d0;");
         applyBtn.setDefaultButton(true);
@@ -226,10 +247,18 @@ public class ClipPreviewWindow {
             showError("File not found:\n" + absolutePath);
             return;
         }
+        loadedPath = absolutePath;
+        infoLbl.setText("");
+        if (probes != null) {
+            // cache hit: ranges are set now, so open() can restore the trims right away
+            probes.cached(f.toPath()).ifPresentOrElse(this::applyProbe, () -> probes.probe(f.toPath())
+                    .thenAccept(info -> Platform.runLater(() -> { if (absolutePath.equals(loadedPath)) applyProbe(info); })));
+        }
 
+        File play = (proxies != null) ? proxies.previewPath(f.toPath()).toFile() : f;
         Media media;
         try {
-            media = new Media(f.toURI().toString());
+            media = new Media(play.toURI().toString());
         } catch (MediaException ex) {
             if (attempt == 0) {
                 Platform.runLater(() -> loadClip(absolutePath, 1));
@@ -252,10 +281,7 @@ public class ClipPreviewWindow {
 
         player.setOnReady(() -> {
             double total = player.getTotalDuration().toSeconds();
-
-            seekSlider.setMin(0); seekSlider.setMax(total);
-            inSlider.setMin(0);   inSlider.setMax(total);
-            outSlider.setMin(0);  outSlider.setMax(total);
+            setRange(total);
 
             if (boundClip != null && boundClip.getOutSec() <= 0) {
                 outSlider.setValue(total);
@@ -293,6 +319,36 @@ public class ClipPreviewWindow {
         });
     }
 
+    private void setRange(double total) {
+        seekSlider.setMin(0); seekSlider.setMax(total);
+        inSlider.setMin(0);   inSlider.setMax(total);
+        outSlider.setMin(0);  outSlider.setMax(total);
+    }
+
+    /** Show the probed format; use its length until the player reports its own. */
+    private void applyProbe(MediaInfo info) {
+        boolean proxy = proxies != null && loadedPath != null && proxies.find(new File(loadedPath).toPath()).isPresent();
+        infoLbl.setText(describe(info) + (proxy ? " · playing proxy" : ""));
+        boolean ready = player != null && player.getStatus() != MediaPlayer.Status.UNKNOWN;
+        if (!ready && info.durationSec() > 0) setRange(info.durationSec());
+    }
+
+    /** e.g. "h264 1920x1080, 29.97 fps, rotated 90° · aac 48000 Hz · 12.34s" */
+    private static String describe(MediaInfo info) {
+        StringBuilder sb = new StringBuilder();
+        MediaInfo.VideoStream v = info.video();
+        if (v != null) {
+            sb.append(v.codec()).append(' ').append(v.displayWidth()).append('x').append(v.displayHeight());
+            if (v.fps() > 0) sb.append(", ").append(SEC.format(v.fps())).append(" fps");
+            if (v.rotation() != 0) sb.append(", rotated ").append(v.rotation()).append('°');
+        } else {
+            sb.append("no video");
+        }
+        if (info.audio() != null) sb.append(" · ").append(info.audio().codec()).append(' ').append(info.audio().sampleRate()).append(" Hz");
+        if (info.durationSec() > 0) sb.append(" · ").append(SEC.format(info.durationSec())).append('s');
+        return sb.toString();
+    }
+
     private void jumpTo(double seconds) {
         if (player == null) return;
         player.pause();
@@ -2,9 +2,17 @@ package extraordinary.gui.preview;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import extraordinary.gui.App.ClipItem;
+import extraordinary.media.MediaInfo;
+import extraordinary.media.MediaProbeService;
+import extraordinary.render.ProxyMedia;
+import javafx.animation.AnimationTimer;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -21,6 +29,15 @@ import javafx.scene.media.MediaView;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
+/**
+ * Plays the project's clips in order. Only the current clip and the next {@link #LOOKAHEAD}
+ * have native players, pre-rolled to their in points so each cut starts without a gap; clips
+ * already played are disposed. Opening costs the same for 5 clips or 500.
+ *
+ * The slider scrubs the whole sequence through a {@link VirtualTimeline}: dragging across a
+ * cut makes the clip under the playhead current (creating its player and the next ones) and
+ * seeks inside it.
+ */
 public class MasterPreviewWindow {
 
     private Stage stage;
@@ -28,16 +45,58 @@ public class MasterPreviewWindow {
     private final StackPane mediaPane = new StackPane();
     private final HBox controlsBar = new HBox(8);
 
-    private final MediaView mediaView = new MediaView();
     private final Button playBtn = new Button("Play");
     private final Button pauseBtn = new Button("Pause");
     private final Button stopBtn = new Button("Stop");
     private final Slider scrub = new Slider(0, 1, 0);
     private final Label timeLbl = new Label("00:00 / 00:00");
 
-    private final List<MediaPlayer> playlist = new ArrayList<>();
+    /** Players kept ready after the current clip. */
+    private static final int LOOKAHEAD = 2;
+
+    /** A clip of the sequence; out = +inf plays to the end. */
+    private record Entry(String path, double in, double out) {}
+    /** A clip with an open player (current or pre-rolled). */
+    private record Live(MediaPlayer player, MediaView view) {}
+
+    /** Length assumed for an open-ended clip not probed yet (fixed once its player is ready). */
+    private static final double UNKNOWN_LENGTH_SEC = 5.0;
+
+    private final List<Entry> playlist = new ArrayList<>();
+    private final Map<Integer, Live> live = new HashMap<>(); // by playlist index
+    private VirtualTimeline timeline = new VirtualTimeline(new double[0], new double[0]);
     private int index = -1;
-    private boolean userScrubbing = false;
+    private boolean playing;               // the sequence should be playing (survives clip changes)
+    private boolean wasPlayingBeforeScrub;
+    private boolean syncing;               // scrub moved by playback, not by the user
+    private double pendingSeek = -1;       // global time to seek on the next frame, -1 = none
+    private double pendingLocal = -1;      // source time for a clip whose player is not ready yet
+
+    // at most one seek per frame while scrubbing, however fast the slider moves
+    private final AnimationTimer seekPump = new AnimationTimer() {
+        @Override public void handle(long now) {
+            if (pendingSeek < 0) return;
+            double t = pendingSeek;
+            pendingSeek = -1;
+            seekGlobal(t);
+        }
+    };
+
+    private final MediaProbeService probes; // null = no probe cache
+    private final ProxyMedia proxies;       // null = always play the sources
+
+    public MasterPreviewWindow() {
+        this(null, null);
+    }
+
+    /**
+     * @param probes  probed clips are checked and trimmed before their players are ready
+     * @param proxies clips with a finished proxy play it instead of the source
+     */
+    public MasterPreviewWindow(MediaProbeService probes, ProxyMedia proxies) {
+        this.probes = probes;
+        this.proxies = proxies;
+    }
 
     public void open(List<ClipItem> clips, boolean portrait) {
         if (stage == null) {
@@ -45,22 +104,25 @@ public class MasterPreviewWindow {
             stage.setTitle("Extordinaire — Master Preview");
 
             mediaPane.setStyle("-fx-background-color:#0f0f0f;");
-            mediaView.setPreserveRatio(true);
 
             controlsBar.setAlignment(Pos.CENTER_LEFT);
             controlsBar.setPadding(new Insets(10));
             controlsBar.setStyle("-fx-background-color:#161616; -fx-border-color:#2a2a2a; -fx-border-width:1 0 0 0;");
 
+            // The slider spans the whole sequence: pause while dragging, seek at most once per frame,
+            // land exactly on release and resume if it was playing.
             scrub.valueChangingProperty().addListener((o, was, is) -> {
-                userScrubbing = is;
-                MediaPlayer cur = current();
-                if (!is && cur != null) cur.seek(Duration.seconds(scrub.getValue()));
+                if (is) {
+                    wasPlayingBeforeScrub = playing;
+                    setPlaying(false);
+                } else {
+                    pendingSeek = -1;
+                    seekGlobal(scrub.getValue());
+                    if (wasPlayingBeforeScrub) setPlaying(true);
+                }
             });
             scrub.valueProperty().addListener((o, a, b) -> {
-                if (userScrubbing) {
-                    MediaPlayer cur = current();
-                    if (cur != null) cur.seek(Duration.seconds(b.doubleValue()));
-                }
+                if (!syncing) pendingSeek = b.doubleValue(); // drag or click on the track
             });
 
             HBox mainControls = new HBox(8, playBtn, pauseBtn, stopBtn, scrub, timeLbl);
@@ -77,21 +139,19 @@ public class MasterPreviewWindow {
             stage.setScene(scene);
 
             playBtn.setOnAction(e -> {
-                MediaPlayer cur = current();
-                if (cur == null) { startPlayback(); return; }
-                cur.play();
-            });
-            pauseBtn.setOnAction(e -> {
-                MediaPlayer cur = current();
-                if (cur != null) cur.pause();
+                if (current() == null) { startPlayback(); return; }
+                setPlaying(true);
             });
+            pauseBtn.setOnAction(e -> setPlaying(false));
             stopBtn.setOnAction(e -> stopAll());
+            stage.setOnHidden(e -> { stopAll(); seekPump.stop(); }); // native players are not kept for a closed window
         }
 
         configureSizeForOrientation(portrait);
         buildPlaylist(clips);
         stage.show();
         stage.toFront();
+        seekPump.start();
         if (!playlist.isEmpty()) startPlayback();
     }
 
@@ -103,91 +163,210 @@ public class MasterPreviewWindow {
             stage.setWidth(1100);
             stage.setHeight(680);
         }
-        mediaView.fitWidthProperty().bind(mediaPane.widthProperty());
-        mediaView.fitHeightProperty().bind(mediaPane.heightProperty());
     }
 
     private void buildPlaylist(List<ClipItem> clips) {
         stopAll();
         playlist.clear();
-        index = -1;
 
+        // No players yet: they are created for the clips around the playhead only (see slide()).
+        List<Double> lengths = new ArrayList<>();
         for (ClipItem c : clips) {
             String p = c.getPath();
             if (p == null || p.isBlank()) continue;
             if (isImage(p)) continue; // master preview only plays video
-            try {
-                Media m = new Media(new File(p).toURI().toString());
-                MediaPlayer mp = new MediaPlayer(m);
-                double in = Math.max(0, c.getInSec());
-                double out = (c.getOutSec() > 0) ? c.getOutSec() : Double.POSITIVE_INFINITY;
-                mp.setOnReady(() -> {
-                    double total = mp.getTotalDuration().toSeconds();
-                    mp.setStartTime(Duration.seconds(in));
-                    mp.setStopTime(Duration.seconds(Math.min(out, total)));
-                });
-                mp.setOnEndOfMedia(this::next);
-                playlist.add(mp);
-            } catch (Exception ignored) {}
+            double in = Math.max(0, c.getInSec());
+            double out = (c.getOutSec() > 0) ? c.getOutSec() : Double.POSITIVE_INFINITY;
+            playlist.add(new Entry(p, in, out));
+            lengths.add(lengthOf(p, in, out));
         }
+        double[] ins = new double[playlist.size()], lens = new double[playlist.size()];
+        for (int i = 0; i < ins.length; i++) { ins[i] = playlist.get(i).in(); lens[i] = lengths.get(i); }
+        timeline = new VirtualTimeline(ins, lens);
+        setScrubRange();
+    }
+
+    /** Trimmed length from the trims or the probe cache; a guess until the clip's player knows better. */
+    private double lengthOf(String path, double in, double out) {
+        double end = out;
+        if (Double.isInfinite(end) && probes != null) {
+            end = probes.cached(new File(path).toPath()).map(MediaInfo::durationSec).orElse(-1.0);
+        }
+        return end > in ? end - in : UNKNOWN_LENGTH_SEC;
     }
 
     private void startPlayback() {
+        playing = true;
         next(); // moves to index 0 and plays
     }
 
+    /** Advance to the next playable clip (its player is usually pre-rolled already). */
     private void next() {
         MediaPlayer prev = current();
-        if (prev != null) { prev.stop(); prev.dispose(); }
-
-        index++;
-        if (index >= playlist.size()) {
-            index = -1;
-            scrub.setValue(0);
-            timeLbl.setText("00:00 / 00:00");
-            mediaPane.getChildren().clear();
+        if (prev != null) prev.pause();
+
+        while (++index < playlist.size()) {
+            slide();
+            Live cur = live.get(index);
+            if (cur == null || cur.player().getStatus() == MediaPlayer.Status.HALTED) continue; // cannot play: skip it
+            mediaPane.getChildren().setAll(cur.view());
+            if (isReady(cur.player())) begin(cur.player()); // else begin() runs from its onReady
             return;
         }
+        stopAll();
+    }
+
+    /** Make clip {@code i} current (playing or not) without skipping, e.g. when scrubbed onto. */
+    private void show(int i) {
+        index = i;
+        slide();
+        Live cur = live.get(i);
+        if (cur == null) { mediaPane.getChildren().clear(); return; }
+        mediaPane.getChildren().setAll(cur.view());
+        if (isReady(cur.player())) begin(cur.player());
+    }
 
-        MediaPlayer cur = playlist.get(index);
-        mediaView.setMediaPlayer(cur);
-        mediaPane.getChildren().setAll(mediaView);
+    /** Move the playhead to global time {@code t}: switch clips if needed (preloading it), then seek in it. */
+    private void seekGlobal(double t) {
+        VirtualTimeline.Position pos = timeline.locate(t);
+        if (pos == null) return;
+        if (pos.index() != index) {
+            MediaPlayer prev = current();
+            if (prev != null) prev.pause();
+            show(pos.index());
+        }
+        MediaPlayer cur = current();
+        if (cur != null && isReady(cur)) cur.seek(Duration.seconds(pos.sourceSec()));
+        else pendingLocal = pos.sourceSec(); // applied by begin() once the player is ready
+        updateTimeLabel(t);
+    }
 
-        cur.setOnReady(() -> {
-            double min = cur.getStartTime().toSeconds();
-            double max = cur.getStopTime().toSeconds();
-            if (max <= 0 || max > cur.getTotalDuration().toSeconds()) {
-                max = cur.getTotalDuration().toSeconds();
+    private void setPlaying(boolean p) {
+        playing = p;
+        MediaPlayer cur = current();
+        if (cur == null || !isReady(cur)) return; // begin() picks the flag up
+        if (p) cur.play(); else cur.pause();
+    }
+
+    /** Keep players for [index, index + LOOKAHEAD]; dispose the rest (clips already played). */
+    private void slide() {
+        for (Iterator<Map.Entry<Integer, Live>> it = live.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Live> e = it.next();
+            if (e.getKey() < index || e.getKey() > index + LOOKAHEAD) {
+                dispose(e.getValue());
+                it.remove();
+            }
+        }
+        for (int i = index; i <= Math.min(index + LOOKAHEAD, playlist.size() - 1); i++) {
+            if (!live.containsKey(i)) live.put(i, open(i));
+        }
+    }
+
+    /**
+     * Create a player for clip {@code i} and pre-roll it: trimmed to its in/out points and seeked
+     * to the in point, so it starts without a gap when its turn comes. Null if it cannot play.
+     */
+    private Live open(int i) {
+        Entry e = playlist.get(i);
+        File src = new File(e.path());
+        Optional<MediaInfo> known = (probes != null) ? probes.cached(src.toPath()) : Optional.empty();
+        if (known.isPresent() && !known.get().hasVideo()) return null;
+        try {
+            File play = (proxies != null) ? proxies.previewPath(src.toPath()).toFile() : src;
+            MediaPlayer mp = new MediaPlayer(new Media(play.toURI().toString()));
+            if (known.isPresent() && known.get().durationSec() > 0) {
+                mp.setStartTime(Duration.seconds(e.in()));
+                mp.setStopTime(Duration.seconds(Math.min(e.out(), known.get().durationSec())));
             }
-            scrub.setMin(min);
-            scrub.setMax(max);
-            scrub.setValue(min);
-
-            cur.currentTimeProperty().addListener((o, a, b) -> {
-                if (!userScrubbing) {
-                    double t = b.toSeconds();
-                    if (t >= scrub.getMin() && t <= scrub.getMax()) scrub.setValue(t);
+            mp.setOnReady(() -> {
+                double total = mp.getTotalDuration().toSeconds();
+                double stop = Math.min(e.out(), total);
+                mp.setStartTime(Duration.seconds(e.in()));
+                mp.setStopTime(Duration.seconds(stop));
+                if (stop > e.in() && Math.abs(timeline.lengthOf(i) - (stop - e.in())) > 0.001) {
+                    timeline = timeline.withLength(i, stop - e.in()); // the guess or probe was off
+                    setScrubRange();
                 }
-                updateTimeLabel(cur.getCurrentTime(), cur.getTotalDuration());
+                mp.seek(Duration.seconds(e.in()));
+                if (current() == mp) begin(mp);
             });
+            mp.setOnEndOfMedia(() -> { if (current() == mp && playing) next(); });
+            mp.setOnError(() -> { if (current() == mp && playing) next(); });
+            mp.currentTimeProperty().addListener((o, a, b) -> {
+                if (current() != mp) return;
+                double global = timeline.globalOf(i, b.toSeconds());
+                if (!scrub.isValueChanging() && pendingSeek < 0) {
+                    syncing = true;
+                    scrub.setValue(global);
+                    syncing = false;
+                }
+                updateTimeLabel(global);
+            });
+
+            MediaView view = new MediaView(mp);
+            view.setPreserveRatio(true);
+            view.fitWidthProperty().bind(mediaPane.widthProperty());
+            view.fitHeightProperty().bind(mediaPane.heightProperty());
+            return new Live(mp, view);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /** The current clip's player is ready: apply a seek that waited for it, then play if playing. */
+    private void begin(MediaPlayer cur) {
+        if (pendingLocal >= 0) {
+            cur.seek(Duration.seconds(pendingLocal));
+            pendingLocal = -1;
+        }
+        if (playing) cur.play();
+    }
 
-            cur.play();
-        });
+    private static boolean isReady(MediaPlayer mp) {
+        MediaPlayer.Status st = mp.getStatus();
+        return st == MediaPlayer.Status.READY || st == MediaPlayer.Status.PAUSED
+                || st == MediaPlayer.Status.PLAYING || st == MediaPlayer.Status.STOPPED
+                || st == MediaPlayer.Status.STALLED;
     }
 
     private void stopAll() {
-        MediaPlayer cur = current();
-        if (cur != null) { try { cur.stop(); cur.dispose(); } catch (Exception ignored) {} }
-        for (MediaPlayer mp : playlist) { try { mp.dispose(); } catch (Exception ignored) {} }
-        playlist.clear();
+        playing = false;
+        pendingSeek = -1;
+        pendingLocal = -1;
+        releasePlayers();
+        resetControls();
+    }
+
+    private void releasePlayers() {
+        for (Live l : live.values()) dispose(l);
+        live.clear();
         index = -1;
+    }
+
+    private void resetControls() {
         mediaPane.getChildren().clear();
+        syncing = true;
         scrub.setValue(0);
-        timeLbl.setText("00:00 / 00:00");
+        syncing = false;
+        updateTimeLabel(0);
+    }
+
+    private void setScrubRange() {
+        syncing = true;
+        scrub.setMin(0);
+        scrub.setMax(Math.max(0.001, timeline.durationSec()));
+        syncing = false;
+    }
+
+    private static void dispose(Live l) {
+        if (l == null) return;
+        try { l.player().stop(); l.player().dispose(); } catch (Exception ignored) {}
+        l.view().setMediaPlayer(null);
     }
 
     private MediaPlayer current() {
-        return (index >= 0 && index < playlist.size()) ? playlist.get(index) : null;
+        Live l = live.get(index);
+        return l == null ? null : l.player();
     }
 
     private boolean isImage(String p) {
@@ -195,8 +374,9 @@ public class MasterPreviewWindow {
         return s.endsWith(".png") || s.endsWith(".jpg") || s.endsWith(".jpeg");
     }
 
-    private void updateTimeLabel(Duration cur, Duration tot) {
-        timeLbl.setText(format(cur) + " / " + format(tot));
+    /** Sequence time / sequence length. */
+    private void updateTimeLabel(double globalSec) {
+        timeLbl.setText(format(Duration.seconds(globalSec)) + " / " + format(Duration.seconds(timeline.durationSec())));
     }
 
     private String format(Duration d) {
@@ -0,0 +1,63 @@
+package extraordinary.gui.preview;
+
+import java.util.Arrays;
+
+/**
+ * The trimmed clips of a sequence laid end to end: global time <-> (clip, time in source).
+ * Immutable, UI-free.
+ *
+ * starts[i] is the global time clip i begins at (cumulative trimmed lengths); starts[n] is the
+ * total. Lookup is a binary search over starts, so scrubbing a long project costs O(log n) per
+ * frame.
+ */
+public final class VirtualTimeline {
+
+    /** Where a global time falls. sourceSec is in the clip's own timebase (in point + offset). */
+    public record Position(int index, double sourceSec) {}
+
+    private final double[] inSec;
+    private final double[] starts;
+
+    /**
+     * @param inSec     in point of each clip in its source
+     * @param lengthSec trimmed length of each clip (> 0)
+     */
+    public VirtualTimeline(double[] inSec, double[] lengthSec) {
+        if (inSec.length != lengthSec.length) throw new IllegalArgumentException("inSec and lengthSec differ in size");
+        this.inSec = inSec.clone();
+        this.starts = new double[lengthSec.length + 1];
+        for (int i = 0; i < lengthSec.length; i++) {
+            if (!(lengthSec[i] > 0)) throw new IllegalArgumentException("clip " + i + " has no length: " + lengthSec[i]);
+            starts[i + 1] = starts[i] + lengthSec[i];
+        }
+    }
+
+    public int size() { return inSec.length; }
+    public double durationSec() { return starts[starts.length - 1]; }
+    public double startOf(int i) { return starts[i]; }
+    public double lengthOf(int i) { return starts[i + 1] - starts[i]; }
+
+    /** Returns a copy with clip {@code i} re-measured (e.g. once its player knows the real length). */
+    public VirtualTimeline withLength(int i, double lengthSec) {
+        double[] len = new double[size()];
+        for (int k = 0; k < len.length; k++) len[k] = lengthOf(k);
+        len[i] = lengthSec;
+        return new VirtualTimeline(inSec, len);
+    }
+
+    /** The clip playing at global time {@code t} (clamped to the sequence); null if empty. */
+    public Position locate(double t) {
+        int n = size();
+        if (n == 0) return null;
+        double g = Math.max(0, Math.min(t, durationSec()));
+        int i = Arrays.binarySearch(starts, 0, n, g); // starts strictly increase (lengths > 0)
+        if (i < 0) i = -i - 2; // no clip starts at g: the one before the insertion point (g = total -> last clip)
+        return new Position(i, inSec[i] + (g - starts[i]));
+    }
+
+    /** Global time of {@code sourceSec} within clip {@code i}. */
+    public double globalOf(int i, double sourceSec) {
+        double local = Math.max(0, Math.min(sourceSec - inSec[i], lengthOf(i)));
+        return starts[i] + local;
+    }
+}
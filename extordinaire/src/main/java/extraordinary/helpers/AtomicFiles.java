@@ -0,0 +1,94 @@
+package extraordinary.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Crash-safe file replacement: write a temp sibling, force it, atomically rename it over the
+ * target, then force the directory entry. Readers see either the old file or the new one,
+ * never a torn write.
+ */
+public final class AtomicFiles {
+    private AtomicFiles() {}
+
+    /** Default scratch size for encoding text straight into a direct buffer. */
+    public static final int DIRECT_BUFFER_BYTES = 1 << 20;
+
+    /** Atomically replace {@code target} with UTF-8 text (one-off; allocates a scratch buffer). */
+    public static void writeString(Path target, CharSequence text) throws IOException {
+        int size = (int) Math.min(DIRECT_BUFFER_BYTES, Math.max(4096, text.length() * 2L));
+        ByteBuffer scratch = ByteBuffer.allocateDirect(size);
+        Path tmp = writeTemp(target, text, scratch);
+        commit(tmp, target);
+        fsyncDirectory(parentOf(target));
+    }
+
+    /**
+     * Encode text into a new temp sibling of {@code target} through a reusable direct buffer
+     * and force it to disk. The caller renames it with {@link #commit(Path, Path)}.
+     */
+    public static Path writeTemp(Path target, CharSequence text, ByteBuffer scratch) throws IOException {
+        Path dir = parentOf(target);
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "." + target.getFileName(), ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CharsetEncoder enc = StandardCharsets.UTF_8.newEncoder();
+            CharBuffer in = CharBuffer.wrap(text);
+            scratch.clear();
+            while (true) {
+                CoderResult r = enc.encode(in, scratch, true);
+                if (r.isError()) r.throwException();
+                if (r.isOverflow()) { drain(ch, scratch); continue; }
+                break;
+            }
+            while (enc.flush(scratch).isOverflow()) drain(ch, scratch);
+            drain(ch, scratch);
+            ch.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return tmp;
+    }
+
+    /** Rename a forced temp file over the target (atomic where the file system supports it). */
+    public static void commit(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Force a directory so a rename inside it survives a crash. Best effort: some platforms
+     * (Windows) cannot open directories; there the rename is already durable enough.
+     */
+    public static void fsyncDirectory(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+        }
+    }
+
+    static Path parentOf(Path p) {
+        Path parent = p.toAbsolutePath().getParent();
+        return parent != null ? parent : p.toAbsolutePath();
+    }
+
+    private static void drain(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+}
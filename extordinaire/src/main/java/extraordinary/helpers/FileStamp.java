@@ -0,0 +1,26 @@
+package extraordinary.helpers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * One version of a file: absolute normalized path, size and mtime. The caches of things derived
+ * from a source (segments, proxies, thumbnails, probes) key on it, so an edited or replaced file
+ * stops matching without its bytes being hashed.
+ */
+public record FileStamp(String path, long size, long mtimeMillis) {
+
+    /** The file as it is now. */
+    public static FileStamp of(Path file) throws IOException {
+        Path abs = file.toAbsolutePath().normalize();
+        BasicFileAttributes a = Files.readAttributes(abs, BasicFileAttributes.class);
+        return new FileStamp(abs.toString(), a.size(), a.lastModifiedTime().toMillis());
+    }
+
+    /** {@code path|size|mtime}, for cache keys and file names. */
+    public String id() {
+        return path + "|" + size + "|" + mtimeMillis;
+    }
+}
@@ -0,0 +1,148 @@
+package extraordinary.helpers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Background writer that turns bursts of JSON saves into a few durable batches.
+ *
+ * Notes:
+ *  - The object is serialized on the calling thread, so later mutations do not leak into the file.
+ *  - Saves to the same path inside one batch are coalesced: only the newest content is written,
+ *    and every caller's future completes when it is on disk.
+ *  - Each batch writes all temp files through one reused direct buffer, renames them into place,
+ *    then forces each touched directory once.
+ */
+public final class JsonBatchWriter implements Closeable {
+
+    private final Function<Object, String> serializer;
+    private final long lingerMillis;
+    private final ByteBuffer scratch = ByteBuffer.allocateDirect(AtomicFiles.DIRECT_BUFFER_BYTES);
+    private final Thread worker;
+
+    private LinkedHashMap<Path, Pending> pending = new LinkedHashMap<>();
+    private boolean closed;
+
+    private static final class Pending {
+        String json;
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>(1);
+    }
+
+    /** Uses {@link JsonUtil#toJson(Object)} and waits up to 2 ms for a burst to fill a batch. */
+    public JsonBatchWriter() {
+        this(JsonUtil::toJson, 2);
+    }
+
+    public JsonBatchWriter(Function<Object, String> serializer, long lingerMillis) {
+        if (lingerMillis < 0) throw new IllegalArgumentException("lingerMillis must be >= 0");
+        this.serializer = serializer;
+        this.lingerMillis = lingerMillis;
+        this.worker = new Thread(this::run, "json-batch-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queue a crash-safe save of {@code data} to {@code path}.
+     * @return completes once the file is renamed into place and durable
+     */
+    public CompletableFuture<Void> save(Path path, Object data) {
+        String json = serializer.apply(data);
+        Path key = path.toAbsolutePath().normalize();
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) throw new RejectedExecutionException("JsonBatchWriter is closed");
+            Pending p = pending.computeIfAbsent(key, k -> new Pending());
+            p.json = json;
+            p.waiters.add(f);
+            notifyAll();
+        }
+        return f;
+    }
+
+    /** Stops accepting saves, writes everything already queued and waits for the worker. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------- worker ----------
+
+    private void run() {
+        while (true) {
+            Map<Path, Pending> batch;
+            synchronized (this) {
+                try {
+                    while (pending.isEmpty() && !closed) wait();
+                    if (pending.isEmpty()) return;
+                    // let the rest of a burst arrive; each save() wakes us, so wait out the whole linger
+                    long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                    long rem;
+                    while (!closed && (rem = end - System.nanoTime()) > 0) TimeUnit.NANOSECONDS.timedWait(this, rem);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (pending.isEmpty()) return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(Map<Path, Pending> batch) {
+        Map<Path, Path> temps = new LinkedHashMap<>();
+        Set<Path> dirs = new LinkedHashSet<>();
+
+        for (Map.Entry<Path, Pending> e : batch.entrySet()) {
+            try {
+                temps.put(e.getKey(), AtomicFiles.writeTemp(e.getKey(), e.getValue().json, scratch));
+            } catch (IOException | RuntimeException ex) {
+                fail(e.getValue(), ex);
+            }
+        }
+        for (Map.Entry<Path, Path> t : temps.entrySet()) {
+            Path target = t.getKey();
+            try {
+                AtomicFiles.commit(t.getValue(), target);
+                dirs.add(AtomicFiles.parentOf(target));
+            } catch (IOException | RuntimeException ex) {
+                try { Files.deleteIfExists(t.getValue()); } catch (IOException ignored) {}
+                fail(batch.get(target), ex);
+                batch.remove(target);
+            }
+        }
+        for (Path dir : dirs) AtomicFiles.fsyncDirectory(dir);
+
+        for (Path target : temps.keySet()) {
+            Pending p = batch.get(target);
+            if (p != null) p.waiters.forEach(f -> f.complete(null));
+        }
+    }
+
+    private static void fail(Pending p, Throwable t) {
+        p.waiters.forEach(f -> f.completeExceptionally(t));
+    }
+}
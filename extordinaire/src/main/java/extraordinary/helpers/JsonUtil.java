@@ -3,17 +3,20 @@ package extraordinary.helpers;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import extraordinary.io.ModelAdapters;
+
 import java.io.IOException;
 import java.io.Reader;
-import java.io.Writer;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
 
 public class JsonUtil {
 
-    private static final Gson gson = new GsonBuilder()
+    /** Model and core types go through {@link ModelAdapters}, not Gson reflection. */
+    private static final Gson gson = ModelAdapters.register(new GsonBuilder())
             .setPrettyPrinting()
             .serializeNulls()
             .create();
@@ -25,12 +28,40 @@ public class JsonUtil {
         save(Paths.get(path), data);
     }
 
-    /** Save any object to a JSON file (Path). */
+    /** Save any object to a JSON file (Path); same as {@link #saveAtomic(Path, Object)}. */
     public static <T> void save(Path path, T data) throws IOException {
-        Files.createDirectories(path.getParent());
-        try (Writer writer = Files.newBufferedWriter(path)) {
-            gson.toJson(data, writer);
+        saveAtomic(path, data);
+    }
+
+    /**
+     * Crash-safe save: temp file in the same directory, fsync, atomic rename, fsync directory.
+     * After a crash the file holds either the previous or the new content, never a mix.
+     */
+    public static <T> void saveAtomic(Path path, T data) throws IOException {
+        AtomicFiles.writeString(path, gson.toJson(data));
+    }
+
+    public static <T> void saveAtomic(String path, T data) throws IOException {
+        saveAtomic(Paths.get(path), data);
+    }
+
+    /**
+     * Queue a crash-safe save on the shared {@link JsonBatchWriter}. Bursts of saves are written
+     * as one batch, and repeated saves of the same path before it is written collapse into one.
+     */
+    public static <T> CompletableFuture<Void> saveBatched(Path path, T data) {
+        return batchWriter().save(path, data);
+    }
+
+    private static JsonBatchWriter batchWriter;
+
+    private static synchronized JsonBatchWriter batchWriter() {
+        if (batchWriter == null) {
+            JsonBatchWriter w = new JsonBatchWriter();
+            Runtime.getRuntime().addShutdownHook(new Thread(w::close, "json-batch-writer-close"));
+            batchWriter = w;
         }
+        return batchWriter;
     }
 
     // ---------- LOAD (simple Class<T>) ----------
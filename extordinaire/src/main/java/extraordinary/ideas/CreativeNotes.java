@@ -1,16 +1,62 @@
 package extraordinary.ideas;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class CreativeNotes {
+    /** Journal location; shared by every CreativeNotes in the process. */
+    public static final Path JOURNAL_DIR = Paths.get("drafts", "journal");
+
+    /** Persisted full-text index over the journal. */
+    public static final Path SEARCH_INDEX = JOURNAL_DIR.resolve("drafts.search");
+
+    /** Legacy drafts/plan_*.txt already copied into the journal: "file name<TAB>journal id" per line. */
+    public static final Path LEGACY_IMPORTS = JOURNAL_DIR.resolve("legacy-imported.tsv");
+
+    private static final String LEGACY_HEADER = "# The Extordinaire Draft (";
+
+    private static DraftJournal journal;
+    private static DraftSearchIndex search;
+    private static final TreeMap<Long, String> unindexed = new TreeMap<>();
+    private static DraftDedupIndex dedup; // built lazily from drafts/ + journal on first lookup
+
     public void saveDraft(String text) {
         System.out.println("[Saved Draft]\n" + text);
     }
 
+    /**
+     * Append the draft to the segmented journal (one record, group-committed fsync).
+     * @return journal id of the draft, or -1 if saving failed
+     */
+    public long saveDraftToJournal(String text) {
+        try {
+            long id = journal().append(text);
+            synchronized (CreativeNotes.class) {
+                if (dedup != null) dedup.add(DraftDedupIndex.journalId(id), text);
+                if (search != null) indexInOrder(id, text);
+            }
+            return id;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /** Legacy one-file-per-draft save. Prefer {@link #saveDraftToJournal(String)}. */
     public String saveDraftToFile(String text) {
         try {
             Path dir = Paths.get("drafts");
@@ -20,10 +66,171 @@ public class CreativeNotes {
             Path file = dir.resolve("plan_" + timestamp + ".txt");
             String header = "# The Extordinaire Draft (" + timestamp + ")\n\n";
             Files.writeString(file, header + text, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            synchronized (CreativeNotes.class) {
+                if (dedup != null) dedup.add(file.getFileName().toString(), text);
+            }
             return file.toAbsolutePath().toString();
         } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
     }
+
+    /**
+     * Saved drafts that are near-copies of this text (e.g. only emoji/line order differ), best
+     * first. Call before saving, or the draft finds itself.
+     */
+    public List<DraftDedupIndex.Match> findNearDuplicates(String text) {
+        return dedupIndex().query(text);
+    }
+
+    /** A match for a message: "draft #12 (94% similar)" or "plan_....txt (94% similar)". */
+    public static String describe(DraftDedupIndex.Match m) {
+        String id = m.id().startsWith("journal:") ? "draft #" + m.id().substring("journal:".length()) : m.id();
+        return id + " (" + Math.round(m.similarity() * 100) + "% similar)";
+    }
+
+    /**
+     * Full-text search over journal drafts (see {@link DraftSearchIndex} for the syntax).
+     * Answered from the index alone; read a hit with {@code journal().read(id)}.
+     * @return matching journal ids, newest first
+     */
+    public List<Long> searchDrafts(String query, int limit) {
+        try {
+            return searchIndex().searchNewest(query, limit);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return List.of();
+        }
+    }
+
+    /** The process-wide draft journal, opened on first use and closed at JVM exit. */
+    public static synchronized DraftJournal journal() throws IOException {
+        if (journal == null) {
+            DraftJournal j = DraftJournal.open(JOURNAL_DIR);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try { j.close(); } catch (IOException ignored) {}
+            }, "draft-journal-close"));
+            journal = j;
+        }
+        return journal;
+    }
+
+    /** Loads the persisted index, indexes drafts appended since, and saves it again at JVM exit. */
+    private static synchronized DraftSearchIndex searchIndex() throws IOException {
+        if (search == null) {
+            DraftSearchIndex idx = null;
+            if (Files.exists(SEARCH_INDEX)) {
+                try {
+                    idx = DraftSearchIndex.load(SEARCH_INDEX);
+                } catch (IOException corrupt) {
+                    corrupt.printStackTrace(); // rebuilt from the journal below
+                }
+            }
+            if (idx == null) idx = new DraftSearchIndex();
+            importLegacyDrafts();
+            idx.catchUp(journal());
+            DraftSearchIndex loaded = idx;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try { loaded.save(SEARCH_INDEX); } catch (IOException ignored) {}
+            }, "draft-search-save"));
+            search = idx;
+        }
+        return search;
+    }
+
+    /**
+     * Copies drafts/plan_*.txt files not imported yet into the journal (oldest first, header
+     * dropped), so search also covers drafts saved before the journal existed. Each file is
+     * imported once: {@link #LEGACY_IMPORTS} records it with its journal id right after its
+     * (durable) append. A file appended but not recorded before a crash is found again by its
+     * text among the records after the last recorded id, and recorded without a second append.
+     * @return every imported file name -> journal id
+     */
+    private static synchronized Map<String, Long> importLegacyDrafts() throws IOException {
+        Map<String, Long> imported = new LinkedHashMap<>();
+        long lastRecorded = 0;
+        boolean torn = false; // last line cut short by a crash: start the next one on a new line
+        if (Files.exists(LEGACY_IMPORTS)) {
+            String all = Files.readString(LEGACY_IMPORTS, StandardCharsets.UTF_8);
+            torn = !all.isEmpty() && !all.endsWith("\n");
+            for (String line : all.split("\n")) {
+                int tab = line.indexOf('\t');
+                try {
+                    if (tab <= 0) throw new NumberFormatException("no tab");
+                    long id = Long.parseLong(line.substring(tab + 1).trim());
+                    imported.put(line.substring(0, tab), id);
+                    lastRecorded = Math.max(lastRecorded, id);
+                } catch (NumberFormatException bad) {
+                    if (!line.isBlank()) System.err.println("Skipping bad line in " + LEGACY_IMPORTS + ": " + line);
+                }
+            }
+        }
+        Path dir = Paths.get("drafts");
+        if (!Files.isDirectory(dir)) return imported;
+        List<Path> fresh;
+        try (Stream<Path> s = Files.list(dir)) {
+            fresh = s.filter(f -> {
+                String n = f.getFileName().toString();
+                return n.startsWith("plan_") && n.endsWith(".txt") && !imported.containsKey(n);
+            }).sorted().collect(Collectors.toList()); // names carry yyyyMMdd_HHmmss
+        }
+        if (fresh.isEmpty()) return imported;
+
+        DraftJournal j = journal();
+        Map<String, Long> unrecorded = new HashMap<>(); // text -> id of records after the last import
+        for (Iterator<DraftJournal.Draft> it = j.iterator(lastRecorded + 1); it.hasNext(); ) {
+            DraftJournal.Draft d = it.next();
+            unrecorded.putIfAbsent(d.text(), d.id());
+        }
+        Files.createDirectories(LEGACY_IMPORTS.getParent());
+        try (FileChannel out = FileChannel.open(LEGACY_IMPORTS, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (torn) out.write(ByteBuffer.wrap(new byte[] { '\n' }));
+            for (Path f : fresh) {
+                String text = stripLegacyHeader(Files.readString(f));
+                Long id = unrecorded.remove(text);
+                if (id == null) id = j.append(text);
+                String line = f.getFileName() + "\t" + id + "\n";
+                out.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+                out.force(false);
+                imported.put(f.getFileName().toString(), id);
+            }
+        }
+        if (search != null) search.catchUp(j);
+        return imported;
+    }
+
+    /** Drops the "# The Extordinaire Draft (...)" line and the blank line saveDraftToFile writes. */
+    static String stripLegacyHeader(String text) {
+        if (!text.startsWith(LEGACY_HEADER)) return text;
+        int nl = text.indexOf('\n');
+        if (nl < 0) return "";
+        String rest = text.substring(nl + 1);
+        return rest.startsWith("\n") ? rest.substring(1) : rest;
+    }
+
+    /** Concurrent saves can finish out of id order; postings need ids ascending. */
+    private static void indexInOrder(long id, String text) {
+        unindexed.put(id, text);
+        long next = search.maxDocId() + 1;
+        for (String t; (t = unindexed.remove(next)) != null; next++) search.add(next, t);
+        unindexed.headMap(next).clear();
+    }
+
+    private static synchronized DraftDedupIndex dedupIndex() {
+        if (dedup == null) {
+            DraftDedupIndex idx = new DraftDedupIndex();
+            try {
+                idx.indexDirectory(Paths.get("drafts"));
+                idx.indexJournal(journal());
+                // imported legacy drafts are already indexed under their file names
+                for (long id : importLegacyDrafts().values()) idx.remove(DraftDedupIndex.journalId(id));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            dedup = idx;
+        }
+        return dedup;
+    }
 }
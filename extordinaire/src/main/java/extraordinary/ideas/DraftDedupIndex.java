@@ -0,0 +1,350 @@
+package extraordinary.ideas;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * DraftDedupIndex
+ * ---------------
+ * Near-duplicate index for saved drafts (MinHash signatures bucketed with LSH).
+ *
+ * Pipeline per draft:
+ *  - normalize: drop the timestamped file header, strip emoji/punctuation, lowercase
+ *  - shingle  : word k-grams (k = 2 by default), so reordered lines still share most shingles
+ *  - minhash  : one 32-bit minimum per hash function -> signature
+ *  - lsh      : signature split into bands; drafts sharing any band hash become candidates
+ *
+ * Candidates are verified with the signature-estimated Jaccard similarity, so a query
+ * touches only a handful of buckets and never compares files pairwise.
+ *
+ * Notes:
+ *  - Thread-safe: inserts take a write lock only for the bucket update; signatures are
+ *    computed outside the lock, so {@link #indexDirectory(Path)} can shingle in parallel.
+ *  - Ids are caller-chosen (file name, journal id, ...). Re-adding an id replaces it.
+ */
+public final class DraftDedupIndex {
+
+    /** A similar draft and its estimated Jaccard similarity (0..1). */
+    public record Match(String id, double similarity) {}
+
+    /** Default: 128 hashes = 32 bands x 4 rows (candidate threshold ~0.42), verified at 0.70. */
+    public static final int DEFAULT_BANDS = 32;
+    public static final int DEFAULT_ROWS = 4;
+    public static final double DEFAULT_THRESHOLD = 0.70;
+    public static final int DEFAULT_SHINGLE = 2;
+
+    private final int bands;
+    private final int rows;
+    private final int shingleSize;
+    private final double threshold;
+    private final long[] seeds;
+
+    private final List<Map<Long, List<String>>> buckets;
+    private final Map<String, int[]> signatures = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public DraftDedupIndex() {
+        this(DEFAULT_BANDS, DEFAULT_ROWS, DEFAULT_SHINGLE, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param bands       number of LSH bands (> 0)
+     * @param rows        rows per band (> 0); signature length = bands * rows
+     * @param shingleSize words per shingle (> 0)
+     * @param threshold   minimum estimated similarity for a match (0..1)
+     */
+    public DraftDedupIndex(int bands, int rows, int shingleSize, double threshold) {
+        if (bands <= 0 || rows <= 0) throw new IllegalArgumentException("bands/rows must be > 0");
+        if (shingleSize <= 0) throw new IllegalArgumentException("shingleSize must be > 0");
+        if (threshold < 0 || threshold > 1) throw new IllegalArgumentException("threshold must be in 0..1");
+        this.bands = bands;
+        this.rows = rows;
+        this.shingleSize = shingleSize;
+        this.threshold = threshold;
+
+        // Fixed seeds keep signatures stable across runs (and across processes).
+        this.seeds = new long[bands * rows];
+        long s = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < seeds.length; i++) {
+            s += 0x9E3779B97F4A7C15L;
+            seeds[i] = mix64(s);
+        }
+
+        List<Map<Long, List<String>>> b = new ArrayList<>(bands);
+        for (int i = 0; i < bands; i++) b.add(new HashMap<>());
+        this.buckets = b;
+    }
+
+    // ===== Public API =====
+
+    /** Insert (or replace) a draft. */
+    public void add(String id, String text) {
+        insert(id, signature(text));
+    }
+
+    /** Drafts similar to the given text, best first. The text itself is not inserted. */
+    public List<Match> query(String text) {
+        return query(signature(text), null);
+    }
+
+    /** Drafts similar to an already indexed draft (excluding itself), best first. */
+    public List<Match> similarTo(String id) {
+        int[] sig = signatures.get(id);
+        if (sig == null) return Collections.emptyList();
+        return query(sig, id);
+    }
+
+    /** True if an indexed draft is at least {@code threshold}-similar to this text. */
+    public boolean hasNearDuplicate(String text) {
+        return !query(text).isEmpty();
+    }
+
+    /** Remove a draft; no-op if unknown. */
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            int[] old = signatures.remove(id);
+            if (old != null) unbucket(id, old);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() { return signatures.size(); }
+
+    /**
+     * Bulk-index every {@code plan_*.txt} in a directory. Reading and shingling run on the
+     * common fork-join pool; file names become ids.
+     * @return number of drafts indexed
+     */
+    public int indexDirectory(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return 0;
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.startsWith("plan_") && n.endsWith(".txt");
+            }).collect(Collectors.toList());
+        }
+        try {
+            files.parallelStream().forEach(p -> {
+                try {
+                    String text = Files.readString(p, StandardCharsets.UTF_8);
+                    insert(p.getFileName().toString(), signature(text));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return files.size();
+    }
+
+    /**
+     * Bulk-index every draft in a journal, signatures computed in parallel.
+     * Ids are {@link #journalId(long)}.
+     * @return number of drafts indexed
+     */
+    public int indexJournal(DraftJournal journal) {
+        final int batchSize = 4096; // bounded memory: read a batch, hash it in parallel, repeat
+        List<DraftJournal.Draft> batch = new ArrayList<>(batchSize);
+        int n = 0;
+        for (DraftJournal.Draft d : journal) {
+            batch.add(d);
+            if (batch.size() == batchSize) {
+                n += indexBatch(batch);
+                batch.clear();
+            }
+        }
+        return n + indexBatch(batch);
+    }
+
+    private int indexBatch(List<DraftJournal.Draft> batch) {
+        batch.parallelStream().forEach(d -> insert(journalId(d.id()), signature(d.text())));
+        return batch.size();
+    }
+
+    /** Index id used for a journal record. */
+    public static String journalId(long id) {
+        return "journal:" + id;
+    }
+
+    // ===== Signatures =====
+
+    /**
+     * MinHash signature of a draft (length = bands * rows). Exposed for callers that cache it.
+     * A draft without words (empty, emoji or punctuation only) gets all Integer.MAX_VALUE; such
+     * drafts are never indexed or matched.
+     */
+    public int[] signature(String text) {
+        long[] shingles = shingles(text);
+        int[] sig = new int[seeds.length];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        for (long sh : shingles) {
+            for (int i = 0; i < seeds.length; i++) {
+                int h = (int) (mix64(sh ^ seeds[i]) >>> 33);
+                if (h < sig[i]) sig[i] = h;
+            }
+        }
+        return sig;
+    }
+
+    /** True for the signature of a draft with no shingles. */
+    private static boolean isBlank(int[] sig) {
+        for (int h : sig) if (h != Integer.MAX_VALUE) return false;
+        return true;
+    }
+
+    /** Estimated Jaccard similarity of two signatures. */
+    public static double similarity(int[] a, int[] b) {
+        int n = Math.min(a.length, b.length);
+        if (n == 0) return 0;
+        int eq = 0;
+        for (int i = 0; i < n; i++) if (a[i] == b[i]) eq++;
+        return eq / (double) n;
+    }
+
+    private long[] shingles(String text) {
+        List<String> words = words(text);
+        Set<Long> out = new HashSet<>();
+        if (words.size() < shingleSize) {
+            if (!words.isEmpty()) out.add(hashWords(words, 0, words.size()));
+        } else {
+            for (int i = 0; i + shingleSize <= words.size(); i++) {
+                out.add(hashWords(words, i, i + shingleSize));
+            }
+        }
+        long[] arr = new long[out.size()];
+        int i = 0;
+        for (Long l : out) arr[i++] = l;
+        return arr;
+    }
+
+    /** Normalized words: header dropped, NFKC, lowercase, letters/digits only (emoji and dashes vanish). */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+        String norm = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder cur = new StringBuilder();
+        for (String line : norm.split("\n")) {
+            // saveDraftToFile prefixes "# The Extordinaire Draft (yyyyMMdd_HHmmss)"; ignore it.
+            if (line.startsWith("# the extordinaire draft")) continue;
+            for (int i = 0; i < line.length(); ) {
+                int cp = line.codePointAt(i);
+                i += Character.charCount(cp);
+                if (Character.isLetterOrDigit(cp)) {
+                    cur.appendCodePoint(cp);
+                } else if (cur.length() > 0) {
+                    words.add(cur.toString());
+                    cur.setLength(0);
+                }
+            }
+            if (cur.length() > 0) { words.add(cur.toString()); cur.setLength(0); }
+        }
+        return words;
+    }
+
+    private static long hashWords(List<String> words, int from, int to) {
+        long h = 0xcbf29ce484222325L; // FNV-1a 64
+        for (int i = from; i < to; i++) {
+            String w = words.get(i);
+            for (int j = 0; j < w.length(); j++) {
+                h ^= w.charAt(j);
+                h *= 0x100000001b3L;
+            }
+            h ^= ' ';
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** SplitMix64 finalizer: cheap, well-distributed 64-bit mixing. */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // ===== LSH buckets =====
+
+    private void insert(String id, int[] sig) {
+        if (isBlank(sig)) { // nothing to compare: would match every other blank draft at 1.0
+            remove(id);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int[] old = signatures.put(id, sig);
+            if (old != null) unbucket(id, old);
+            for (int b = 0; b < bands; b++) {
+                buckets.get(b).computeIfAbsent(bandKey(sig, b), k -> new ArrayList<>(2)).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unbucket(String id, int[] sig) {
+        for (int b = 0; b < bands; b++) {
+            long key = bandKey(sig, b);
+            List<String> ids = buckets.get(b).get(key);
+            if (ids == null) continue;
+            ids.remove(id);
+            if (ids.isEmpty()) buckets.get(b).remove(key);
+        }
+    }
+
+    private List<Match> query(int[] sig, String excludeId) {
+        if (isBlank(sig)) return List.of();
+        Set<String> candidates = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            for (int b = 0; b < bands; b++) {
+                List<String> ids = buckets.get(b).get(bandKey(sig, b));
+                if (ids != null) candidates.addAll(ids);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        candidates.remove(excludeId);
+
+        List<Match> out = new ArrayList<>();
+        for (String c : candidates) {
+            int[] other = signatures.get(c);
+            if (other == null) continue;
+            double sim = similarity(sig, other);
+            if (sim >= threshold) out.add(new Match(c, sim));
+        }
+        out.sort((x, y) -> Double.compare(y.similarity(), x.similarity()));
+        return out;
+    }
+
+    private long bandKey(int[] sig, int band) {
+        long h = band;
+        int base = band * rows;
+        for (int r = 0; r < rows; r++) {
+            h = mix64(h ^ (sig[base + r] & 0xffffffffL));
+        }
+        return h;
+    }
+}
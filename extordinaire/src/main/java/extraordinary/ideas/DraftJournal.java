@@ -0,0 +1,462 @@
+package extraordinary.ideas;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * DraftJournal
+ * ------------
+ * Append-only draft store: length-prefixed, checksummed records in rolling segment files.
+ *
+ * Layout (inside the journal directory):
+ *  - seg-<firstId>.log : records, back to back
+ *  - seg-<firstId>.idx : sidecar offset index, one 8-byte file offset per record
+ *
+ * Record format (big-endian):
+ *   int magic | int payloadLen | long id | long timestampMillis | int crc32 | payload (UTF-8)
+ * The CRC covers id, timestamp and payload. Ids are sequential and start at 1.
+ *
+ * Durability:
+ *  - {@link #append(String)} returns once the record is on disk. Concurrent appenders
+ *    share fsyncs (group commit): one caller forces the channel, everyone whose record
+ *    was written before that force returns without a second sync.
+ *    The sidecar index is forced with the log, so an acknowledged record can be found by id.
+ *  - On open, the tail of the newest segment is validated and a torn record is truncated.
+ *    The index is rebuilt for that segment, and for any older segment whose index does not
+ *    hold exactly one offset per record, so a crash between log and index is harmless.
+ *  - {@link #read(long)} falls back to scanning the segment if an index entry does not lead to
+ *    the record it names.
+ */
+public final class DraftJournal implements Closeable, Iterable<DraftJournal.Draft> {
+
+    /** One stored draft. */
+    public record Draft(long id, long timestampMillis, String text) {}
+
+    /** Default segment roll size: 64 MiB. */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAGIC = 0x45584452; // "EXDR"
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+    private static final int MAX_PAYLOAD = 64 * 1024 * 1024;
+
+    private final Path dir;
+    private final long maxSegmentBytes;
+
+    /** First ids of all segments, ascending. Last entry is the active segment. */
+    private final List<Long> segmentFirstIds = new ArrayList<>();
+
+    private final Object writeLock = new Object();
+    private FileChannel log;
+    private FileChannel idx;
+    private long nextId = 1;
+    private long lastWrittenId = 0;
+    private final AtomicLong durableId = new AtomicLong();
+    private final Object syncLock = new Object();
+    private boolean closed;
+
+    private DraftJournal(Path dir, long maxSegmentBytes) {
+        this.dir = dir;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /** Open (or create) a journal in the given directory with the default segment size. */
+    public static DraftJournal open(Path dir) throws IOException {
+        return open(dir, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public static DraftJournal open(Path dir, long maxSegmentBytes) throws IOException {
+        if (maxSegmentBytes < HEADER_BYTES) throw new IllegalArgumentException("maxSegmentBytes too small");
+        Files.createDirectories(dir);
+        DraftJournal j = new DraftJournal(dir, maxSegmentBytes);
+        j.recover();
+        return j;
+    }
+
+    // ===== Writing =====
+
+    /** Append a draft and wait until it is durable. Returns its id. */
+    public long append(String text) throws IOException {
+        return append(text, true);
+    }
+
+    /**
+     * Append a draft. With {@code durable=false} the record is written but not forced;
+     * call {@link #flush()} later to sync everything written so far in one go.
+     */
+    public long append(String text, boolean durable) throws IOException {
+        byte[] payload = (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+        if (payload.length > MAX_PAYLOAD) throw new IllegalArgumentException("draft too large: " + payload.length + " bytes");
+        long id;
+        synchronized (writeLock) {
+            ensureOpen();
+            long recordBytes = HEADER_BYTES + payload.length;
+            if (log.size() > 0 && log.size() + recordBytes > maxSegmentBytes) roll();
+
+            id = nextId;
+            long ts = System.currentTimeMillis();
+            long offset = log.size();
+
+            ByteBuffer rec = ByteBuffer.allocate((int) recordBytes);
+            rec.putInt(MAGIC).putInt(payload.length).putLong(id).putLong(ts)
+               .putInt(crc(id, ts, payload)).put(payload).flip();
+            writeFully(log, rec, offset);
+
+            ByteBuffer off = ByteBuffer.allocate(8).putLong(0, offset);
+            writeFully(idx, off, (id - activeFirstId()) * 8);
+
+            nextId = id + 1;
+            lastWrittenId = id;
+        }
+        if (durable) awaitDurable(id);
+        return id;
+    }
+
+    /** Force everything written so far to disk. */
+    public void flush() throws IOException {
+        long target;
+        synchronized (writeLock) { target = lastWrittenId; }
+        awaitDurable(target);
+    }
+
+    /** Group commit: whoever gets here first syncs for everyone written before the force. */
+    private void awaitDurable(long id) throws IOException {
+        while (durableId.get() < id) {
+            synchronized (syncLock) {
+                if (durableId.get() >= id) return;
+                FileChannel ch, ic;
+                long target;
+                synchronized (writeLock) {
+                    ensureOpen();
+                    ch = log;
+                    ic = idx;
+                    target = lastWrittenId;
+                }
+                try {
+                    ch.force(false);
+                    ic.force(false);
+                    markDurable(target);
+                } catch (ClosedChannelException rolled) {
+                    // The segment was rolled (and forced) underneath us; re-check.
+                }
+            }
+        }
+    }
+
+    private void markDurable(long id) {
+        durableId.accumulateAndGet(id, Math::max);
+    }
+
+    private void roll() throws IOException {
+        log.force(false);
+        idx.force(false);
+        markDurable(lastWrittenId);
+        log.close();
+        idx.close();
+        openSegment(nextId, true);
+    }
+
+    // ===== Reading =====
+
+    /** Highest id written so far (0 if empty). */
+    public long lastId() {
+        synchronized (writeLock) { return lastWrittenId; }
+    }
+
+    /** Random access by id via the offset index; scans the segment if the index is stale. */
+    public Optional<Draft> read(long id) throws IOException {
+        long first;
+        synchronized (writeLock) {
+            if (id < 1 || id > lastWrittenId) return Optional.empty();
+            first = segmentFor(id);
+        }
+        Draft d = readIndexed(first, id);
+        return Optional.of(d != null ? d : scanFor(first, id));
+    }
+
+    /** The record via the index; null if the index entry is missing or points elsewhere. */
+    private Draft readIndexed(long first, long id) throws IOException {
+        try (FileChannel ic = FileChannel.open(idxPath(first), StandardOpenOption.READ);
+             FileChannel lc = FileChannel.open(logPath(first), StandardOpenOption.READ)) {
+            ByteBuffer off = ByteBuffer.allocate(8);
+            readFully(ic, off, (id - first) * 8);
+            long offset = off.getLong(0);
+            if (offset < 0 || offset + HEADER_BYTES > lc.size()) return null;
+
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(lc, head, offset);
+            head.flip();
+            if (head.getInt() != MAGIC) return null;
+            int len = head.getInt();
+            if (len < 0 || len > MAX_PAYLOAD || offset + HEADER_BYTES + len > lc.size()) return null;
+            byte[] payload = new byte[len];
+            long recId = head.getLong();
+            long ts = head.getLong();
+            int crc = head.getInt();
+            readFully(lc, ByteBuffer.wrap(payload), offset + HEADER_BYTES);
+            if (recId != id || crc != crc(recId, ts, payload)) return null;
+            return new Draft(recId, ts, new String(payload, StandardCharsets.UTF_8));
+        } catch (NoSuchFileException | EOFException staleIndex) {
+            return null;
+        }
+    }
+
+    /** The record found by reading its segment from the start. */
+    private Draft scanFor(long first, long id) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath(first)), 1 << 16))) {
+            Draft d;
+            while ((d = readRecord(in)) != null) {
+                if (d.id() == id) return d;
+            }
+        }
+        throw new IOException("Record " + id + " not found in segment " + first);
+    }
+
+    /** All drafts, oldest first. */
+    @Override
+    public Iterator<Draft> iterator() {
+        return iterator(1);
+    }
+
+    /** Drafts with id >= fromId, oldest first. Reads sequentially; does not see later appends. */
+    public Iterator<Draft> iterator(long fromId) {
+        final List<Long> segs;
+        final long upTo;
+        synchronized (writeLock) {
+            segs = new ArrayList<>(segmentFirstIds);
+            upTo = lastWrittenId;
+        }
+        return new Iterator<>() {
+            private int seg = 0;
+            private DataInputStream in;
+            private Draft next;
+            private long lastReturned = 0;
+
+            @Override public boolean hasNext() {
+                if (next == null) next = advance();
+                return next != null;
+            }
+
+            @Override public Draft next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Draft d = next;
+                next = null;
+                return d;
+            }
+
+            private Draft advance() {
+                try {
+                    while (lastReturned < upTo) {
+                        if (in == null) {
+                            // skip whole segments that end before fromId
+                            while (seg + 1 < segs.size() && segs.get(seg + 1) <= fromId) seg++;
+                            if (seg >= segs.size()) return null;
+                            InputStream raw = Files.newInputStream(logPath(segs.get(seg)));
+                            in = new DataInputStream(new BufferedInputStream(raw, 1 << 16));
+                        }
+                        Draft d = readRecord(in);
+                        if (d == null) {
+                            in.close();
+                            in = null;
+                            seg++;
+                            continue;
+                        }
+                        lastReturned = d.id();
+                        if (d.id() >= fromId) return d;
+                    }
+                    if (in != null) { in.close(); in = null; }
+                    return null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) return;
+            closed = true;
+            if (idx != null) idx.force(false);
+            if (log != null) {
+                log.force(false);
+                markDurable(lastWrittenId);
+                log.close();
+            }
+            if (idx != null) idx.close();
+        }
+    }
+
+    // ===== Recovery / segments =====
+
+    private void recover() throws IOException {
+        List<Long> firsts;
+        try (Stream<Path> s = Files.list(dir)) {
+            firsts = s.map(p -> p.getFileName().toString())
+                      .filter(n -> n.startsWith("seg-") && n.endsWith(".log"))
+                      .map(n -> Long.parseLong(n.substring(4, n.length() - 4)))
+                      .sorted()
+                      .collect(Collectors.toList());
+        }
+        if (firsts.isEmpty()) {
+            openSegment(1, true);
+            return;
+        }
+        segmentFirstIds.addAll(firsts);
+
+        // Older segments are complete: their record count is the gap to the next segment's first id.
+        for (int i = 0; i + 1 < firsts.size(); i++) {
+            long f = firsts.get(i);
+            long expected = (firsts.get(i + 1) - f) * 8;
+            Path ip = idxPath(f);
+            if (!Files.exists(ip) || Files.size(ip) != expected) writeIndex(f, scan(f).offsets()).close();
+        }
+
+        // Validate the active segment and rebuild its index from the records that survive.
+        long first = firsts.get(firsts.size() - 1);
+        Scan tail = scan(first);
+        log = FileChannel.open(logPath(first), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (log.size() > tail.validEnd()) log.truncate(tail.validEnd());
+        log.force(false);
+        idx = writeIndex(first, tail.offsets());
+
+        nextId = first + tail.offsets().size();
+        lastWrittenId = nextId - 1;
+        durableId.set(lastWrittenId);
+    }
+
+    /** Offsets of the valid, consecutive records at the start of a segment, and where they end. */
+    private record Scan(List<Long> offsets, long validEnd) {}
+
+    private Scan scan(long first) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        long validEnd = 0;
+        long expectId = first;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath(first)), 1 << 16))) {
+            while (true) {
+                Draft d;
+                try {
+                    d = readRecord(in);
+                } catch (IOException torn) {
+                    break;
+                }
+                if (d == null || d.id() != expectId) break;
+                offsets.add(validEnd);
+                validEnd += HEADER_BYTES + d.text().getBytes(StandardCharsets.UTF_8).length;
+                expectId++;
+            }
+        }
+        return new Scan(offsets, validEnd);
+    }
+
+    /** Rewrite a segment's index (forced); returns its open channel. */
+    private FileChannel writeIndex(long first, List<Long> offsets) throws IOException {
+        FileChannel ch = FileChannel.open(idxPath(first), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer ib = ByteBuffer.allocate(offsets.size() * 8);
+            for (long o : offsets) ib.putLong(o);
+            ib.flip();
+            writeFully(ch, ib, 0);
+            ch.force(false);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        return ch;
+    }
+
+    private void openSegment(long firstId, boolean create) throws IOException {
+        StandardOpenOption[] opts = create
+                ? new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+        log = FileChannel.open(logPath(firstId), opts);
+        idx = FileChannel.open(idxPath(firstId), opts);
+        if (segmentFirstIds.isEmpty() || segmentFirstIds.get(segmentFirstIds.size() - 1) != firstId) {
+            segmentFirstIds.add(firstId);
+        }
+    }
+
+    private long activeFirstId() {
+        return segmentFirstIds.get(segmentFirstIds.size() - 1);
+    }
+
+    private long segmentFor(long id) {
+        int lo = 0, hi = segmentFirstIds.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segmentFirstIds.get(mid) <= id) lo = mid; else hi = mid - 1;
+        }
+        return segmentFirstIds.get(lo);
+    }
+
+    private Path logPath(long firstId) { return dir.resolve(String.format("seg-%020d.log", firstId)); }
+    private Path idxPath(long firstId) { return dir.resolve(String.format("seg-%020d.idx", firstId)); }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("DraftJournal is closed: " + dir);
+    }
+
+    // ===== Record IO =====
+
+    /** Reads one record; null on clean EOF; IOException on a torn or corrupt record. */
+    private static Draft readRecord(DataInputStream in) throws IOException {
+        int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException eof) {
+            return null;
+        }
+        if (magic != MAGIC) throw new IOException("Bad record magic");
+        int len = in.readInt();
+        if (len < 0 || len > MAX_PAYLOAD) throw new IOException("Bad record length " + len);
+        long id = in.readLong();
+        long ts = in.readLong();
+        int crc = in.readInt();
+        byte[] payload = new byte[len];
+        in.readFully(payload);
+        if (crc != crc(id, ts, payload)) throw new IOException("Checksum mismatch at id " + id);
+        return new Draft(id, ts, new String(payload, StandardCharsets.UTF_8));
+    }
+
+    private static int crc(long id, long ts, byte[] payload) {
+        CRC32 c = new CRC32();
+        c.update(ByteBuffer.allocate(16).putLong(id).putLong(ts).array());
+        c.update(payload);
+        return (int) c.getValue();
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) position += ch.write(buf, position);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position);
+            if (n < 0) throw new EOFException("Unexpected end of journal file");
+            position += n;
+        }
+    }
+}
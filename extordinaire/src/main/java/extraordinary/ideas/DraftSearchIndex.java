@@ -0,0 +1,609 @@
+package extraordinary.ideas;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * DraftSearchIndex
+ * ----------------
+ * Embedded inverted index over drafts, keyed by journal id.
+ *
+ * Storage:
+ *  - One compressed postings list per term: for each doc, varint(docId delta), varint(freq),
+ *    then freq varint position deltas. Lists are append-only, so docs must arrive in
+ *    increasing id order (journal ids do).
+ *  - {@link #save(Path)} / {@link #load(Path)} persist the whole index in one binary file.
+ *
+ * Query syntax (see {@link #search(String)}):
+ *   creatine hook            both terms (implicit AND)
+ *   creatine OR protein      either term
+ *   creatine -fitness        exclude (also: NOT fitness)
+ *   "prompt structure"       phrase
+ *   niche:fitness            fielded term (fields: {@link DraftTokenizer#FIELDS})
+ *   template:"SC-01"         fielded phrase
+ *   (a OR b) c               grouping
+ *
+ * Queries are answered from postings alone; no draft file is opened.
+ */
+public final class DraftSearchIndex {
+
+    private static final int MAGIC = 0x45585349; // "EXSI"
+    private static final int VERSION = 1;
+
+    private final Map<String, Postings> terms = new HashMap<>();
+    private long[] docs = new long[64];
+    private int docCount = 0;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // ===== Indexing =====
+
+    /**
+     * Index a draft. Ids must be increasing; an id at or below {@link #maxDocId()} is ignored
+     * (already indexed).
+     * @return true if the draft was added
+     */
+    public boolean add(long id, String text) {
+        if (id <= 0) throw new IllegalArgumentException("id must be > 0");
+        // tokenize outside the lock
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        for (DraftTokenizer.Token t : DraftTokenizer.tokenize(text)) {
+            positions.computeIfAbsent(t.term(), k -> new ArrayList<>(2)).add(t.position());
+        }
+        lock.writeLock().lock();
+        try {
+            if (id <= maxDocIdUnlocked()) return false;
+            for (Map.Entry<String, List<Integer>> e : positions.entrySet()) {
+                terms.computeIfAbsent(e.getKey(), k -> new Postings()).add(id, e.getValue());
+            }
+            if (docCount == docs.length) docs = Arrays.copyOf(docs, docCount * 2);
+            docs[docCount++] = id;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Catch up with a journal: index every record after {@link #maxDocId()}. */
+    public int catchUp(DraftJournal journal) {
+        int n = 0;
+        Iterator<DraftJournal.Draft> it = journal.iterator(maxDocId() + 1);
+        while (it.hasNext()) {
+            DraftJournal.Draft d = it.next();
+            if (add(d.id(), d.text())) n++;
+        }
+        return n;
+    }
+
+    public long maxDocId() {
+        lock.readLock().lock();
+        try { return maxDocIdUnlocked(); } finally { lock.readLock().unlock(); }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try { return docCount; } finally { lock.readLock().unlock(); }
+    }
+
+    private long maxDocIdUnlocked() {
+        return docCount == 0 ? 0 : docs[docCount - 1];
+    }
+
+    // ===== Querying =====
+
+    /** Matching journal ids, ascending. Throws IllegalArgumentException on a malformed query. */
+    public long[] search(String query) {
+        Node root = new Parser(query).parse();
+        lock.readLock().lock();
+        try {
+            return root.eval(this);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Matching ids, newest first, at most {@code limit}. */
+    public List<Long> searchNewest(String query, int limit) {
+        long[] hits = search(query);
+        List<Long> out = new ArrayList<>(Math.min(limit, hits.length));
+        for (int i = hits.length - 1; i >= 0 && out.size() < limit; i--) out.add(hits[i]);
+        return out;
+    }
+
+    private long[] termDocs(String term) {
+        Postings p = terms.get(term);
+        if (p == null) return new long[0];
+        long[] out = new long[p.docCount];
+        Postings.Cursor c = p.cursor();
+        for (int i = 0; c.nextDoc(); i++) out[i] = c.doc;
+        return out;
+    }
+
+    private long[] phraseDocs(List<String> phrase) {
+        if (phrase.isEmpty()) return new long[0];
+        if (phrase.size() == 1) return termDocs(phrase.get(0));
+        Postings.Cursor[] cs = new Postings.Cursor[phrase.size()];
+        for (int i = 0; i < cs.length; i++) {
+            Postings p = terms.get(phrase.get(i));
+            if (p == null) return new long[0];
+            cs[i] = p.cursor();
+        }
+        LongList out = new LongList();
+        // leapfrog on docs, then check positions
+        if (!cs[0].nextDoc()) return out.toArray();
+        long target = cs[0].doc;
+        outer:
+        while (true) {
+            for (Postings.Cursor c : cs) {
+                if (!c.advance(target)) break outer;
+                if (c.doc > target) { target = c.doc; continue outer; }
+            }
+            if (positionsMatch(cs)) out.add(target);
+            if (!cs[0].nextDoc()) break;
+            target = cs[0].doc;
+        }
+        return out.toArray();
+    }
+
+    private static boolean positionsMatch(Postings.Cursor[] cs) {
+        int[] first = cs[0].positions();
+        for (int start : first) {
+            boolean ok = true;
+            for (int k = 1; k < cs.length && ok; k++) {
+                ok = Arrays.binarySearch(cs[k].positions(), start + k) >= 0;
+            }
+            if (ok) return true;
+        }
+        return false;
+    }
+
+    private long[] allDocs() {
+        return Arrays.copyOf(docs, docCount);
+    }
+
+    // ===== Persistence =====
+
+    /** Write the index to a file (via a temp file + rename, so a crash never leaves half an index). */
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(docCount);
+            long prev = 0;
+            for (int i = 0; i < docCount; i++) {
+                out.writeLong(docs[i] - prev);
+                prev = docs[i];
+            }
+            out.writeInt(terms.size());
+            for (Map.Entry<String, Postings> e : terms.entrySet()) {
+                byte[] t = e.getKey().getBytes(StandardCharsets.UTF_8);
+                Postings p = e.getValue();
+                out.writeShort(t.length);
+                out.write(t);
+                out.writeInt(p.docCount);
+                out.writeLong(p.lastDoc);
+                out.writeInt(p.len);
+                out.write(p.buf, 0, p.len);
+                for (int k = 0; k < p.skipCount(); k++) {
+                    out.writeLong(p.skipBase[k]);
+                    out.writeInt(p.skipOff[k]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Load an index written by {@link #save(Path)}. */
+    public static DraftSearchIndex load(Path file) throws IOException {
+        DraftSearchIndex idx = new DraftSearchIndex();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a draft search index: " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported index version " + version);
+            int n = in.readInt();
+            idx.docs = new long[Math.max(64, n)];
+            long prev = 0;
+            for (int i = 0; i < n; i++) {
+                prev += in.readLong();
+                idx.docs[i] = prev;
+            }
+            idx.docCount = n;
+            int termCount = in.readInt();
+            for (int i = 0; i < termCount; i++) {
+                byte[] t = new byte[in.readUnsignedShort()];
+                in.readFully(t);
+                Postings p = new Postings();
+                p.docCount = in.readInt();
+                p.lastDoc = in.readLong();
+                p.len = in.readInt();
+                p.buf = new byte[Math.max(16, p.len)];
+                in.readFully(p.buf, 0, p.len);
+                int skips = p.skipCount();
+                p.skipBase = new long[Math.max(1, skips)];
+                p.skipOff = new int[Math.max(1, skips)];
+                for (int k = 0; k < skips; k++) {
+                    p.skipBase[k] = in.readLong();
+                    p.skipOff[k] = in.readInt();
+                }
+                idx.terms.put(new String(t, StandardCharsets.UTF_8), p);
+            }
+        }
+        return idx;
+    }
+
+    // ===== Postings =====
+
+    private static final class Postings {
+        /** Every SKIP_INTERVAL docs we remember (base doc, byte offset) so cursors can jump. */
+        static final int SKIP_INTERVAL = 64;
+
+        byte[] buf = new byte[16];
+        int len;
+        int docCount;
+        long lastDoc;
+        long[] skipBase = new long[1];
+        int[] skipOff = new int[1];
+
+        void add(long doc, List<Integer> positions) {
+            if (docCount % SKIP_INTERVAL == 0) {
+                int s = docCount / SKIP_INTERVAL;
+                if (s == skipBase.length) {
+                    skipBase = Arrays.copyOf(skipBase, s * 2);
+                    skipOff = Arrays.copyOf(skipOff, s * 2);
+                }
+                skipBase[s] = lastDoc;
+                skipOff[s] = len;
+            }
+            putVarLong(doc - lastDoc);
+            putVarLong(positions.size());
+            int prev = 0;
+            for (int p : positions) {
+                putVarLong(p - prev);
+                prev = p;
+            }
+            lastDoc = doc;
+            docCount++;
+        }
+
+        int skipCount() { return (docCount + SKIP_INTERVAL - 1) / SKIP_INTERVAL; }
+
+        private void putVarLong(long v) {
+            if (len + 10 > buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            while ((v & ~0x7FL) != 0) {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        Cursor cursor() { return new Cursor(); }
+
+        /** Forward-only decoder. Positions are decoded lazily and only when asked for. */
+        final class Cursor {
+            private int off;
+            private int seen;
+            long doc;
+            private int freq;
+            private int posOff;
+            private boolean posPending;
+            private int[] positions;
+
+            boolean nextDoc() {
+                if (posPending) skipPositions();
+                if (seen == docCount) return false;
+                doc += getVarLong();
+                freq = (int) getVarLong();
+                posOff = off;
+                posPending = true;
+                positions = null;
+                seen++;
+                return true;
+            }
+
+            /** Move to the first doc >= target (may stay on the current doc). */
+            boolean advance(long target) {
+                if (seen > 0 && doc >= target) return true;
+                // jump over whole blocks via the skip table
+                int lo = seen / SKIP_INTERVAL + (seen % SKIP_INTERVAL == 0 ? 0 : 1), hi = skipCount() - 1;
+                int best = -1;
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (skipBase[mid] < target) { best = mid; lo = mid + 1; } else hi = mid - 1;
+                }
+                if (best >= 0 && best * SKIP_INTERVAL > seen) {
+                    seen = best * SKIP_INTERVAL;
+                    off = skipOff[best];
+                    doc = skipBase[best];
+                    posPending = false;
+                }
+                while (nextDoc()) if (doc >= target) return true;
+                return false;
+            }
+
+            int[] positions() {
+                if (positions == null) {
+                    off = posOff;
+                    int[] p = new int[freq];
+                    int cur = 0;
+                    for (int i = 0; i < freq; i++) {
+                        cur += (int) getVarLong();
+                        p[i] = cur;
+                    }
+                    positions = p;
+                    posPending = false;
+                }
+                return positions;
+            }
+
+            private void skipPositions() {
+                off = posOff;
+                for (int i = 0; i < freq; i++) getVarLong();
+                posPending = false;
+            }
+
+            private long getVarLong() {
+                long v = 0;
+                int shift = 0;
+                while (true) {
+                    byte b = buf[off++];
+                    v |= (long) (b & 0x7F) << shift;
+                    if ((b & 0x80) == 0) return v;
+                    shift += 7;
+                }
+            }
+        }
+    }
+
+    // ===== Query parsing / evaluation =====
+
+    private interface Node {
+        long[] eval(DraftSearchIndex idx);
+
+        /** Upper bound on matches; cheap nodes are evaluated first inside an AND. */
+        long cost(DraftSearchIndex idx);
+
+        /** The subset of sorted {@code candidates} that match. */
+        default long[] filter(DraftSearchIndex idx, long[] candidates) {
+            return intersect(candidates, eval(idx));
+        }
+    }
+
+    private record Phrase(List<String> terms) implements Node {
+        public long[] eval(DraftSearchIndex idx) { return idx.phraseDocs(terms); }
+
+        public long cost(DraftSearchIndex idx) {
+            long min = Long.MAX_VALUE;
+            for (String t : terms) {
+                Postings p = idx.terms.get(t);
+                min = Math.min(min, p == null ? 0 : p.docCount);
+            }
+            return terms.isEmpty() ? 0 : min;
+        }
+
+        /** Probe each candidate with skipping cursors instead of decoding whole lists. */
+        public long[] filter(DraftSearchIndex idx, long[] candidates) {
+            if (terms.isEmpty()) return new long[0];
+            Postings.Cursor[] cs = new Postings.Cursor[terms.size()];
+            for (int i = 0; i < cs.length; i++) {
+                Postings p = idx.terms.get(terms.get(i));
+                if (p == null) return new long[0];
+                cs[i] = p.cursor();
+            }
+            LongList out = new LongList();
+            next:
+            for (long doc : candidates) {
+                for (Postings.Cursor c : cs) {
+                    if (!c.advance(doc)) break next;
+                    if (c.doc != doc) continue next;
+                }
+                if (cs.length == 1 || positionsMatch(cs)) out.add(doc);
+            }
+            return out.toArray();
+        }
+    }
+
+    private record And(List<Node> must, List<Node> mustNot) implements Node {
+        public long[] eval(DraftSearchIndex idx) {
+            List<Node> ordered = new ArrayList<>(must);
+            ordered.sort((a, b) -> Long.compare(a.cost(idx), b.cost(idx)));
+            long[] acc = ordered.isEmpty() ? idx.allDocs() : ordered.get(0).eval(idx);
+            return filterRest(idx, acc, ordered.isEmpty() ? ordered : ordered.subList(1, ordered.size()));
+        }
+
+        public long[] filter(DraftSearchIndex idx, long[] candidates) {
+            List<Node> ordered = new ArrayList<>(must);
+            ordered.sort((a, b) -> Long.compare(a.cost(idx), b.cost(idx)));
+            return filterRest(idx, candidates, ordered);
+        }
+
+        private long[] filterRest(DraftSearchIndex idx, long[] acc, List<Node> rest) {
+            for (Node n : rest) {
+                if (acc.length == 0) return acc;
+                acc = n.filter(idx, acc);
+            }
+            for (Node n : mustNot) {
+                if (acc.length == 0) return acc;
+                acc = subtract(acc, n.filter(idx, acc));
+            }
+            return acc;
+        }
+
+        public long cost(DraftSearchIndex idx) {
+            long min = idx.docCount;
+            for (Node n : must) min = Math.min(min, n.cost(idx));
+            return min;
+        }
+    }
+
+    private record Or(List<Node> any) implements Node {
+        public long[] eval(DraftSearchIndex idx) {
+            long[] acc = new long[0];
+            for (Node n : any) acc = union(acc, n.eval(idx));
+            return acc;
+        }
+
+        public long[] filter(DraftSearchIndex idx, long[] candidates) {
+            long[] acc = new long[0];
+            for (Node n : any) acc = union(acc, n.filter(idx, candidates));
+            return acc;
+        }
+
+        public long cost(DraftSearchIndex idx) {
+            long sum = 0;
+            for (Node n : any) sum += n.cost(idx);
+            return sum;
+        }
+    }
+
+    private static final class Parser {
+        private final List<String> toks = new ArrayList<>();
+        private int i;
+
+        Parser(String q) {
+            if (q == null) q = "";
+            StringBuilder cur = new StringBuilder();
+            for (int k = 0; k < q.length(); k++) {
+                char c = q.charAt(k);
+                if (c == '"') {
+                    int end = q.indexOf('"', k + 1);
+                    if (end < 0) throw new IllegalArgumentException("Unclosed quote in query: " + q);
+                    // keep a field prefix glued to its phrase: template:"SC-01"
+                    cur.append(q, k, end + 1);
+                    k = end;
+                } else if (c == '(' || c == ')') {
+                    flush(cur);
+                    toks.add(String.valueOf(c));
+                } else if (Character.isWhitespace(c)) {
+                    flush(cur);
+                } else {
+                    cur.append(c);
+                }
+            }
+            flush(cur);
+        }
+
+        private void flush(StringBuilder cur) {
+            if (cur.length() > 0) { toks.add(cur.toString()); cur.setLength(0); }
+        }
+
+        Node parse() {
+            Node n = or();
+            if (i < toks.size()) throw new IllegalArgumentException("Unexpected '" + toks.get(i) + "' in query");
+            return n;
+        }
+
+        private Node or() {
+            List<Node> any = new ArrayList<>();
+            any.add(and());
+            while (i < toks.size() && toks.get(i).equals("OR")) {
+                i++;
+                any.add(and());
+            }
+            return any.size() == 1 ? any.get(0) : new Or(any);
+        }
+
+        private Node and() {
+            List<Node> must = new ArrayList<>();
+            List<Node> mustNot = new ArrayList<>();
+            while (i < toks.size() && !toks.get(i).equals("OR") && !toks.get(i).equals(")")) {
+                String t = toks.get(i);
+                if (t.equals("AND")) { i++; continue; }
+                boolean negate = false;
+                if (t.equals("NOT")) { negate = true; i++; }
+                else if (t.startsWith("-") && t.length() > 1) { negate = true; toks.set(i, t.substring(1)); }
+                if (i >= toks.size()) throw new IllegalArgumentException("Dangling NOT in query");
+                Node n = primary();
+                (negate ? mustNot : must).add(n);
+            }
+            if (must.isEmpty() && mustNot.isEmpty()) throw new IllegalArgumentException("Empty query");
+            return (must.size() == 1 && mustNot.isEmpty()) ? must.get(0) : new And(must, mustNot);
+        }
+
+        private Node primary() {
+            String t = toks.get(i++);
+            if (t.equals("(")) {
+                Node n = or();
+                if (i >= toks.size() || !toks.get(i).equals(")")) throw new IllegalArgumentException("Missing ')' in query");
+                i++;
+                return n;
+            }
+            String field = null;
+            int colon = t.indexOf(':');
+            if (colon > 0 && DraftTokenizer.FIELDS.contains(t.substring(0, colon).toLowerCase())) {
+                field = t.substring(0, colon).toLowerCase();
+                t = t.substring(colon + 1);
+            }
+            if (t.startsWith("\"") && t.endsWith("\"") && t.length() >= 2) t = t.substring(1, t.length() - 1);
+            List<String> words = DraftTokenizer.terms(t);
+            if (field != null) {
+                for (int k = 0; k < words.size(); k++) words.set(k, field + ":" + words.get(k));
+            }
+            return new Phrase(words);
+        }
+    }
+
+    // ===== Sorted long[] set operations =====
+
+    private static long[] intersect(long[] a, long[] b) {
+        LongList out = new LongList();
+        int i = 0, j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) { out.add(a[i]); i++; j++; }
+            else if (a[i] < b[j]) i++;
+            else j++;
+        }
+        return out.toArray();
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        LongList out = new LongList();
+        int i = 0, j = 0;
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) out.add(a[i++]);
+            else if (i >= a.length || b[j] < a[i]) out.add(b[j++]);
+            else { out.add(a[i]); i++; j++; }
+        }
+        return out.toArray();
+    }
+
+    private static long[] subtract(long[] a, long[] b) {
+        LongList out = new LongList();
+        int j = 0;
+        for (long v : a) {
+            while (j < b.length && b[j] < v) j++;
+            if (j >= b.length || b[j] != v) out.add(v);
+        }
+        return out.toArray();
+    }
+
+    private static final class LongList {
+        long[] a = new long[16];
+        int n;
+        void add(long v) {
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n++] = v;
+        }
+        long[] toArray() { return Arrays.copyOf(a, n); }
+    }
+}
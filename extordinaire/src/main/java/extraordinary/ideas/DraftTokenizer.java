@@ -0,0 +1,117 @@
+package extraordinary.ideas;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * DraftTokenizer
+ * --------------
+ * Splits draft/plan text into search terms.
+ *
+ * Rules:
+ *  - NFKC + lowercase (Locale.ROOT).
+ *  - Letters and digits form words; apostrophes inside a word are dropped ("you’re" -> "youre").
+ *  - Every dash (–, —, -, ‒, ...), arrow and punctuation mark is a separator, so
+ *    "0–3s" -> "0", "3s" and "SC-01" -> "sc", "01".
+ *  - Each emoji is its own term ("🔥", "⚡"); variation selectors, ZWJ and skin tones are dropped.
+ *  - Header lines such as "Topic: ..." or "Niche: ..." also emit fielded terms
+ *    ("topic:creatine") at the same positions, for field-qualified queries.
+ */
+public final class DraftTokenizer {
+
+    /** One term and its word position within the draft. */
+    public record Token(String term, int position) {}
+
+    /** Header keys that produce fielded terms. */
+    public static final Set<String> FIELDS = Set.of("topic", "niche", "style", "hook", "cta", "template");
+
+    private DraftTokenizer() {}
+
+    /** Tokens of a full draft, including fielded terms for recognised header lines. */
+    public static List<Token> tokenize(String text) {
+        List<Token> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+        String norm = normalize(text);
+        int pos = 0;
+        for (String line : norm.split("\n")) {
+            String field = fieldOf(line);
+            String body = field == null ? line : line.substring(line.indexOf(':') + 1);
+            if (field != null) {
+                // the key itself is searchable too ("niche")
+                out.add(new Token(field, pos++));
+            }
+            List<String> terms = terms(body);
+            for (String t : terms) {
+                out.add(new Token(t, pos));
+                if (field != null) out.add(new Token(field + ":" + t, pos));
+                pos++;
+            }
+        }
+        return out;
+    }
+
+    /** Plain terms of a query fragment (no fields, no positions). */
+    public static List<String> terms(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null) return out;
+        String s = normalize(text);
+        StringBuilder cur = new StringBuilder();
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (Character.isLetterOrDigit(cp)) {
+                cur.appendCodePoint(cp);
+            } else if (isApostrophe(cp) && cur.length() > 0 && i < s.length()
+                    && Character.isLetter(s.codePointAt(i))) {
+                // in-word apostrophe: join
+            } else if (isEmojiModifier(cp)) {
+                // attached to the previous emoji; drop
+            } else if (isEmoji(cp)) {
+                flush(cur, out);
+                out.add(new String(Character.toChars(cp)));
+            } else {
+                flush(cur, out);
+            }
+        }
+        flush(cur, out);
+        return out;
+    }
+
+    static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    private static String fieldOf(String line) {
+        int colon = line.indexOf(':');
+        if (colon <= 0 || colon > 12) return null;
+        String key = line.substring(0, colon).trim();
+        return FIELDS.contains(key) ? key : null;
+    }
+
+    private static void flush(StringBuilder cur, List<String> out) {
+        if (cur.length() > 0) {
+            out.add(cur.toString());
+            cur.setLength(0);
+        }
+    }
+
+    private static boolean isApostrophe(int cp) {
+        return cp == '\'' || cp == '’' || cp == '‘' || cp == 'ʼ';
+    }
+
+    private static boolean isEmojiModifier(int cp) {
+        return cp == 0xFE0F || cp == 0xFE0E || cp == 0x200D
+                || (cp >= 0x1F3FB && cp <= 0x1F3FF);
+    }
+
+    private static boolean isEmoji(int cp) {
+        if (cp >= 0x1F000 && cp <= 0x1FAFF) return true;       // pictographs, emoticons, transport, ...
+        if (cp >= 0x2600 && cp <= 0x27BF) return true;         // misc symbols + dingbats (⚡ ✅)
+        if (cp >= 0x2B00 && cp <= 0x2BFF) return true;         // stars, arrows-ish symbols (⭐)
+        return Character.getType(cp) == Character.OTHER_SYMBOL && cp > 0x2000;
+    }
+}
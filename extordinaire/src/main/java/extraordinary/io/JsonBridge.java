@@ -1,5 +1,268 @@
 package extraordinary.io;
 
-public class JsonBridge {
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import extraordinary.core.LayoutResult;
+import extraordinary.core.LayoutRule;
+import extraordinary.core.SectionSpec;
+import extraordinary.core.SectionTiming;
+import extraordinary.models.ContentRequest;
+import extraordinary.models.DynamicTimelineConfig;
+import extraordinary.models.VideoPlan;
+
+/**
+ * Streaming JSON layer for large model collections.
+ *
+ * Formats:
+ *  - ARRAY : one top-level JSON array, read/written element by element
+ *  - JSONL : one compact JSON object per line (.jsonl / .ndjson)
+ *
+ * Usage:
+ *   try (Stream<VideoPlan> plans = JsonBridge.read(path, VideoPlan.class)) { plans.forEach(...); }
+ *   try (var w = JsonBridge.openWriter(path, VideoPlan.class, Format.JSONL, false)) { w.write(plan); }
+ *
+ * Notes:
+ *  - Only one element is materialised at a time, so heap use does not grow with file size.
+ *  - Uses the pre-registered {@link ModelAdapters}; no Gson reflection.
+ *  - Compact mode (pretty=false) writes no indentation. JSONL is always compact.
+ */
+public final class JsonBridge {
+    private JsonBridge() {}
+
+    public enum Format {
+        ARRAY, JSONL;
+
+        /** JSONL for *.jsonl / *.ndjson, ARRAY otherwise. */
+        public static Format of(Path path) {
+            String n = path.getFileName().toString().toLowerCase();
+            return (n.endsWith(".jsonl") || n.endsWith(".ndjson")) ? JSONL : ARRAY;
+        }
+    }
+
+    private static final int BUFFER = 1 << 16;
+
+    private static final Map<Class<?>, TypeAdapter<?>> ADAPTERS = Map.of(
+            DynamicTimelineConfig.class, ModelAdapters.DYNAMIC_TIMELINE_CONFIG,
+            DynamicTimelineConfig.Marker.class, ModelAdapters.MARKER,
+            VideoPlan.class, ModelAdapters.VIDEO_PLAN,
+            ContentRequest.class, ModelAdapters.CONTENT_REQUEST,
+            LayoutRule.class, ModelAdapters.LAYOUT_RULE,
+            SectionSpec.class, ModelAdapters.SECTION_SPEC,
+            SectionTiming.class, ModelAdapters.SECTION_TIMING,
+            LayoutResult.class, ModelAdapters.LAYOUT_RESULT
+    );
+
+    /** The registered adapter for a model type. */
+    @SuppressWarnings("unchecked")
+    public static <T> TypeAdapter<T> adapterFor(Class<T> type) {
+        TypeAdapter<T> a = (TypeAdapter<T>) ADAPTERS.get(type);
+        if (a == null) throw new IllegalArgumentException("No streaming adapter for " + type.getName());
+        return a;
+    }
+
+    // ---------- READ ----------
+
+    /** Stream elements of a file; format from the extension. Close the stream when done. */
+    public static <T> Stream<T> read(Path path, Class<T> type) throws IOException {
+        return read(path, type, Format.of(path));
+    }
+
+    public static <T> Stream<T> read(Path path, Class<T> type, Format format) throws IOException {
+        ElementReader<T> r = openReader(path, type, format);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(r, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try { r.close(); } catch (IOException e) { throw new UncheckedIOException(e); }
+                });
+    }
+
+    /** Pull-style reader; {@link Iterator#next()} wraps IO/parse errors in unchecked exceptions. */
+    public static <T> ElementReader<T> openReader(Path path, Class<T> type, Format format) throws IOException {
+        BufferedReader br = new BufferedReader(Files.newBufferedReader(path, StandardCharsets.UTF_8), BUFFER);
+        return format == Format.JSONL
+                ? new LinesReader<>(br, adapterFor(type))
+                : new ArrayReader<>(br, adapterFor(type));
+    }
+
+    // ---------- WRITE ----------
+
+    /** Write all elements; format from the extension. */
+    public static <T> long write(Path path, Class<T> type, Iterable<? extends T> items, boolean pretty) throws IOException {
+        return write(path, type, items, Format.of(path), pretty);
+    }
+
+    public static <T> long write(Path path, Class<T> type, Iterable<? extends T> items, Format format, boolean pretty) throws IOException {
+        try (ElementWriter<T> w = openWriter(path, type, format, pretty)) {
+            for (T t : items) w.write(t);
+            return w.count();
+        }
+    }
+
+    /** Push-style writer; the array (if any) is closed by {@link ElementWriter#close()}. */
+    public static <T> ElementWriter<T> openWriter(Path path, Class<T> type, Format format, boolean pretty) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        BufferedWriter bw = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), BUFFER);
+        return new ElementWriter<>(bw, adapterFor(type), format, pretty && format == Format.ARRAY);
+    }
+
+    // ---------- Reader / Writer types ----------
+
+    /** Iterates elements one at a time. */
+    public interface ElementReader<T> extends Iterator<T>, Closeable {}
+
+    private static final class ArrayReader<T> implements ElementReader<T> {
+        private final JsonReader in;
+        private final TypeAdapter<T> adapter;
+        private boolean started, done;
+
+        ArrayReader(BufferedReader br, TypeAdapter<T> adapter) {
+            this.in = new JsonReader(br);
+            this.adapter = adapter;
+        }
+
+        @Override public boolean hasNext() {
+            if (done) return false;
+            try {
+                if (!started) {
+                    started = true;
+                    if (in.peek() == JsonToken.END_DOCUMENT) { done = true; return false; }
+                    in.beginArray();
+                }
+                if (in.hasNext()) return true;
+                in.endArray();
+                done = true;
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            try {
+                return adapter.read(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override public void close() throws IOException { in.close(); }
+    }
+
+    private static final class LinesReader<T> implements ElementReader<T> {
+        private final BufferedReader br;
+        private final TypeAdapter<T> adapter;
+        private String line;
+        private long lineNo;
+
+        LinesReader(BufferedReader br, TypeAdapter<T> adapter) {
+            this.br = br;
+            this.adapter = adapter;
+        }
+
+        @Override public boolean hasNext() {
+            try {
+                while (line == null) {
+                    String l = br.readLine();
+                    if (l == null) return false;
+                    lineNo++;
+                    if (!l.isBlank()) line = l;
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            String l = line;
+            line = null;
+            try (JsonReader in = new JsonReader(new StringReader(l))) {
+                T t = adapter.read(in);
+                if (in.peek() != JsonToken.END_DOCUMENT) throw new JsonParseException("Trailing data on line " + lineNo);
+                return t;
+            } catch (IOException e) {
+                throw new JsonParseException("Bad JSON on line " + lineNo + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override public void close() throws IOException { br.close(); }
+    }
+
+    /** Writes elements one at a time; never buffers more than the output buffer. */
+    public static final class ElementWriter<T> implements Closeable {
+        private final Writer raw;
+        private final JsonWriter out; // ARRAY: the one writer; JSONL: null, one per line
+        private final TypeAdapter<T> adapter;
+        private final Format format;
+        private final boolean pretty;
+        private long count;
+        private boolean closed;
+
+        private ElementWriter(Writer raw, TypeAdapter<T> adapter, Format format, boolean pretty) throws IOException {
+            this.raw = raw;
+            this.adapter = adapter;
+            this.format = format;
+            this.pretty = pretty;
+            if (format == Format.JSONL) {
+                this.out = null;
+            } else {
+                this.out = jsonWriter();
+                out.beginArray();
+            }
+        }
+
+        /** JsonWriter keeps no buffer of its own, so a fresh one per JSONL line costs nothing. */
+        private JsonWriter jsonWriter() {
+            JsonWriter w = new JsonWriter(raw);
+            if (pretty) w.setIndent("  ");
+            return w;
+        }
+
+        public void write(T item) throws IOException {
+            if (format == Format.JSONL) {
+                adapter.write(jsonWriter(), item); // a strict writer takes one top-level value
+                raw.write('\n');
+            } else {
+                adapter.write(out, item);
+            }
+            count++;
+        }
+
+        public long count() { return count; }
+
+        @Override public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            if (format == Format.ARRAY) {
+                out.endArray();
+                out.close();
+            } else {
+                raw.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,448 @@
+package extraordinary.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import extraordinary.core.LayoutResult;
+import extraordinary.core.LayoutRule;
+import extraordinary.core.SectionSpec;
+import extraordinary.core.SectionTiming;
+import extraordinary.models.ContentRequest;
+import extraordinary.models.DynamicTimelineConfig;
+import extraordinary.models.DynamicTimelineConfig.Marker;
+import extraordinary.models.Niche;
+import extraordinary.models.Style;
+import extraordinary.models.VideoPlan;
+
+/**
+ * Hand-written Gson TypeAdapters for the shared models and core layout types.
+ *
+ * Notes:
+ *  - Field names match what reflective Gson wrote before, so existing JSON files still load.
+ *  - No reflection: adapters call constructors/accessors directly and can be used with a bare
+ *    JsonReader/JsonWriter, without a Gson instance.
+ *  - Unknown fields are skipped; missing fields fall back to the model defaults.
+ *  - Enums are mapped through their constant names, so Gson's reflective enum adapter is never
+ *    used either. Together this needs no reflection config for a native image.
+ */
+public final class ModelAdapters {
+    private ModelAdapters() {}
+
+    /** Register every adapter in this class on a builder (JsonUtil does this for its Gson). */
+    public static GsonBuilder register(GsonBuilder b) {
+        return b.registerTypeAdapter(Niche.class, NICHE)
+                .registerTypeAdapter(Style.class, STYLE)
+                .registerTypeAdapter(VideoPlan.SegmentType.class, SEGMENT_TYPE)
+                .registerTypeAdapter(Marker.class, MARKER)
+                .registerTypeAdapter(DynamicTimelineConfig.class, DYNAMIC_TIMELINE_CONFIG)
+                .registerTypeAdapter(VideoPlan.class, VIDEO_PLAN)
+                .registerTypeAdapter(ContentRequest.class, CONTENT_REQUEST)
+                .registerTypeAdapter(LayoutRule.class, LAYOUT_RULE)
+                .registerTypeAdapter(SectionSpec.class, SECTION_SPEC)
+                .registerTypeAdapter(SectionTiming.class, SECTION_TIMING)
+                .registerTypeAdapter(LayoutResult.class, LAYOUT_RESULT);
+    }
+
+    // ===== Enums =====
+
+    public static final TypeAdapter<Niche> NICHE = enumAdapter(Niche.values());
+    public static final TypeAdapter<Style> STYLE = enumAdapter(Style.values());
+    public static final TypeAdapter<VideoPlan.SegmentType> SEGMENT_TYPE = enumAdapter(VideoPlan.SegmentType.values());
+
+    // ===== DynamicTimelineConfig =====
+
+    public static final TypeAdapter<Marker> MARKER = new TypeAdapter<>() {
+        @Override public void write(JsonWriter out, Marker m) throws IOException {
+            if (m == null) { out.nullValue(); return; }
+            out.beginObject();
+            out.name("sectionName").value(m.getSectionName());
+            out.name("startSec").value(m.getStartSec());
+            out.name("endSec").value(m.getEndSec());
+            out.name("durationSec").value(m.getDurationSec());
+            out.endObject();
+        }
+
+        @Override public Marker read(JsonReader in) throws IOException {
+            if (nullToken(in)) return null;
+            String name = null;
+            int start = 0, end = 0, duration = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "sectionName" -> name = nextStringOrNull(in);
+                    case "startSec" -> start = in.nextInt();
+                    case "endSec" -> end = in.nextInt();
+                    case "durationSec" -> duration = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new Marker(name, start, end, duration);
+        }
+    };
+
+    public static final TypeAdapter<DynamicTimelineConfig> DYNAMIC_TIMELINE_CONFIG = new TypeAdapter<>() {
+        @Override public void write(JsonWriter out, DynamicTimelineConfig c) throws IOException {
+            if (c == null) { out.nullValue(); return; }
+            out.beginObject();
+            out.name("name").value(c.getName());
+            out.name("markers");
+            writeList(out, c.getMarkers(), MARKER);
+            out.endObject();
+        }
+
+        @Override public DynamicTimelineConfig read(JsonReader in) throws IOException {
+            if (nullToken(in)) return null;
+            String name = null;
+            List<Marker> markers = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name" -> name = nextStringOrNull(in);
+                    case "markers" -> markers = readList(in, MARKER);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new DynamicTimelineConfig(name, markers);
+        }
+    };
+
+    // ===== VideoPlan =====
+
+    public static final TypeAdapter<VideoPlan> VIDEO_PLAN = new TypeAdapter<>() {
+        @Override public void write(JsonWriter out, VideoPlan p) throws IOException {
+            if (p == null) { out.nullValue(); return; }
+            out.beginObject();
+            out.name("totalSeconds").value(p.totalSeconds());
+            out.name("segments").beginArray();
+            for (VideoPlan.Segment s : p.segments()) {
+                out.beginObject();
+                out.name("id").value(s.id);
+                out.name("type");
+                SEGMENT_TYPE.write(out, s.type);
+                out.name("startSec").value(s.startSec);
+                out.name("endSec").value(s.endSec);
+                out.name("text").value(s.text);
+                out.endObject();
+            }
+            out.endArray();
+            VideoPlan.Meta m = p.meta();
+            out.name("meta").beginObject();
+            out.name("topic").value(m.topic);
+            out.name("niche").value(m.niche);
+            out.name("style").value(m.style);
+            out.name("hook").value(m.hook);
+            out.name("cta").value(m.cta);
+            out.endObject();
+            out.endObject();
+        }
+
+        @Override public VideoPlan read(JsonReader in) throws IOException {
+            if (nullToken(in)) return null;
+            int total = VideoPlan.DEFAULT_TOTAL_SECONDS;
+            List<VideoPlan.Segment> segments = new ArrayList<>();
+            VideoPlan.Meta meta = new VideoPlan.Meta();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "totalSeconds" -> total = in.nextInt();
+                    case "segments" -> {
+                        if (nullToken(in)) break;
+                        in.beginArray();
+                        while (in.hasNext()) segments.add(readSegment(in));
+                        in.endArray();
+                    }
+                    case "meta" -> readMeta(in, meta);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            VideoPlan plan = new VideoPlan(total);
+            for (VideoPlan.Segment s : segments) {
+                if (s != null) plan.add(s.id, s.type, s.startSec, s.endSec, s.text);
+            }
+            VideoPlan.Meta target = plan.meta();
+            target.topic = meta.topic;
+            target.niche = meta.niche;
+            target.style = meta.style;
+            target.hook = meta.hook;
+            target.cta = meta.cta;
+            return plan;
+        }
+
+        private VideoPlan.Segment readSegment(JsonReader in) throws IOException {
+            if (nullToken(in)) return null;
+            String id = null, text = null;
+            VideoPlan.SegmentType type = null;
+            int start = 0, end = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id" -> id = nextStringOrNull(in);
+                    case "type" -> type = SEGMENT_TYPE.read(in);
+                    case "startSec" -> start = in.nextInt();
+                    case "endSec" -> end = in.nextInt();
+                    case "text" -> text = nextStringOrNull(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new VideoPlan.Segment(id, type, start, end, text);
+        }
+
+        private void readMeta(JsonReader in, VideoPlan.Meta m) throws IOException {
+            if (nullToken(in)) return;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "topic" -> m.topic = nextStringOrNull(in);
+                    case "niche" -> m.niche = nextStringOrNull(in);
+                    case "style" -> m.style = nextStringOrNull(in);
+                    case "hook" -> m.hook = nextStringOrNull(in);
+                    case "cta" -> m.cta = nextStringOrNull(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+    };
+
+    // ===== ContentRequest =====
+
+    public static final TypeAdapter<ContentRequest> CONTENT_REQUEST = new TypeAdapter<>() {
+        @Override public void write(JsonWriter out, ContentRequest r) throws IOException {
+            if (r == null) { out.nullValue(); return; }
+            out.beginObject();
+            out.name("topic").value(r.topic());
+            out.name("platform").value(r.platform());
+            out.name("niche");
+            NICHE.write(out, r.niche());
+            out.name("style");
+            STYLE.write(out, r.style());
+            out.endObject();
+        }
+
+        @Override public ContentRequest read(JsonReader in) throws IOException {
+            if (nullToken(in)) return null;
+            String topic = null, platform = null;
+            Niche niche = Niche.GENERAL;
+            Style style = Style.HYPE;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "topic" -> topic = nextStringOrNull(in);
+                    case "platform" -> platform = nextStringOrNull(in);
+                    case "niche" -> {
+                        Niche n = NICHE.read(in);
+                        if (n != null) niche = n;
+                    }
+                    case "style" -> {
+                        Style s = STYLE.read(in);
+                        if (s != null) style = s;
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ContentRequest(topic, platform, niche, style);
+        }
+    };
+
+    // ===== core: LayoutRule / SectionSpec / SectionTiming / LayoutResult =====
+
+    public static final TypeAdapter<LayoutRule> LAYOUT_RULE = new TypeAdapter<>() {
+        @Override public void write(JsonWriter out, LayoutRule r) throws IOException {
+            if (r == null) { out.nullValue(); return; }
+            out.beginObject();
+            out.name("minTotalSec").value(r.minTotalSec());
+            out.name("maxTotalSec").value(r.maxTotalSec());
+            out.name("allowAutoAdd").value(r.allowAutoAdd());
+            out.endObject();
+        }
+
+        @Override public LayoutRule read(JsonReader in) throws IOException {
+            if (nullToken(in)) return null;
+            int min = 0, max = 0;
+            boolean autoAdd = false;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "minTotalSec" -> min = in.nextInt();
+                    case "maxTotalSec" -> max = in.nextInt();
+                    case "allowAutoAdd" -> autoAdd = in.nextBoolean();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            try {
+                return new LayoutRule(min, max, autoAdd);
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException("Invalid LayoutRule: " + e.getMessage(), e);
+            }
+        }
+    };
+
+    public static final TypeAdapter<SectionSpec> SECTION_SPEC = new TypeAdapter<>() {
+        @Override public void write(JsonWriter out, SectionSpec s) throws IOException {
+            if (s == null) { out.nullValue(); return; }
+            out.beginObject();
+            out.name("name").value(s.name());
+            out.name("weight").value(s.weight());
+            out.name("minSec").value(s.minSec());
+            out.name("maxSec").value(s.maxSec());
+            out.endObject();
+        }
+
+        @Override public SectionSpec read(JsonReader in) throws IOException {
+            if (nullToken(in)) return null;
+            String name = null;
+            double weight = 1.0;
+            Integer min = null, max = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name" -> name = nextStringOrNull(in);
+                    case "weight" -> weight = in.nextDouble();
+                    case "minSec" -> min = nextIntOrNull(in);
+                    case "maxSec" -> max = nextIntOrNull(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            try {
+                return new SectionSpec(name, weight, min, max);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new JsonParseException("Invalid SectionSpec: " + e.getMessage(), e);
+            }
+        }
+    };
+
+    public static final TypeAdapter<SectionTiming> SECTION_TIMING = new TypeAdapter<>() {
+        @Override public void write(JsonWriter out, SectionTiming t) throws IOException {
+            if (t == null) { out.nullValue(); return; }
+            out.beginObject();
+            out.name("name").value(t.name());
+            out.name("startSec").value(t.startSec());
+            out.name("endSec").value(t.endSec());
+            out.endObject();
+        }
+
+        @Override public SectionTiming read(JsonReader in) throws IOException {
+            if (nullToken(in)) return null;
+            String name = null;
+            int start = 0, end = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name" -> name = nextStringOrNull(in);
+                    case "startSec" -> start = in.nextInt();
+                    case "endSec" -> end = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            try {
+                return new SectionTiming(name, start, end);
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException("Invalid SectionTiming: " + e.getMessage(), e);
+            }
+        }
+    };
+
+    public static final TypeAdapter<LayoutResult> LAYOUT_RESULT = new TypeAdapter<>() {
+        @Override public void write(JsonWriter out, LayoutResult r) throws IOException {
+            if (r == null) { out.nullValue(); return; }
+            out.beginObject();
+            out.name("totalSec").value(r.totalSec());
+            out.name("timeline");
+            writeList(out, r.timeline(), SECTION_TIMING);
+            out.endObject();
+        }
+
+        @Override public LayoutResult read(JsonReader in) throws IOException {
+            if (nullToken(in)) return null;
+            int total = 0;
+            List<SectionTiming> timeline = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "totalSec" -> total = in.nextInt();
+                    case "timeline" -> timeline = readList(in, SECTION_TIMING);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            try {
+                return new LayoutResult(total, timeline == null ? List.of() : timeline);
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException("Invalid LayoutResult: " + e.getMessage(), e);
+            }
+        }
+    };
+
+    // ===== Helpers =====
+
+    /** Enum by constant name; takes {@code values()} so nothing is looked up reflectively. */
+    static <E extends Enum<E>> TypeAdapter<E> enumAdapter(E[] values) {
+        Map<String, E> byName = new HashMap<>(values.length * 2);
+        for (E e : values) byName.put(e.name(), e);
+        return new TypeAdapter<>() {
+            @Override public void write(JsonWriter out, E e) throws IOException {
+                out.value(e == null ? null : e.name());
+            }
+
+            @Override public E read(JsonReader in) throws IOException {
+                String n = nextStringOrNull(in);
+                if (n == null) return null;
+                E e = byName.get(n);
+                if (e == null) throw new JsonParseException("Unknown constant '" + n + "' at " + in.getPath());
+                return e;
+            }
+        };
+    }
+
+    static <T> void writeList(JsonWriter out, List<T> list, TypeAdapter<T> element) throws IOException {
+        if (list == null) { out.nullValue(); return; }
+        out.beginArray();
+        for (T t : list) element.write(out, t);
+        out.endArray();
+    }
+
+    static <T> List<T> readList(JsonReader in, TypeAdapter<T> element) throws IOException {
+        if (nullToken(in)) return null;
+        List<T> out = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) out.add(element.read(in));
+        in.endArray();
+        return out;
+    }
+
+    /** Consumes a JSON null and returns true, or returns false without consuming anything. */
+    static boolean nullToken(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    static String nextStringOrNull(JsonReader in) throws IOException {
+        return nullToken(in) ? null : in.nextString();
+    }
+
+    static Integer nextIntOrNull(JsonReader in) throws IOException {
+        return nullToken(in) ? null : in.nextInt();
+    }
+}
@@ -0,0 +1,67 @@
+package extraordinary.media;
+
+/**
+ * What ffprobe found in a media file. Immutable, UI-free.
+ *
+ * durationSec : container duration, -1 if unknown (e.g. still images)
+ * video       : first video stream, null if none
+ * audio       : first audio stream, null if none
+ * keyframes   : video keyframe timestamps in seconds, ascending; empty if not probed.
+ *               Treat as read-only (not copied, can be large).
+ */
+public record MediaInfo(double durationSec, VideoStream video, AudioStream audio, double[] keyframes) {
+
+    /**
+     * codec    : ffprobe codec_name, e.g. "h264", "hevc", "png"
+     * profile  : e.g. "High", may be null
+     * fps      : average frame rate, -1 if unknown
+     * rotation : display rotation in degrees (0, 90, 180, 270)
+     * sar      : sample aspect ratio as "num:den", "1:1" if unknown
+     * level    : codec level as ffprobe reports it (H.264: 40 = 4.0), -1 if unknown
+     * fieldOrder   : "progressive", "tt", "bb", ...; null if unknown
+     * reorderDepth : ffprobe has_b_frames (0 = decode order is display order), -1 if unknown
+     */
+    public record VideoStream(String codec, String profile, int width, int height, double fps,
+                              String pixFmt, int rotation, String sar,
+                              int level, String fieldOrder, int reorderDepth) {
+
+        /** Width/height as displayed (swapped for 90/270 rotation). */
+        public int displayWidth()  { return (rotation % 180 != 0) ? height : width; }
+        public int displayHeight() { return (rotation % 180 != 0) ? width : height; }
+    }
+
+    public record AudioStream(String codec, int sampleRate, int channels) {}
+
+    public boolean hasVideo() { return video != null; }
+    public boolean hasAudio() { return audio != null; }
+    public boolean hasKeyframes() { return keyframes != null && keyframes.length > 0; }
+
+    /** Returns a copy carrying keyframe timestamps. */
+    public MediaInfo withKeyframes(double[] kf) {
+        return new MediaInfo(durationSec, video, audio, kf);
+    }
+
+    /** First keyframe at or after {@code t} (within 1 ms), or -1. */
+    public double keyframeAtOrAfter(double t) {
+        if (!hasKeyframes()) return -1;
+        int i = lowerBound(keyframes, t - 0.001);
+        return i < keyframes.length ? keyframes[i] : -1;
+    }
+
+    /** Last keyframe at or before {@code t} (within 1 ms), or -1. */
+    public double keyframeAtOrBefore(double t) {
+        if (!hasKeyframes()) return -1;
+        int i = lowerBound(keyframes, t + 0.001) - 1;
+        return i >= 0 ? keyframes[i] : -1;
+    }
+
+    /** Index of the first element >= x. */
+    private static int lowerBound(double[] a, double x) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < x) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,184 @@
+package extraordinary.media;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Runs ffprobe and turns its output into {@link MediaInfo}.
+ *
+ * Notes:
+ *  - Streams/format come from {@code -print_format json}; keyframes from a packet listing
+ *    (flags only, no decoding), which is much cheaper than {@code -skip_frame nokey}.
+ *  - ffprobe must be on PATH (same as ffmpeg for export).
+ *  - Parsing is separate from running so it can be fed saved output.
+ */
+public final class MediaProbe {
+    private MediaProbe() {}
+
+    private static final long TIMEOUT_SEC = 120;
+
+    /** Probe streams and format; keyframes too if asked (one extra ffprobe pass). */
+    public static MediaInfo probe(Path file, boolean withKeyframes) throws IOException, InterruptedException {
+        MediaInfo info = parse(run(streamsCommand(file)));
+        if (withKeyframes && info.hasVideo()) info = info.withKeyframes(parseKeyframes(run(keyframesCommand(file))));
+        return info;
+    }
+
+    public static List<String> streamsCommand(Path file) {
+        return List.of("ffprobe", "-v", "error", "-print_format", "json",
+                "-show_format", "-show_streams", file.toAbsolutePath().toString());
+    }
+
+    public static List<String> keyframesCommand(Path file) {
+        return List.of("ffprobe", "-v", "error", "-select_streams", "v:0",
+                "-show_entries", "packet=pts_time,flags", "-of", "csv=print_section=0",
+                file.toAbsolutePath().toString());
+    }
+
+    // ---------- parsing ----------
+
+    /** Parse {@code ffprobe -print_format json -show_format -show_streams} output. */
+    public static MediaInfo parse(String json) {
+        JsonObject root;
+        try {
+            root = JsonParser.parseString(json).getAsJsonObject();
+        } catch (IllegalStateException | JsonParseException e) {
+            throw new IllegalArgumentException("Not ffprobe JSON: " + e.getMessage(), e);
+        }
+        double duration = -1;
+        JsonObject format = obj(root, "format");
+        if (format != null) duration = dbl(format, "duration", -1);
+
+        MediaInfo.VideoStream video = null;
+        MediaInfo.AudioStream audio = null;
+        JsonArray streams = root.has("streams") ? root.getAsJsonArray("streams") : new JsonArray();
+        for (JsonElement e : streams) {
+            JsonObject s = e.getAsJsonObject();
+            String type = str(s, "codec_type");
+            if ("video".equals(type) && video == null && !isAttachedPicture(s)) {
+                double fps = rate(str(s, "avg_frame_rate"));
+                if (fps <= 0) fps = rate(str(s, "r_frame_rate"));
+                String sar = str(s, "sample_aspect_ratio");
+                video = new MediaInfo.VideoStream(
+                        str(s, "codec_name"), str(s, "profile"),
+                        (int) dbl(s, "width", 0), (int) dbl(s, "height", 0), fps,
+                        str(s, "pix_fmt"), rotation(s),
+                        (sar == null || sar.startsWith("0")) ? "1:1" : sar,
+                        level(s),
+                        str(s, "field_order"), (int) dbl(s, "has_b_frames", -1));
+                if (duration < 0) duration = dbl(s, "duration", -1);
+            } else if ("audio".equals(type) && audio == null) {
+                audio = new MediaInfo.AudioStream(str(s, "codec_name"),
+                        (int) dbl(s, "sample_rate", 0), (int) dbl(s, "channels", 0));
+            }
+        }
+        return new MediaInfo(duration, video, audio, new double[0]);
+    }
+
+    /** Parse the {@code pts_time,flags} CSV; returns keyframe times ascending. */
+    public static double[] parseKeyframes(String csv) {
+        double[] out = new double[64];
+        int n = 0;
+        for (String line : csv.split("\n")) {
+            int comma = line.indexOf(',');
+            if (comma <= 0 || line.indexOf('K', comma) < 0) continue;
+            try {
+                double t = Double.parseDouble(line.substring(0, comma).trim());
+                if (n == out.length) out = Arrays.copyOf(out, n * 2);
+                out[n++] = t;
+            } catch (NumberFormatException ignored) {
+                // "N/A" timestamps
+            }
+        }
+        double[] kf = Arrays.copyOf(out, n);
+        Arrays.sort(kf); // packets are in decode order (B-frames)
+        return kf;
+    }
+
+    // ---------- helpers ----------
+
+    private static boolean isAttachedPicture(JsonObject s) {
+        JsonObject d = obj(s, "disposition");
+        return d != null && dbl(d, "attached_pic", 0) == 1;
+    }
+
+    private static int rotation(JsonObject s) {
+        double r = 0;
+        JsonObject tags = obj(s, "tags");
+        if (tags != null && tags.has("rotate")) r = dbl(tags, "rotate", 0);
+        if (s.has("side_data_list")) {
+            for (JsonElement e : s.getAsJsonArray("side_data_list")) {
+                JsonObject sd = e.getAsJsonObject();
+                if (sd.has("rotation")) r = -dbl(sd, "rotation", 0); // display matrix is counter-clockwise
+            }
+        }
+        int deg = (int) Math.round(r) % 360;
+        return deg < 0 ? deg + 360 : deg;
+    }
+
+    /** ffprobe prints -99 (or nothing) when the level is unknown. */
+    private static int level(JsonObject s) {
+        int l = (int) dbl(s, "level", -1);
+        return l > 0 ? l : -1;
+    }
+
+    /** "30000/1001" -> 29.97; "0/0" -> -1. */
+    static double rate(String r) {
+        if (r == null) return -1;
+        int slash = r.indexOf('/');
+        try {
+            if (slash < 0) return Double.parseDouble(r);
+            double num = Double.parseDouble(r.substring(0, slash));
+            double den = Double.parseDouble(r.substring(slash + 1));
+            return den == 0 ? -1 : num / den;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static JsonObject obj(JsonObject o, String k) {
+        JsonElement e = o.get(k);
+        return (e != null && e.isJsonObject()) ? e.getAsJsonObject() : null;
+    }
+
+    private static String str(JsonObject o, String k) {
+        JsonElement e = o.get(k);
+        return (e != null && e.isJsonPrimitive()) ? e.getAsString() : null;
+    }
+
+    /** ffprobe prints most numbers as strings. */
+    private static double dbl(JsonObject o, String k, double dflt) {
+        String s = str(o, k);
+        if (s == null) return dflt;
+        try { return Double.parseDouble(s); } catch (NumberFormatException e) { return dflt; }
+    }
+
+    /** Run a probe command and return its stdout; stderr is discarded. */
+    static String run(List<String> cmd) throws IOException, InterruptedException {
+        Process p = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        String out;
+        try (InputStream in = p.getInputStream()) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(8192);
+            in.transferTo(buf);
+            out = buf.toString(StandardCharsets.UTF_8);
+        }
+        if (!p.waitFor(TIMEOUT_SEC, TimeUnit.SECONDS)) {
+            p.destroyForcibly();
+            throw new IOException("ffprobe timed out: " + cmd.get(cmd.size() - 1));
+        }
+        if (p.exitValue() != 0) throw new IOException("ffprobe failed (" + p.exitValue() + "): " + cmd.get(cmd.size() - 1));
+        return out;
+    }
+}
@@ -0,0 +1,332 @@
+package extraordinary.media;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import extraordinary.helpers.AtomicFiles;
+import extraordinary.helpers.FileStamp;
+
+/**
+ * Cached, parallel {@link MediaProbe}: streams, fps, rotation and keyframes of each input,
+ * probed once per file version.
+ *
+ * Notes:
+ *  - Keyed by the file's {@link FileStamp}; an edited or replaced file is probed again.
+ *  - Two depths: {@link #probe} includes keyframes (a packet scan of the whole file, for smart
+ *    render and previews); {@link #probeStreams} only reads the headers (for grouping inputs)
+ *    and is answered by either kind of entry. They are cached under different keys.
+ *  - One small JSON file per key under the cache dir (written atomically), plus an LRU in
+ *    memory bounded by the keyframe timestamps it holds, so a file probed in an earlier session
+ *    is a hit without ffprobe.
+ *  - Probes run on a fixed pool of {@code threads} daemon threads; asking for the same file
+ *    twice while it is being probed shares one ffprobe run.
+ *  - Failures (no ffprobe, not a media file) are not cached; the future completes exceptionally.
+ */
+public final class MediaProbeService implements AutoCloseable {
+
+    /** One JSON file per probed file version. Entries are small (a keyframe list at most) and never trimmed. */
+    public static final Path DEFAULT_DIR = Paths.get("cache", "probe");
+
+    /** Bump when the stored fields change; older entries are probed again. */
+    static final int FORMAT = 2;
+
+    /** Memory tier budget: keyframe timestamps held (8 bytes each), plus one per entry. */
+    static final long MAX_MEMORY_KEYFRAMES = 2L << 20;
+
+
+    private final Path dir;
+    private final ExecutorService pool;
+    private final Memory memory = new Memory(MAX_MEMORY_KEYFRAMES);
+    private final Map<String, CompletableFuture<MediaInfo>> inFlight = new ConcurrentHashMap<>();
+
+    /** @param threads concurrent ffprobe processes */
+    public MediaProbeService(Path dir, int threads) throws IOException {
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        this.dir = dir;
+        Files.createDirectories(dir);
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "media-probe-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static MediaProbeService openDefault() throws IOException {
+        return new MediaProbeService(DEFAULT_DIR, defaultThreads());
+    }
+
+    /** ffprobe is mostly I/O (the keyframe pass reads the whole file): a few at a time, not one per core. */
+    public static int defaultThreads() {
+        return Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /** The probe of the file as it is now, if already known (memory or disk); never runs ffprobe. */
+    public Optional<MediaInfo> cached(Path file) {
+        try {
+            return Optional.ofNullable(lookup(FileStamp.of(file), true));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Probe (with keyframes) in the background; completes at once on a cache hit. */
+    public CompletableFuture<MediaInfo> probe(Path file) {
+        return probe(file, true);
+    }
+
+    /** Blocking {@link #probe}; null if the file cannot be probed. */
+    public MediaInfo probeNow(Path file) throws InterruptedException {
+        return await(probe(file, true));
+    }
+
+    /** Streams and format only (no keyframe scan); completes at once if either kind of entry is cached. */
+    public CompletableFuture<MediaInfo> probeStreams(Path file) {
+        return probe(file, false);
+    }
+
+    /** Blocking {@link #probeStreams}; null if the file cannot be probed. */
+    public MediaInfo probeStreamsNow(Path file) throws InterruptedException {
+        return await(probe(file, false));
+    }
+
+    private static MediaInfo await(CompletableFuture<MediaInfo> f) throws InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private CompletableFuture<MediaInfo> probe(Path file, boolean keyframes) {
+        FileStamp key;
+        try {
+            key = FileStamp.of(file);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        MediaInfo hit = keyframes ? lookup(key, true) : lookupAny(key);
+        if (hit != null) return CompletableFuture.completedFuture(hit);
+        String id = idOf(key, keyframes);
+        // Publish the future first and start the probe after: a probe that fails at once (no
+        // ffprobe) must not remove its map entry from inside the map's own update.
+        CompletableFuture<MediaInfo> mine = new CompletableFuture<>();
+        CompletableFuture<MediaInfo> running = inFlight.putIfAbsent(id, mine);
+        if (running != null) return running;
+        try {
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    MediaInfo info = MediaProbe.probe(file, keyframes);
+                    store(key, keyframes, info);
+                    return info;
+                } catch (IOException | IllegalArgumentException e) {
+                    throw new CompletionException(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                }
+            }, pool).whenComplete((info, err) -> {
+                inFlight.remove(id, mine);
+                if (err != null) mine.completeExceptionally(err); else mine.complete(info);
+            });
+        } catch (RejectedExecutionException closed) {
+            inFlight.remove(id, mine);
+            mine.completeExceptionally(closed);
+        }
+        return mine;
+    }
+
+    /** Queue probes for every file not cached yet (e.g. a batch of imported clips); errors are dropped. */
+    public void prefetch(Collection<Path> files) {
+        prefetch(files, null);
+    }
+
+    /** As {@link #prefetch(Collection)}, calling {@code onProbed} (on a probe thread, or at once for hits) per file. */
+    public void prefetch(Collection<Path> files, BiConsumer<Path, MediaInfo> onProbed) {
+        for (Path f : files) {
+            probe(f).thenAccept(info -> { if (onProbed != null) onProbed.accept(f, info); })
+                    .exceptionally(err -> null);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    // ---------- cache ----------
+
+    /** Id of a file version's entry; the streams-only entry is kept apart from the full one. */
+    static String idOf(FileStamp key, boolean keyframes) {
+        return keyframes ? key.id() : key.id() + "|streams";
+    }
+
+    /** The full entry if there is one, else the streams-only one. */
+    private MediaInfo lookupAny(FileStamp key) {
+        MediaInfo m = lookup(key, true);
+        return m != null ? m : lookup(key, false);
+    }
+
+    private MediaInfo lookup(FileStamp key, boolean keyframes) {
+        String id = idOf(key, keyframes);
+        MediaInfo m = memory.get(id);
+        if (m != null) return m;
+        try {
+            MediaInfo info = fromJson(Files.readString(entryFile(id), StandardCharsets.UTF_8), key);
+            if (info != null) memory.put(id, info);
+            return info;
+        } catch (IOException missing) {
+            return null; // not probed yet (or unreadable: probed again and overwritten)
+        }
+    }
+
+    private void store(FileStamp key, boolean keyframes, MediaInfo info) throws IOException {
+        String id = idOf(key, keyframes);
+        memory.put(id, info);
+        AtomicFiles.writeString(entryFile(id), toJson(key, info));
+    }
+
+    private Path entryFile(String id) {
+        return dir.resolve(sha256(id) + ".json");
+    }
+
+    private static String sha256(String s) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ---------- persistence ----------
+
+    static String toJson(FileStamp key, MediaInfo m) {
+        JsonObject o = new JsonObject();
+        o.addProperty("format", FORMAT);
+        o.addProperty("path", key.path());
+        o.addProperty("size", key.size());
+        o.addProperty("mtime", key.mtimeMillis());
+        o.addProperty("durationSec", m.durationSec());
+        if (m.video() != null) {
+            MediaInfo.VideoStream v = m.video();
+            JsonObject vo = new JsonObject();
+            vo.addProperty("codec", v.codec());
+            vo.addProperty("profile", v.profile());
+            vo.addProperty("width", v.width());
+            vo.addProperty("height", v.height());
+            vo.addProperty("fps", v.fps());
+            vo.addProperty("pixFmt", v.pixFmt());
+            vo.addProperty("rotation", v.rotation());
+            vo.addProperty("sar", v.sar());
+            vo.addProperty("level", v.level());
+            vo.addProperty("fieldOrder", v.fieldOrder());
+            vo.addProperty("reorderDepth", v.reorderDepth());
+            o.add("video", vo);
+        }
+        if (m.audio() != null) {
+            JsonObject ao = new JsonObject();
+            ao.addProperty("codec", m.audio().codec());
+            ao.addProperty("sampleRate", m.audio().sampleRate());
+            ao.addProperty("channels", m.audio().channels());
+            o.add("audio", ao);
+        }
+        JsonArray kf = new JsonArray(m.keyframes() == null ? 0 : m.keyframes().length);
+        if (m.keyframes() != null) for (double t : m.keyframes()) kf.add(t);
+        o.add("keyframes", kf);
+        return o.toString();
+    }
+
+    /** @return null if the entry is unreadable, from an older format or for another file version */
+    static MediaInfo fromJson(String json, FileStamp key) {
+        try {
+            JsonObject o = JsonParser.parseString(json).getAsJsonObject();
+            if (o.get("format").getAsInt() != FORMAT
+                    || !key.path().equals(o.get("path").getAsString())
+                    || o.get("size").getAsLong() != key.size()
+                    || o.get("mtime").getAsLong() != key.mtimeMillis()) {
+                return null;
+            }
+            MediaInfo.VideoStream video = null;
+            if (o.has("video")) {
+                JsonObject v = o.getAsJsonObject("video");
+                video = new MediaInfo.VideoStream(str(v, "codec"), str(v, "profile"),
+                        v.get("width").getAsInt(), v.get("height").getAsInt(), v.get("fps").getAsDouble(),
+                        str(v, "pixFmt"), v.get("rotation").getAsInt(), str(v, "sar"),
+                        v.get("level").getAsInt(), str(v, "fieldOrder"), v.get("reorderDepth").getAsInt());
+            }
+            MediaInfo.AudioStream audio = null;
+            if (o.has("audio")) {
+                JsonObject a = o.getAsJsonObject("audio");
+                audio = new MediaInfo.AudioStream(str(a, "codec"), a.get("sampleRate").getAsInt(), a.get("channels").getAsInt());
+            }
+            JsonArray kfa = o.getAsJsonArray("keyframes");
+            double[] kf = new double[kfa.size()];
+            for (int i = 0; i < kf.length; i++) kf[i] = kfa.get(i).getAsDouble();
+            return new MediaInfo(o.get("durationSec").getAsDouble(), video, audio, kf);
+        } catch (IllegalStateException | JsonParseException | NullPointerException
+                 | UnsupportedOperationException | ClassCastException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String str(JsonObject o, String k) {
+        JsonElement e = o.get(k);
+        return (e == null || e.isJsonNull()) ? null : e.getAsString();
+    }
+
+    /** LRU of parsed entries, bounded by the keyframe timestamps they hold. */
+    private static final class Memory {
+        private final long budget;
+        private final LinkedHashMap<String, MediaInfo> map = new LinkedHashMap<>(64, 0.75f, true);
+        private long weight;
+
+        Memory(long budget) { this.budget = budget; }
+
+        synchronized MediaInfo get(String id) {
+            return map.get(id);
+        }
+
+        synchronized void put(String id, MediaInfo info) {
+            MediaInfo old = map.put(id, info);
+            if (old != null) weight -= weightOf(old);
+            weight += weightOf(info);
+            Iterator<MediaInfo> it = map.values().iterator(); // least recently used first
+            while (weight > budget && it.hasNext()) {
+                MediaInfo eldest = it.next();
+                if (eldest == info) continue;
+                weight -= weightOf(eldest);
+                it.remove();
+            }
+        }
+
+        private static long weightOf(MediaInfo m) {
+            return 1 + (m.keyframes() == null ? 0 : m.keyframes().length);
+        }
+    }
+}
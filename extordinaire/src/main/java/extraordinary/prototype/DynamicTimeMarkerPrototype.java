@@ -1,6 +1,5 @@
 package extraordinary.prototype;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -8,6 +7,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import extraordinary.core.LayoutEngine;
@@ -19,6 +19,7 @@ import extraordinary.helpers.JsonUtil;
 import extraordinary.models.DynamicTimelineConfig;
 import extraordinary.models.DynamicTimelineConfig.Marker;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleDoubleProperty;
@@ -141,16 +142,23 @@ public class DynamicTimeMarkerPrototype extends Application {
                 // 3) turn layout result into shared DynamicTimelineConfig model
                 DynamicTimelineConfig config = buildConfigFromLayout(result);
 
-                // 4) save JSON to disk
-                exportConfigToFile(config);
-
-                // 5) also copy JSON to clipboard
+                // 4) copy JSON to clipboard
                 String json = JsonUtil.toJson(config);
                 ClipboardContent cc = new ClipboardContent();
                 cc.putString(json);
                 Clipboard.getSystemClipboard().setContent(cc);
-
-                totalLabel.setText("Total: " + result.totalSec() + "s (JSON saved & copied)");
+                totalLabel.setText("Total: " + result.totalSec() + "s (JSON copied, saving...)");
+
+                // 5) save JSON to disk off the FX thread
+                int totalSec = result.totalSec();
+                exportConfigToFile(config).whenComplete((v, err) -> Platform.runLater(() -> {
+                    if (err != null) {
+                        err.printStackTrace();
+                        totalLabel.setText("Error saving JSON (see console)");
+                    } else {
+                        totalLabel.setText("Total: " + totalSec + "s (JSON saved & copied)");
+                    }
+                }));
 
             } catch (Exception ex) {
                 ex.printStackTrace();
@@ -400,12 +408,11 @@ public class DynamicTimeMarkerPrototype extends Application {
         return new DynamicTimelineConfig("shorts-preset", markers);
     }
 
-    private void exportConfigToFile(DynamicTimelineConfig config) throws Exception {
-        Path outDir = Paths.get("data");
-        Files.createDirectories(outDir);
-        Path outFile = outDir.resolve("dynamic_timeline.json");
-        JsonUtil.save(outFile.toString(), config);
-        System.out.println("Saved dynamic timeline JSON to " + outFile.toAbsolutePath());
+    /** Batched: clicking Copy + Save repeatedly writes only the latest config, one fsync per burst. */
+    private CompletableFuture<Void> exportConfigToFile(DynamicTimelineConfig config) {
+        Path outFile = Paths.get("data").resolve("dynamic_timeline.json");
+        return JsonUtil.saveBatched(outFile, config)
+                .thenRun(() -> System.out.println("Saved dynamic timeline JSON to " + outFile.toAbsolutePath()));
     }
 
     public static void main(String[] args) {
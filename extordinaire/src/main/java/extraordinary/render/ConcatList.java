@@ -0,0 +1,66 @@
+package extraordinary.render;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ffconcat list for the concat demuxer ({@code -f concat -safe 0 -i list.ffconcat}).
+ *
+ * Entries may carry inpoint/outpoint, so trimmed clips need no per-clip {@code -ss/-to}
+ * arguments and the command line stays the same length whatever the clip count.
+ */
+public final class ConcatList {
+
+    /**
+     * file     : media file
+     * inpoint  : start within the file (0 = from the start)
+     * outpoint : end within the file (0 = to the end)
+     */
+    public record Entry(Path file, double inpoint, double outpoint) {
+        public double durationSec() { return outpoint > 0 ? outpoint - inpoint : -1; }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public ConcatList add(Path file) {
+        return add(file, 0, 0);
+    }
+
+    public ConcatList add(Path file, double inpoint, double outpoint) {
+        entries.add(new Entry(file, Math.max(0, inpoint), outpoint > inpoint ? outpoint : 0));
+        return this;
+    }
+
+    public List<Entry> entries() { return Collections.unmodifiableList(entries); }
+
+    public boolean isEmpty() { return entries.isEmpty(); }
+
+    public String render() {
+        StringBuilder sb = new StringBuilder(32 + entries.size() * 96);
+        sb.append("ffconcat version 1.0\n");
+        for (Entry e : entries) {
+            sb.append(Filters.concatEntry(e.file())).append('\n');
+            if (e.inpoint() > 0) sb.append("inpoint ").append(Filters.sec(e.inpoint())).append('\n');
+            if (e.outpoint() > 0) {
+                sb.append("outpoint ").append(Filters.sec(e.outpoint())).append('\n');
+                sb.append("duration ").append(Filters.sec(e.durationSec())).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    public Path write(Path file) throws IOException {
+        Files.writeString(file, render(), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    /** Input arguments for this list (the file must already be written). */
+    public static List<String> inputArgs(Path listFile) {
+        return new ArrayList<>(List.of("-f", "concat", "-safe", "0", "-i", listFile.toAbsolutePath().toString()));
+    }
+}
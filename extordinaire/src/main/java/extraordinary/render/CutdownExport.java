@@ -0,0 +1,84 @@
+package extraordinary.render;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every cutdown of a project in one job.
+ *
+ * The pieces of all variants ({@link CutdownPlanner}) go through one segment-cache pass, so a
+ * range two variants share is encoded once; each variant is then assembled with stream-copy
+ * concat and the narration ducking, cut at the variant's length.
+ *
+ * {@link #run} returns the first variant's file; every file is in {@link #outputs()}.
+ */
+public final class CutdownExport implements RenderJob {
+
+    private final List<CutdownPlanner.Cut> cuts;
+    private final Path narration;
+    private final List<Path> outputs;
+    private final FrameTarget target;
+    private final EncoderSettings enc;
+    private final SegmentCache cache;
+    private final int parallelism;
+
+    /** @param outputs one file per cut, same order */
+    public CutdownExport(List<CutdownPlanner.Cut> cuts, Path narration, List<Path> outputs,
+                         FrameTarget target, EncoderSettings enc, SegmentCache cache, int parallelism) {
+        if (cuts.isEmpty()) throw new IllegalArgumentException("no cutdowns");
+        if (cuts.size() != outputs.size()) throw new IllegalArgumentException("one output per cutdown");
+        for (CutdownPlanner.Cut c : cuts) {
+            if (c.pieces().isEmpty()) throw new IllegalArgumentException("cutdown " + c.variant().name() + " has no clips");
+        }
+        this.cuts = List.copyOf(cuts);
+        this.narration = narration;
+        this.outputs = List.copyOf(outputs);
+        this.target = target;
+        this.enc = enc;
+        this.cache = cache;
+        this.parallelism = parallelism;
+    }
+
+    /** {@code <name>_<variant>.<ext>} next to the chosen path, one per cut. */
+    public static List<Path> outputsFor(Path chosen, List<CutdownPlanner.Cut> cuts) {
+        String file = chosen.getFileName().toString();
+        int dot = file.lastIndexOf('.');
+        String base = dot > 0 ? file.substring(0, dot) : file;
+        String ext = dot > 0 ? file.substring(dot) : ".mp4";
+        List<Path> out = new ArrayList<>(cuts.size());
+        for (CutdownPlanner.Cut c : cuts) out.add(chosen.resolveSibling(base + "_" + c.variant().name() + ext));
+        return out;
+    }
+
+    public List<Path> outputs() { return outputs; }
+
+    @Override
+    public Path run(RenderContext ctx) throws Exception {
+        Path work = Files.createTempDirectory("extord_export");
+        try {
+            // 1) one segment pass over every variant's pieces
+            List<RenderClip> all = new ArrayList<>();
+            for (CutdownPlanner.Cut c : cuts) all.addAll(c.pieces());
+            SegmentExport segments = new SegmentExport(all, narration, outputs.get(0), target, enc, cache, parallelism);
+            List<String> keys = segments.ensureSegments(ctx, all, work);
+
+            // 2) assemble each variant from its slice of the keys
+            int from = 0;
+            for (int i = 0; i < cuts.size(); i++) {
+                CutdownPlanner.Cut c = cuts.get(i);
+                List<String> mine = keys.subList(from, from + c.pieces().size());
+                from += c.pieces().size();
+                Path list = segments.concatList(mine).write(work.resolve("cut-" + i + ".ffconcat"));
+                ctx.setStage("assemble " + c.variant().name() + " (" + (i + 1) + "/" + cuts.size() + ")");
+                ctx.runFfmpeg(SegmentExport.assembleCommand(list, narration, enc, outputs.get(i), c.durationSec()), -1);
+            }
+
+            cache.evict(keys);
+            return outputs.get(0);
+        } finally {
+            SegmentExport.deleteTree(work);
+        }
+    }
+}
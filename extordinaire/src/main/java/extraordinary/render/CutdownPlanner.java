@@ -0,0 +1,126 @@
+package extraordinary.render;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import extraordinary.core.LayoutEngine;
+import extraordinary.core.LayoutResult;
+import extraordinary.core.LayoutRule;
+import extraordinary.core.SectionSpec;
+import extraordinary.core.SectionTiming;
+
+/**
+ * Plans several length cutdowns (e.g. 15/30/60 s) of one project so shared footage is encoded once.
+ *
+ * Steps:
+ *  1) per variant, {@link LayoutEngine} fits the sections into the variant's window
+ *  2) each section's clips are trimmed to its allocation ({@link LayoutFit#fitSection})
+ *  3) all variants' source ranges are cut at every boundary any variant uses, so each variant
+ *     becomes a list of shared pieces; equal pieces have equal segment cache keys
+ *
+ * Notes:
+ *  - Pure and UI-free: sections come from the caller (App maps its scene tree).
+ *  - A clip with no out point is assumed long enough for whatever it is asked to cover.
+ *  - Sections LayoutEngine adds on its own (HOOK/END/SECTIONn without clips) stay empty.
+ */
+public final class CutdownPlanner {
+    private CutdownPlanner() {}
+
+    /** A cutdown: its name (used in file names) and the window its layout must fit. */
+    public record Variant(String name, LayoutRule rule) {
+        public static Variant seconds(int sec) {
+            return new Variant(sec + "s", new LayoutRule(sec, sec, false));
+        }
+    }
+
+    /** The usual 15 / 30 / 60 second set. */
+    public static List<Variant> standardVariants() {
+        return List.of(Variant.seconds(15), Variant.seconds(30), Variant.seconds(60));
+    }
+
+    /**
+     * Result for one variant.
+     * layout : what LayoutEngine allotted
+     * pieces : shared pieces in playback order (feed to the segment cache)
+     */
+    public record Cut(Variant variant, LayoutResult layout, List<RenderClip> pieces) {
+        public double durationSec() {
+            double s = 0;
+            for (RenderClip p : pieces) s += p.durationSec();
+            return s;
+        }
+    }
+
+    /** Plan every variant; {@code fps} sets the smallest piece worth cutting. */
+    public static List<Cut> plan(List<LayoutFit.Section> sections, List<Variant> variants, int fps) {
+        List<SectionSpec> specs = LayoutFit.specs(sections);
+        Map<String, LayoutFit.Section> byName = new LinkedHashMap<>();
+        for (LayoutFit.Section s : sections) byName.put(s.name(), s);
+
+        // 1) + 2) layout and fill every variant
+        List<LayoutResult> layouts = new ArrayList<>(variants.size());
+        List<List<RenderClip>> fills = new ArrayList<>(variants.size());
+        for (Variant v : variants) {
+            LayoutResult layout = LayoutEngine.layout(specs, v.rule());
+            layouts.add(layout);
+            List<RenderClip> fill = new ArrayList<>();
+            for (SectionTiming t : layout.timeline()) {
+                LayoutFit.Section s = byName.get(t.name());
+                if (s != null) fill.addAll(LayoutFit.fitSection(s, t.duration(), fps));
+            }
+            fills.add(fill);
+        }
+
+        // 3) common cut points per source (path + caption, since the caption is burnt in)
+        double minPiece = 1.0 / fps;
+        Map<String, TreeSet<Double>> cuts = new LinkedHashMap<>();
+        for (List<RenderClip> fill : fills) {
+            for (RenderClip c : fill) {
+                TreeSet<Double> set = cuts.computeIfAbsent(sourceKey(c), k -> new TreeSet<>());
+                addCut(set, c.inSec(), minPiece);
+                addCut(set, c.outSec(), minPiece);
+            }
+        }
+
+        List<Cut> out = new ArrayList<>(variants.size());
+        for (int i = 0; i < variants.size(); i++) {
+            List<RenderClip> pieces = new ArrayList<>();
+            for (RenderClip c : fills.get(i)) split(c, cuts.get(sourceKey(c)), pieces);
+            out.add(new Cut(variants.get(i), layouts.get(i), pieces));
+        }
+        return out;
+    }
+
+    // ---------- cutting ----------
+
+    private static String sourceKey(RenderClip c) {
+        return c.path() + '\u0000' + (c.hasOverlay() ? c.overlayText() : "");
+    }
+
+    /** Add a cut unless one is already within a frame of it. */
+    private static void addCut(TreeSet<Double> set, double t, double minPiece) {
+        Double lo = set.floor(t), hi = set.ceiling(t);
+        if ((lo != null && t - lo < minPiece) || (hi != null && hi - t < minPiece)) return;
+        set.add(t);
+    }
+
+    /** The cut nearest to {@code t}. */
+    private static double snap(TreeSet<Double> set, double t) {
+        Double lo = set.floor(t), hi = set.ceiling(t);
+        if (lo == null) return hi;
+        if (hi == null) return lo;
+        return (t - lo <= hi - t) ? lo : hi;
+    }
+
+    private static void split(RenderClip c, TreeSet<Double> set, List<RenderClip> out) {
+        double a = snap(set, c.inSec());
+        double b = snap(set, c.outSec());
+        for (double cut : set.subSet(a, false, b, true)) {
+            out.add(new RenderClip(c.path(), a, cut, c.overlayText()));
+            a = cut;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package extraordinary.render;
+
+import java.util.List;
+
+/**
+ * Video/audio encoder parameters shared by every segment of an export.
+ *
+ * Notes:
+ *  - Segments joined with the concat demuxer and {@code -c copy} must agree on all of these,
+ *    so audio is always resampled to a fixed rate/layout.
+ *  - {@link #DEFAULT} matches what the single-pass export has always used.
+ */
+public record EncoderSettings(String videoCodec, String pixFmt, int crf, String preset,
+                              String audioCodec, String audioBitrate, int audioRate, int audioChannels) {
+
+    public static final EncoderSettings DEFAULT =
+            new EncoderSettings("libx264", "yuv420p", 18, "veryfast", "aac", "192k", 48000, 2);
+
+    public List<String> videoArgs() {
+        return List.of("-c:v", videoCodec, "-pix_fmt", pixFmt, "-crf", String.valueOf(crf), "-preset", preset);
+    }
+
+    public List<String> audioArgs() {
+        return List.of("-c:a", audioCodec, "-b:a", audioBitrate,
+                "-ar", String.valueOf(audioRate), "-ac", String.valueOf(audioChannels));
+    }
+
+    public EncoderSettings withCrf(int newCrf) {
+        return new EncoderSettings(videoCodec, pixFmt, newCrf, preset, audioCodec, audioBitrate, audioRate, audioChannels);
+    }
+
+    public EncoderSettings withPreset(String newPreset) {
+        return new EncoderSettings(videoCodec, pixFmt, crf, newPreset, audioCodec, audioBitrate, audioRate, audioChannels);
+    }
+
+    /** Part of cache keys: any change here invalidates rendered segments. */
+    public String fingerprint() {
+        return String.join("|", videoCodec, pixFmt, String.valueOf(crf), preset,
+                audioCodec, audioBitrate, String.valueOf(audioRate), String.valueOf(audioChannels));
+    }
+}
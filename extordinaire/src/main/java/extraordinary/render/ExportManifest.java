@@ -0,0 +1,116 @@
+package extraordinary.render;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import extraordinary.helpers.AtomicFiles;
+
+/**
+ * What each output file was last rendered from, so a re-export can tell whether only the
+ * narration changed ({@link NarrationRemix}).
+ *
+ * Notes:
+ *  - Keyed by absolute output path; stored as {@code manifest.json} next to the bed audio files.
+ *  - The output's size and mtime are recorded too: a file replaced or edited elsewhere no
+ *    longer matches, and the next export is a full one.
+ *  - Hand-written JSON (no reflection), written atomically.
+ */
+public final class ExportManifest {
+
+    /** Manifest plus one bed audio file per output; deleting it only makes the next export a full one. */
+    public static final Path DEFAULT_DIR = Paths.get("cache", "remix");
+
+    /**
+     * pictureKey    : hash of everything that shapes the video (clips, target, encoder, mode)
+     * narrationHash : SHA-256 of the narration file's bytes
+     * captionsHash  : hash of the soft caption track's SRT, "" for none (burnt-in captions are in pictureKey)
+     * bed           : the clips' own audio (before ducking), kept to remix against
+     * outputSize/outputMtime : the output as this export left it
+     */
+    public record Entry(String pictureKey, String narrationHash, String captionsHash, String bed, long outputSize, long outputMtime) {}
+
+    private final Path dir;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    public ExportManifest(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        load();
+    }
+
+    public static ExportManifest openDefault() throws IOException {
+        return new ExportManifest(DEFAULT_DIR);
+    }
+
+    /** Where the bed audio for an output is kept. */
+    public Path bedFor(Path output) {
+        return dir.resolve(SegmentCache.hash(key(output)) + ".mka").toAbsolutePath();
+    }
+
+    public synchronized Optional<Entry> find(Path output) {
+        return Optional.ofNullable(entries.get(key(output)));
+    }
+
+    public synchronized void put(Path output, Entry e) throws IOException {
+        entries.put(key(output), e);
+        save();
+    }
+
+    public synchronized void remove(Path output) throws IOException {
+        if (entries.remove(key(output)) != null) save();
+    }
+
+    private static String key(Path output) {
+        return output.toAbsolutePath().normalize().toString();
+    }
+
+    // ---------- persistence ----------
+
+    private Path file() { return dir.resolve("manifest.json"); }
+
+    private void load() throws IOException {
+        if (!Files.exists(file())) return;
+        try {
+            JsonObject root = JsonParser.parseString(Files.readString(file(), StandardCharsets.UTF_8)).getAsJsonObject();
+            for (Map.Entry<String, JsonElement> m : root.entrySet()) {
+                JsonObject o = m.getValue().getAsJsonObject();
+                entries.put(m.getKey(), new Entry(
+                        o.get("pictureKey").getAsString(),
+                        o.get("narrationHash").getAsString(),
+                        o.has("captionsHash") ? o.get("captionsHash").getAsString() : "",
+                        o.get("bed").getAsString(),
+                        o.get("outputSize").getAsLong(),
+                        o.get("outputMtime").getAsLong()));
+            }
+        } catch (IllegalStateException | JsonParseException | NullPointerException | UnsupportedOperationException e) {
+            entries.clear(); // unreadable: start over, the next exports are full ones
+        }
+    }
+
+    private void save() throws IOException {
+        JsonObject root = new JsonObject();
+        for (Map.Entry<String, Entry> m : entries.entrySet()) {
+            Entry e = m.getValue();
+            JsonObject o = new JsonObject();
+            o.addProperty("pictureKey", e.pictureKey());
+            o.addProperty("narrationHash", e.narrationHash());
+            o.addProperty("captionsHash", e.captionsHash());
+            o.addProperty("bed", e.bed());
+            o.addProperty("outputSize", e.outputSize());
+            o.addProperty("outputMtime", e.outputMtime());
+            root.add(m.getKey(), o);
+        }
+        AtomicFiles.writeString(file(), root.toString());
+    }
+}
@@ -0,0 +1,23 @@
+package extraordinary.render;
+
+/**
+ * How App turns the scene tree into a video.
+ */
+public enum ExportMode {
+    /** Normalised per-clip segments from the {@link SegmentCache}, joined with stream copy. */
+    CACHED("Cached segments"),
+    /** Same as CACHED, but missing segments are encoded in parallel, one ffmpeg per clip. */
+    PARALLEL("Parallel segments"),
+    /** Same as PARALLEL, but conforming clips are stream-copied and only their trim GOPs encoded. */
+    SMART("Smart render"),
+    /** One ffmpeg process with one filter graph over every clip (no cache). */
+    SINGLE_PASS("Single pass"),
+    /** Single-pass composition packaged as an HLS bitrate ladder (360p/720p/1080p) into a folder. */
+    HLS("HLS ladder");
+
+    private final String label;
+
+    ExportMode(String label) { this.label = label; }
+
+    @Override public String toString() { return label; }
+}
@@ -0,0 +1,60 @@
+package extraordinary.render;
+
+/**
+ * Parses ffmpeg {@code -progress pipe:1} output.
+ *
+ * ffmpeg writes key=value lines and closes each block with {@code progress=continue}
+ * (or {@code progress=end} on the last one). Feed every line to {@link #accept(String)};
+ * a {@link Sample} is returned when a block completes, null otherwise.
+ *
+ * Not thread-safe; use one parser per process.
+ */
+public final class FfmpegProgressParser {
+
+    /** One progress block. Unknown values are -1 (ffmpeg prints N/A early on). */
+    public record Sample(long frame, double fps, double outTimeSec, double speed, long totalSizeBytes, boolean end) {}
+
+    private long frame = -1;
+    private double fps = -1;
+    private double outTimeSec = -1;
+    private double speed = -1;
+    private long totalSize = -1;
+
+    public Sample accept(String line) {
+        if (line == null) return null;
+        int eq = line.indexOf('=');
+        if (eq <= 0) return null;
+        String key = line.substring(0, eq).trim();
+        String value = line.substring(eq + 1).trim();
+
+        switch (key) {
+            case "frame" -> frame = parseLong(value);
+            case "fps" -> fps = parseDouble(value);
+            // out_time_ms is also microseconds (long-standing ffmpeg quirk); prefer out_time_us
+            case "out_time_us", "out_time_ms" -> {
+                long us = parseLong(value);
+                if (us >= 0) outTimeSec = us / 1_000_000.0;
+            }
+            case "total_size" -> totalSize = parseLong(value);
+            case "speed" -> speed = parseDouble(value.endsWith("x") ? value.substring(0, value.length() - 1) : value);
+            case "progress" -> {
+                return new Sample(frame, fps, outTimeSec, speed, totalSize, "end".equals(value));
+            }
+            default -> { }
+        }
+        return null;
+    }
+
+    private static long parseLong(String s) {
+        try { return Long.parseLong(s); } catch (NumberFormatException e) { return -1; }
+    }
+
+    private static double parseDouble(String s) {
+        try {
+            double d = Double.parseDouble(s);
+            return (Double.isNaN(d) || d < 0) ? -1 : d;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package extraordinary.render;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deterministic model of an ffmpeg filtergraph.
+ *
+ * Chains are rendered in insertion order, one per line, so the same inputs always produce the
+ * same script text (easy to diff and to assert on). Labels are stored without brackets.
+ *
+ * Usage:
+ *   FilterGraph g = new FilterGraph();
+ *   g.chain(List.of("0:v"), List.of("fps=30", "scale=1920:-2"), List.of("v0"));
+ *   g.writeScript(work.resolve("graph.txt"));   // -filter_complex_script graph.txt
+ */
+public final class FilterGraph {
+
+    /** One chain: {@code [in1][in2]f1,f2,f3[out1][out2]}. */
+    public record Chain(List<String> inputs, List<String> filters, List<String> outputs) {
+        public Chain {
+            inputs = List.copyOf(inputs);
+            filters = List.copyOf(filters);
+            outputs = List.copyOf(outputs);
+            if (filters.isEmpty()) throw new IllegalArgumentException("chain without filters");
+        }
+
+        public String render() {
+            StringBuilder sb = new StringBuilder();
+            for (String in : inputs) sb.append('[').append(in).append(']');
+            sb.append(String.join(",", filters));
+            for (String out : outputs) sb.append('[').append(out).append(']');
+            return sb.toString();
+        }
+    }
+
+    private final List<Chain> chains = new ArrayList<>();
+    private final Set<String> outputLabels = new HashSet<>();
+
+    /** Append a chain; output labels must be unique across the graph. */
+    public FilterGraph chain(List<String> inputs, List<String> filters, List<String> outputs) {
+        for (String out : outputs) {
+            if (!outputLabels.add(out)) throw new IllegalArgumentException("duplicate label: " + out);
+        }
+        chains.add(new Chain(inputs, filters, outputs));
+        return this;
+    }
+
+    /** Single-input, single-output convenience. */
+    public FilterGraph chain(String input, String filter, String output) {
+        return chain(List.of(input), List.of(filter), List.of(output));
+    }
+
+    public List<Chain> chains() { return Collections.unmodifiableList(chains); }
+
+    /** Script text: one chain per line, separated by ';'. */
+    public String render() {
+        StringBuilder sb = new StringBuilder(chains.size() * 96);
+        for (int i = 0; i < chains.size(); i++) {
+            if (i > 0) sb.append(";\n");
+            sb.append(chains.get(i).render());
+        }
+        return sb.append('\n').toString();
+    }
+
+    /** Write the script for {@code -filter_complex_script}. */
+    public Path writeScript(Path file) throws IOException {
+        Files.writeString(file, render(), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Override public String toString() { return render(); }
+}
@@ -0,0 +1,66 @@
+package extraordinary.render;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * ffmpeg filter snippets shared by every export path, so they all normalise clips the same way.
+ */
+public final class Filters {
+    private Filters() {}
+
+    /** Narration ducking: the first input is compressed whenever the second (narration) is loud. */
+    public static final String DUCK = "sidechaincompress=threshold=0.05:ratio=8:attack=5:release=200:makeup=3";
+
+    /** fps + letterbox to the target frame, square pixels. */
+    public static String conform(FrameTarget t) {
+        return "fps=" + t.fps() + "," + scalePad(t);
+    }
+
+    /** Letterbox to the target frame, square pixels. */
+    public static String scalePad(FrameTarget t) {
+        return String.format(Locale.US,
+                "scale=w=%d:h=%d:force_original_aspect_ratio=decrease,pad=%d:%d:(ow-iw)/2:(oh-ih)/2,setsar=1",
+                t.width(), t.height(), t.width(), t.height());
+    }
+
+    /**
+     * Caption drawn from a text file: no escaping of the caption itself is needed, and
+     * {@code expansion=none} keeps '%' literal.
+     */
+    public static String drawtextFile(Path textFile) {
+        return "drawtext=expansion=none:textfile='" + escapePath(textFile) + "'"
+                + ":x=(w-text_w)/2:y=h-200:fontsize=48:fontcolor=white:box=1:boxcolor=black@0.5:boxborderw=10";
+    }
+
+    /** Caption shown only from {@code fromSec} to {@code toSec} of the stream (toSec <= 0 = to the end). */
+    public static String drawtextFile(Path textFile, double fromSec, double toSec) {
+        String when = (toSec > 0)
+                ? "between(t," + sec(fromSec) + "," + sec(toSec) + ")"
+                : "gte(t," + sec(fromSec) + ")";
+        return drawtextFile(textFile) + ":enable='" + when + "'";
+    }
+
+    /** Burn in a whole {@link SubtitleTrack} (ASS, styled for the frame) in one filter. */
+    public static String subtitlesFile(Path assFile) {
+        return "subtitles=filename='" + escapePath(assFile) + "'";
+    }
+
+    /** A path as a quoted filter option value (forward slashes, escaped drive colon and quotes). */
+    public static String escapePath(Path p) {
+        return p.toAbsolutePath().toString()
+                .replace('\\', '/')
+                .replace(":", "\\:")
+                .replace("'", "'\\\\''");
+    }
+
+    /** One line of an ffconcat list: {@code file '<path>'} with single quotes escaped. */
+    public static String concatEntry(Path p) {
+        return "file '" + p.toAbsolutePath().toString().replace("'", "'\\''") + "'";
+    }
+
+    /** Seconds as an ffmpeg time argument (plain decimal, no exponent). */
+    public static String sec(double s) {
+        return String.format(Locale.US, "%.3f", s);
+    }
+}
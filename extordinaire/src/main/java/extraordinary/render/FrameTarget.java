@@ -0,0 +1,22 @@
+package extraordinary.render;
+
+/**
+ * Output frame geometry and rate every clip is normalised to.
+ */
+public record FrameTarget(String name, int width, int height, int fps) {
+
+    public static final FrameTarget LANDSCAPE = new FrameTarget("landscape", 1920, 1080, 30);
+    public static final FrameTarget PORTRAIT  = new FrameTarget("portrait", 1080, 1920, 30);
+    public static final FrameTarget SQUARE    = new FrameTarget("square", 1080, 1080, 30);
+
+    public FrameTarget {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("width/height must be > 0");
+        if ((width & 1) != 0 || (height & 1) != 0) throw new IllegalArgumentException("yuv420p needs even width/height");
+        if (fps <= 0) throw new IllegalArgumentException("fps must be > 0");
+    }
+
+    /** Part of cache keys: any change here invalidates rendered segments. */
+    public String fingerprint() {
+        return width + "x" + height + "@" + fps;
+    }
+}
@@ -0,0 +1,188 @@
+package extraordinary.render;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import extraordinary.media.MediaProbeService;
+
+/**
+ * HLS (fMP4 segments) bitrate ladder straight from the composed timeline, in one ffmpeg process.
+ *
+ * The single-pass graph composes the timeline once at the target frame; its video is then
+ * {@code split} and scaled to every rung, its audio {@code asplit}, and the HLS muxer writes
+ * {@code <dir>/<rung>/index.m3u8} + segments and {@code <dir>/master.m3u8}.
+ *
+ * Segment boundaries: keyframes are forced on a regular grid and at every cue (section start),
+ * with scene-cut keyframes off, and {@code -hls_time} is kept below the smallest keyframe gap,
+ * so every forced keyframe starts a segment and sections begin on a segment boundary.
+ */
+public final class HlsExport implements RenderJob {
+
+    /**
+     * One rendition.
+     * shortSide : height for landscape targets, width for portrait ones
+     */
+    public record Rung(String name, int shortSide, String bitrate, String maxrate, String bufsize) {
+
+        /** Output size keeping the target's aspect, even dimensions. */
+        public int[] sizeFor(FrameTarget t) {
+            int targetShort = Math.min(t.width(), t.height());
+            int w = even((double) t.width() * shortSide / targetShort);
+            int h = even((double) t.height() * shortSide / targetShort);
+            return new int[] { w, h };
+        }
+
+        private static int even(double v) { return Math.max(2, (int) Math.round(v / 2) * 2); }
+    }
+
+    public static final List<Rung> DEFAULT_LADDER = List.of(
+            new Rung("360p", 360, "800k", "856k", "1200k"),
+            new Rung("720p", 720, "2800k", "2996k", "4200k"),
+            new Rung("1080p", 1080, "5000k", "5350k", "7500k"));
+
+    /** Target segment length. */
+    public static final double SEGMENT_SEC = 4.0;
+    /** Forced keyframes closer than this to a cue are dropped (the cue wins). */
+    public static final double MIN_GAP_SEC = 1.0;
+
+    private final List<RenderClip> clips;
+    private final Path narration;
+    private final Path outDir;
+    private final FrameTarget target;
+    private final EncoderSettings enc;
+    private final List<Rung> ladder;
+    private final List<Double> cues;
+    private final MediaProbeService probes; // null = run ffprobe per clip
+
+    /** @param cues section start times (seconds on the output timeline) to start segments at */
+    public HlsExport(List<RenderClip> clips, Path narration, Path outDir, FrameTarget target,
+                     EncoderSettings enc, List<Rung> ladder, List<Double> cues) {
+        this(clips, narration, outDir, target, enc, ladder, cues, null);
+    }
+
+    private HlsExport(List<RenderClip> clips, Path narration, Path outDir, FrameTarget target,
+                      EncoderSettings enc, List<Rung> ladder, List<Double> cues, MediaProbeService probes) {
+        if (clips.isEmpty()) throw new IllegalArgumentException("no clips");
+        if (ladder.isEmpty()) throw new IllegalArgumentException("empty ladder");
+        this.clips = List.copyOf(clips);
+        this.narration = narration;
+        this.outDir = outDir;
+        this.target = target;
+        this.enc = enc;
+        this.ladder = List.copyOf(ladder);
+        this.cues = List.copyOf(cues);
+        this.probes = probes;
+    }
+
+    /** Returns a copy that groups clips using probes from {@code service}. */
+    public HlsExport withProbes(MediaProbeService service) {
+        return new HlsExport(clips, narration, outDir, target, enc, ladder, cues, service);
+    }
+
+    @Override
+    public Path run(RenderContext ctx) throws Exception {
+        Path work = Files.createTempDirectory("extord_export");
+        try {
+            SinglePassExport.Plan plan = compile(clips, target, ladder, work,
+                    SinglePassExport.byStreams(SinglePassExport.prober(probes)));
+            plan.write();
+            for (Rung r : ladder) Files.createDirectories(outDir.resolve(r.name()));
+            ctx.setExpectedSeconds(plan.durationSec());
+            ctx.setStage("HLS " + ladder.size() + " renditions (" + clips.size() + " clips)");
+            ctx.runFfmpeg(command(plan, narration, enc, ladder,
+                    keyframeTimes(cues, plan.durationSec(), SEGMENT_SEC), outDir), plan.durationSec());
+            return outDir.resolve("master.m3u8");
+        } finally {
+            SegmentExport.deleteTree(work);
+        }
+    }
+
+    // ---------- compiler ----------
+
+    /** The single-pass plan plus one scaled video / split audio output pair per rung. */
+    public static SinglePassExport.Plan compile(List<RenderClip> clips, FrameTarget t, List<Rung> ladder, Path workDir,
+                                                Function<RenderClip, String> groupKey) {
+        SinglePassExport.Plan plan = SinglePassExport.compile(clips, t, workDir, groupKey);
+        FilterGraph g = plan.graph();
+        int n = ladder.size();
+        List<String> vs = new ArrayList<>(n), as = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) { vs.add("hs" + i); as.add("ha" + i); }
+        if (n > 1) {
+            g.chain(List.of(SinglePassExport.VIDEO_OUT), List.of("split=" + n), vs);
+            g.chain(List.of(SinglePassExport.AUDIO_OUT), List.of("asplit=" + n), as);
+        } else {
+            g.chain(SinglePassExport.VIDEO_OUT, "null", vs.get(0));
+            g.chain(SinglePassExport.AUDIO_OUT, "anull", as.get(0));
+        }
+        for (int i = 0; i < n; i++) {
+            int[] wh = ladder.get(i).sizeFor(t);
+            g.chain(vs.get(i), "scale=" + wh[0] + ":" + wh[1], "hv" + i);
+        }
+        return plan;
+    }
+
+    /**
+     * Forced keyframe times: a {@code segSec} grid up to {@code durationSec} plus the cues; grid
+     * points within {@link #MIN_GAP_SEC} of a cue are dropped. Empty if the duration is unknown.
+     */
+    public static List<Double> keyframeTimes(List<Double> cues, double durationSec, double segSec) {
+        if (durationSec <= 0) return List.of();
+        TreeSet<Double> cueSet = new TreeSet<>();
+        for (Double c : cues) if (c >= 0 && c < durationSec) cueSet.add(c);
+        TreeSet<Double> out = new TreeSet<>(cueSet);
+        out.add(0.0);
+        for (double t = segSec; t < durationSec; t += segSec) {
+            Double lo = cueSet.floor(t), hi = cueSet.ceiling(t);
+            if ((lo != null && t - lo < MIN_GAP_SEC) || (hi != null && hi - t < MIN_GAP_SEC)) continue;
+            out.add(t);
+        }
+        return new ArrayList<>(out);
+    }
+
+    public static List<String> command(SinglePassExport.Plan plan, Path narration, EncoderSettings enc,
+                                       List<Rung> ladder, List<Double> keyframes, Path outDir) {
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y"));
+        for (int i = 0; i < plan.inputs().size(); i++) cmd.addAll(ConcatList.inputArgs(plan.listFile(i)));
+        cmd.add("-i"); cmd.add(narration.toAbsolutePath().toString());
+        cmd.add("-filter_complex_script"); cmd.add(plan.graphFile().toAbsolutePath().toString());
+
+        StringBuilder streamMap = new StringBuilder();
+        for (int i = 0; i < ladder.size(); i++) {
+            Rung r = ladder.get(i);
+            cmd.add("-map"); cmd.add("[hv" + i + "]");
+            cmd.add("-map"); cmd.add("[ha" + i + "]");
+            cmd.add("-b:v:" + i); cmd.add(r.bitrate());
+            cmd.add("-maxrate:v:" + i); cmd.add(r.maxrate());
+            cmd.add("-bufsize:v:" + i); cmd.add(r.bufsize());
+            if (i > 0) streamMap.append(' ');
+            streamMap.append("v:").append(i).append(",a:").append(i).append(",name:").append(r.name());
+        }
+        cmd.addAll(List.of("-c:v", enc.videoCodec(), "-pix_fmt", enc.pixFmt(), "-preset", enc.preset()));
+        cmd.addAll(List.of("-sc_threshold", "0", "-g", "100000"));
+        cmd.add("-force_key_frames");
+        if (keyframes.isEmpty()) {
+            cmd.add(String.format(Locale.US, "expr:gte(t,n_forced*%.3f)", SEGMENT_SEC));
+        } else {
+            List<String> times = new ArrayList<>(keyframes.size());
+            for (double k : keyframes) times.add(Filters.sec(k));
+            cmd.add(String.join(",", times));
+        }
+        cmd.addAll(enc.audioArgs());
+        cmd.addAll(List.of(
+                "-f", "hls",
+                "-hls_time", Filters.sec(keyframes.isEmpty() ? SEGMENT_SEC : MIN_GAP_SEC / 2),
+                "-hls_playlist_type", "vod",
+                "-hls_segment_type", "fmp4",
+                "-hls_flags", "independent_segments",
+                "-hls_segment_filename", outDir.toAbsolutePath().resolve("%v").resolve("seg_%05d.m4s").toString(),
+                "-master_pl_name", "master.m3u8",
+                "-var_stream_map", streamMap.toString(),
+                outDir.toAbsolutePath().resolve("%v").resolve("index.m3u8").toString()));
+        return cmd;
+    }
+}
@@ -0,0 +1,153 @@
+package extraordinary.render;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import extraordinary.core.LayoutEngine;
+import extraordinary.core.LayoutResult;
+import extraordinary.core.LayoutRule;
+import extraordinary.core.SectionSpec;
+import extraordinary.core.SectionTiming;
+
+/**
+ * Compiles the project's sections into the clips an export should encode, fitted to a
+ * {@link LayoutRule}: {@link LayoutEngine} allots each section its seconds, then every clip of
+ * the section is trimmed so the section fills exactly that allotment.
+ *
+ * The result is a normal clip list (shorter in/out ranges), so the segment/single-pass exports
+ * decode and encode only the frames that ship instead of whole clips.
+ *
+ * Notes:
+ *  - A section that is too long is shortened proportionally: every clip keeps its in point and
+ *    gives up the same fraction of its length, so no clip silently disappears. Clips whose
+ *    share is under one frame are dropped.
+ *  - A section with less footage than its allotment keeps all of it (the export ends up shorter).
+ *  - A clip with no out point is assumed long enough; it counts as a whole allotment and gets
+ *    a fixed out point.
+ *  - Cut points are whole frames at {@code fps}, accumulated per section so rounding never drifts.
+ *  - Pure and UI-free: sections come from the caller (App maps its scene tree).
+ */
+public final class LayoutFit {
+    private LayoutFit() {}
+
+    /** One section of the project: its clips in order, {@code weight} as for {@link SectionSpec}. */
+    public record Section(String name, double weight, List<RenderClip> clips) {
+        public Section {
+            clips = List.copyOf(clips);
+        }
+
+        /** Usable footage in seconds, or -1 if some clip has no out point. */
+        public double footageSec() {
+            double s = 0;
+            for (RenderClip c : clips) {
+                if (c.openEnded()) return -1;
+                s += c.durationSec();
+            }
+            return s;
+        }
+    }
+
+    /** A fitted clip and the output time it starts at. */
+    public record Placed(String section, double startSec, RenderClip clip) {}
+
+    /**
+     * Compiled plan.
+     * layout     : what LayoutEngine allotted
+     * placed     : fitted clips in playback order
+     * footageSec : length of the clips as edited (before fitting), -1 if unknown
+     */
+    public record Plan(LayoutResult layout, List<Placed> placed, double footageSec) {
+        public Plan {
+            placed = List.copyOf(placed);
+        }
+
+        /** The clips to export. */
+        public List<RenderClip> clips() {
+            List<RenderClip> out = new ArrayList<>(placed.size());
+            for (Placed p : placed) out.add(p.clip());
+            return out;
+        }
+
+        public double durationSec() {
+            double s = 0;
+            for (Placed p : placed) s += p.clip().durationSec();
+            return s;
+        }
+
+        /** Output time at which each non-empty section starts. */
+        public List<Double> sectionStarts() {
+            List<Double> out = new ArrayList<>();
+            String cur = null;
+            for (Placed p : placed) {
+                if (!p.section().equals(cur)) out.add(p.startSec());
+                cur = p.section();
+            }
+            return out;
+        }
+    }
+
+    /** Lay out the sections under {@code rule} and fit their clips to it. */
+    public static Plan compile(List<Section> sections, LayoutRule rule, int fps) {
+        if (fps <= 0) throw new IllegalArgumentException("fps must be > 0");
+        Map<String, Section> byName = new LinkedHashMap<>();
+        double footage = 0;
+        for (Section s : sections) {
+            byName.put(s.name(), s);
+            double f = s.footageSec();
+            footage = (footage < 0 || f < 0) ? -1 : footage + f;
+        }
+
+        LayoutResult layout = LayoutEngine.layout(specs(sections), rule);
+        List<Placed> placed = new ArrayList<>();
+        double t = 0;
+        for (SectionTiming st : layout.timeline()) {
+            Section s = byName.get(st.name());
+            if (s == null) continue; // added by LayoutEngine, no clips
+            for (RenderClip c : fitSection(s, st.duration(), fps)) {
+                placed.add(new Placed(s.name(), t, c));
+                t += c.durationSec();
+            }
+        }
+        return new Plan(layout, placed, footage);
+    }
+
+    /** Section specs whose max is the footage available, so no section is allotted more than it has. */
+    static List<SectionSpec> specs(List<Section> sections) {
+        List<SectionSpec> specs = new ArrayList<>(sections.size());
+        for (Section s : sections) {
+            double footage = s.footageSec();
+            Integer max = footage >= 0 ? (int) Math.floor(footage) : null;
+            specs.add(new SectionSpec(s.name(), s.weight(), null, max));
+        }
+        return specs;
+    }
+
+    /** The section's clips trimmed (from their out points, proportionally) to at most {@code sec}. */
+    public static List<RenderClip> fitSection(Section s, double sec, int fps) {
+        List<RenderClip> out = new ArrayList<>(s.clips().size());
+        if (sec <= 0) return out;
+
+        double nominal = 0;
+        for (RenderClip c : s.clips()) nominal += length(c, sec);
+        double scale = (nominal > sec) ? sec / nominal : 1.0;
+
+        double want = 0;  // unrounded section position after each clip
+        double done = 0;  // frame-aligned position actually used
+        for (RenderClip c : s.clips()) {
+            double len = length(c, sec);
+            want += len * scale;
+            double end = Math.round(want * fps) / (double) fps;
+            double keep = Math.min(len, end - done);
+            if (keep * fps < 0.5) continue; // under one frame
+            out.add(new RenderClip(c.path(), c.inSec(), c.inSec() + keep, c.overlayText()));
+            done += keep;
+        }
+        return out;
+    }
+
+    private static double length(RenderClip c, double sectionSec) {
+        return c.openEnded() ? sectionSec : c.durationSec();
+    }
+}
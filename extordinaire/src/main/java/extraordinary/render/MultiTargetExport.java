@@ -0,0 +1,151 @@
+package extraordinary.render;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import extraordinary.media.MediaProbeService;
+
+/**
+ * Several frame targets (e.g. landscape + portrait) from one ffmpeg process.
+ *
+ * Built on the single-pass compiler's input runs: each run is decoded once and its video
+ * {@code split} into one branch per target (fps, scale/pad, captions). Each target concatenates
+ * its own branches; the audio is normalised, concatenated and ducked once, then {@code asplit}
+ * to every output. All outputs are encoded in the same invocation.
+ *
+ * Notes:
+ *  - Output labels are {@code vcat<k>} / {@code mix<k>} for target k.
+ *  - {@link #run} returns the first target's file; every file is in {@link #outputs()}.
+ */
+public final class MultiTargetExport implements RenderJob {
+
+    private final List<RenderClip> clips;
+    private final Path narration;
+    private final List<FrameTarget> targets;
+    private final List<Path> outputs;
+    private final EncoderSettings enc;
+    private final MediaProbeService probes; // null = run ffprobe per clip
+
+    /** @param outputs one file per target, same order */
+    public MultiTargetExport(List<RenderClip> clips, Path narration, List<FrameTarget> targets,
+                             List<Path> outputs, EncoderSettings enc) {
+        this(clips, narration, targets, outputs, enc, null);
+    }
+
+    private MultiTargetExport(List<RenderClip> clips, Path narration, List<FrameTarget> targets,
+                              List<Path> outputs, EncoderSettings enc, MediaProbeService probes) {
+        if (clips.isEmpty()) throw new IllegalArgumentException("no clips");
+        if (targets.isEmpty()) throw new IllegalArgumentException("no targets");
+        if (targets.size() != outputs.size()) throw new IllegalArgumentException("one output per target");
+        this.clips = List.copyOf(clips);
+        this.narration = narration;
+        this.targets = List.copyOf(targets);
+        this.outputs = List.copyOf(outputs);
+        this.enc = enc;
+        this.probes = probes;
+    }
+
+    /** Every target of a set, output names from {@link TargetSet#outputFor}. */
+    public static MultiTargetExport of(List<RenderClip> clips, Path narration, TargetSet set, Path chosen, EncoderSettings enc) {
+        List<Path> outs = new ArrayList<>();
+        for (FrameTarget t : set.targets()) outs.add(set.outputFor(chosen, t));
+        return new MultiTargetExport(clips, narration, set.targets(), outs, enc);
+    }
+
+    public List<Path> outputs() { return outputs; }
+
+    /** Returns a copy that groups clips using probes from {@code service}. */
+    public MultiTargetExport withProbes(MediaProbeService service) {
+        return new MultiTargetExport(clips, narration, targets, outputs, enc, service);
+    }
+
+    @Override
+    public Path run(RenderContext ctx) throws Exception {
+        Path work = Files.createTempDirectory("extord_export");
+        try {
+            SinglePassExport.Plan plan = compile(clips, targets, work,
+                    SinglePassExport.byStreams(SinglePassExport.prober(probes)));
+            plan.write();
+            ctx.setExpectedSeconds(plan.durationSec());
+            ctx.setStage("render " + targets.size() + " targets (" + clips.size() + " clips, "
+                    + plan.inputs().size() + " inputs)");
+            ctx.runFfmpeg(command(plan, narration, targets, enc, outputs), plan.durationSec());
+            return outputs.get(0);
+        } finally {
+            SegmentExport.deleteTree(work);
+        }
+    }
+
+    public static String videoOut(int k) { return SinglePassExport.VIDEO_OUT + k; }
+    public static String audioOut(int k) { return SinglePassExport.AUDIO_OUT + k; }
+
+    // ---------- compiler ----------
+
+    /** Compile clips into inputs + one graph with an output pair per target. Pure. */
+    public static SinglePassExport.Plan compile(List<RenderClip> clips, List<FrameTarget> targets, Path workDir,
+                                                Function<RenderClip, String> groupKey) {
+        SinglePassExport.Runs runs = SinglePassExport.group(clips, workDir, groupKey);
+        FilterGraph g = new FilterGraph();
+        int n = runs.inputs().size();
+        int k = targets.size();
+
+        List<List<String>> perTarget = new ArrayList<>(k);
+        for (int j = 0; j < k; j++) perTarget.add(new ArrayList<>(n));
+        List<String> audioIn = new ArrayList<>(n);
+
+        for (int i = 0; i < n; i++) {
+            List<String> branches = new ArrayList<>(k);
+            for (int j = 0; j < k; j++) branches.add("s" + i + "_" + j);
+            if (k > 1) g.chain(List.of(i + ":v"), List.of("split=" + k), branches);
+            else g.chain(i + ":v", "null", branches.get(0));
+
+            for (int j = 0; j < k; j++) {
+                String label = "v" + i + "_" + j;
+                g.chain(List.of(branches.get(j)), SinglePassExport.videoFilters(runs, i, targets.get(j)), List.of(label));
+                perTarget.get(j).add(label);
+            }
+            SinglePassExport.audioChain(g, runs, i, "a" + i);
+            audioIn.add("a" + i);
+        }
+
+        for (int j = 0; j < k; j++) {
+            if (n > 1) g.chain(perTarget.get(j), List.of("concat=n=" + n + ":v=1:a=0"), List.of(videoOut(j)));
+            else g.chain(perTarget.get(j).get(0), "null", videoOut(j));
+        }
+        if (n > 1) g.chain(audioIn, List.of("concat=n=" + n + ":v=0:a=1"), List.of("acat"));
+        else g.chain("a0", "anull", "acat");
+        g.chain(n + ":a", "anull", "nar");
+
+        List<String> mixes = new ArrayList<>(k);
+        for (int j = 0; j < k; j++) mixes.add(audioOut(j));
+        if (k > 1) {
+            g.chain(List.of("acat", "nar"), List.of(Filters.DUCK), List.of("mix"));
+            g.chain(List.of("mix"), List.of("asplit=" + k), mixes);
+        } else {
+            g.chain(List.of("acat", "nar"), List.of(Filters.DUCK), mixes);
+        }
+        return new SinglePassExport.Plan(workDir, runs.inputs(), g, runs.captions(), runs.durationSec());
+    }
+
+    /** Full ffmpeg command: shared inputs and graph, then one mapped output per target. */
+    public static List<String> command(SinglePassExport.Plan plan, Path narration, List<FrameTarget> targets,
+                                       EncoderSettings enc, List<Path> outputs) {
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y"));
+        for (int i = 0; i < plan.inputs().size(); i++) cmd.addAll(ConcatList.inputArgs(plan.listFile(i)));
+        cmd.add("-i"); cmd.add(narration.toAbsolutePath().toString());
+        cmd.add("-filter_complex_script"); cmd.add(plan.graphFile().toAbsolutePath().toString());
+        for (int j = 0; j < targets.size(); j++) {
+            cmd.add("-map"); cmd.add("[" + videoOut(j) + "]");
+            cmd.add("-map"); cmd.add("[" + audioOut(j) + "]");
+            cmd.addAll(enc.videoArgs());
+            cmd.add("-r"); cmd.add(String.valueOf(targets.get(j).fps()));
+            cmd.addAll(enc.audioArgs());
+            cmd.add("-movflags"); cmd.add("+faststart");
+            cmd.add(outputs.get(j).toAbsolutePath().toString());
+        }
+        return cmd;
+    }
+}
@@ -0,0 +1,190 @@
+package extraordinary.render;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import extraordinary.helpers.AtomicFiles;
+
+/**
+ * Export wrapper with a fast path for narration-only and soft-caption-only changes.
+ *
+ * Each full export also writes the clips' own audio (the "bed", before ducking) and records in
+ * the {@link ExportManifest} what the output was made from. On the next export of the same file:
+ *  - same picture, narration, captions -> nothing to do;
+ *  - same picture, new narration       -> duck the bed under the new narration and mux it against
+ *                                         the previous output's video with {@code -c:v copy};
+ *  - same picture, new soft captions   -> copy video and audio, swap in the new mov_text track;
+ *  - anything else                     -> full export (which refreshes bed and manifest).
+ *
+ * Soft captions ({@link OverlayMode#SOFT}) are kept out of the picture key: they never touch the
+ * video, so editing a caption must not invalidate it. Burnt-in captions belong in the recipe.
+ */
+public final class NarrationRemix implements RenderJob {
+
+    private final List<RenderClip> clips;
+    private final FrameTarget target;
+    private final EncoderSettings enc;
+    private final String recipe;
+    private final Path narration;
+    private final Path output;
+    private final ExportManifest manifest;
+    private final Function<Path, RenderJob> fullExport;
+    private final SubtitleTrack softSubtitles;
+
+    /**
+     * @param recipe     anything else that shapes the picture (e.g. the export mode)
+     * @param fullExport builds the full export, given the path its bed audio must be written to
+     */
+    public NarrationRemix(List<RenderClip> clips, FrameTarget target, EncoderSettings enc, String recipe,
+                          Path narration, Path output, ExportManifest manifest, Function<Path, RenderJob> fullExport) {
+        this.clips = List.copyOf(clips);
+        this.target = target;
+        this.enc = enc;
+        this.recipe = recipe;
+        this.narration = narration;
+        this.output = output;
+        this.manifest = manifest;
+        this.fullExport = fullExport;
+        this.softSubtitles = null;
+    }
+
+    private NarrationRemix(NarrationRemix o, SubtitleTrack softSubtitles) {
+        this.clips = o.clips;
+        this.target = o.target;
+        this.enc = o.enc;
+        this.recipe = o.recipe;
+        this.narration = o.narration;
+        this.output = o.output;
+        this.manifest = o.manifest;
+        this.fullExport = o.fullExport;
+        this.softSubtitles = softSubtitles;
+    }
+
+    /** Returns a copy that treats {@code track} as the output's soft (mov_text) caption track. */
+    public NarrationRemix withSoftSubtitles(SubtitleTrack track) {
+        return new NarrationRemix(this, track);
+    }
+
+    @Override
+    public Path run(RenderContext ctx) throws Exception {
+        ctx.setStage("check previous export");
+        String picture = pictureKey(clips, target, enc, recipe);
+        String voice = SegmentCache.fileHash(narration);
+        String captions = captionsKey(softSubtitles);
+
+        Optional<ExportManifest.Entry> prev = manifest.find(output);
+        if (prev.isPresent() && reusable(prev.get(), picture)) {
+            ExportManifest.Entry e = prev.get();
+            boolean newVoice = !e.narrationHash().equals(voice);
+            boolean newCaptions = !e.captionsHash().equals(captions);
+            if (!newVoice && !newCaptions) {
+                ctx.setStage("unchanged");
+                return output;
+            }
+            ctx.setStage(newVoice ? "narration remix" : "captions remux");
+            Path tmp = output.resolveSibling(output.getFileName() + ".remix.tmp.mp4");
+            Path srt = output.resolveSibling(output.getFileName() + ".remix.tmp.srt");
+            try {
+                Path subs = null;
+                if (newCaptions && !captions.isEmpty()) {
+                    Files.writeString(srt, softSubtitles.toSrt(), StandardCharsets.UTF_8);
+                    subs = srt;
+                }
+                ctx.runFfmpeg(remixCommand(output, newVoice ? Path.of(e.bed()) : null, newVoice ? narration : null,
+                        newCaptions, subs, enc, tmp), -1);
+                AtomicFiles.commit(tmp, output);
+            } finally {
+                Files.deleteIfExists(tmp);
+                Files.deleteIfExists(srt);
+            }
+            record(picture, voice, captions, Path.of(e.bed()));
+            return output;
+        }
+
+        manifest.remove(output); // a cancelled full export must not leave a stale entry behind
+        Path bed = manifest.bedFor(output);
+        fullExport.apply(bed).run(ctx);
+        record(picture, voice, captions, bed);
+        return output;
+    }
+
+    private boolean reusable(ExportManifest.Entry e, String picture) throws IOException {
+        if (!e.pictureKey().equals(picture)) return false;
+        if (!Files.isRegularFile(output) || !Files.isRegularFile(Path.of(e.bed()))) return false;
+        BasicFileAttributes a = Files.readAttributes(output, BasicFileAttributes.class);
+        return a.size() == e.outputSize() && a.lastModifiedTime().toMillis() == e.outputMtime();
+    }
+
+    private void record(String picture, String voice, String captions, Path bed) throws IOException {
+        BasicFileAttributes a = Files.readAttributes(output, BasicFileAttributes.class);
+        manifest.put(output, new ExportManifest.Entry(picture, voice, captions, bed.toString(),
+                a.size(), a.lastModifiedTime().toMillis()));
+    }
+
+    // ---------- keys ----------
+
+    /** Hash of the segment keys of every clip (sources by size+mtime) plus target, encoder and recipe. */
+    public static String pictureKey(List<RenderClip> clips, FrameTarget target, EncoderSettings enc, String recipe) throws IOException {
+        List<String> parts = new ArrayList<>(clips.size() + 1);
+        parts.add(recipe);
+        for (RenderClip c : clips) parts.add(SegmentCache.key(c, target, enc));
+        return SegmentCache.hash(parts.toArray(new String[0]));
+    }
+
+    /** Hash of a soft caption track's SRT; "" when there is none (no mov_text stream in the output). */
+    static String captionsKey(SubtitleTrack soft) {
+        return (soft == null || soft.isEmpty()) ? "" : SegmentCache.hash(soft.toSrt());
+    }
+
+    // ---------- commands ----------
+
+    /**
+     * Every stream of the previous output, copied, except the ones being replaced.
+     *
+     * Notes:
+     *  - {@code bed} and {@code narration} given: the audio is the bed ducked under the narration;
+     *    both null: the previous audio is copied.
+     *  - {@code replaceCaptions}: the previous subtitle streams are dropped and {@code captions}
+     *    (an SRT, null = none) is muxed as mov_text; otherwise they are copied.
+     */
+    public static List<String> remixCommand(Path previous, Path bed, Path narration, boolean replaceCaptions,
+                                            Path captions, EncoderSettings enc, Path out) {
+        boolean remix = bed != null && narration != null;
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y", "-i", previous.toAbsolutePath().toString()));
+        int next = 1;
+        if (remix) {
+            cmd.addAll(List.of(
+                    "-i", bed.toAbsolutePath().toString(),
+                    "-i", narration.toAbsolutePath().toString(),
+                    "-filter_complex", "[1:a][2:a]" + Filters.DUCK + "[mix]"));
+            next = 3;
+        }
+        if (replaceCaptions && captions != null) {
+            cmd.add("-i"); cmd.add(captions.toAbsolutePath().toString());
+        }
+        cmd.add("-map"); cmd.add("0");
+        if (remix) { cmd.add("-map"); cmd.add("-0:a"); cmd.add("-map"); cmd.add("[mix]"); }
+        if (replaceCaptions) {
+            cmd.add("-map"); cmd.add("-0:s?");
+            if (captions != null) { cmd.add("-map"); cmd.add(next + ":s"); }
+        }
+        cmd.add("-c"); cmd.add("copy");
+        if (replaceCaptions && captions != null) { cmd.add("-c:s"); cmd.add("mov_text"); }
+        if (remix) cmd.addAll(enc.audioArgs());
+        cmd.add("-movflags"); cmd.add("+faststart");
+        cmd.add(out.toAbsolutePath().toString());
+        return cmd;
+    }
+
+    /** Extra output writing the un-ducked bed from a filter label or stream specifier. */
+    static List<String> bedOutputArgs(String map, boolean copy, Path bed) {
+        return List.of("-map", map, "-c:a", copy ? "copy" : "flac", bed.toAbsolutePath().toString());
+    }
+}
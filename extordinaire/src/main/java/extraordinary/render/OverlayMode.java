@@ -0,0 +1,22 @@
+package extraordinary.render;
+
+/**
+ * How caption/plan text gets onto an export.
+ */
+public enum OverlayMode {
+    /** One drawtext filter per captioned clip, burnt into its segment. */
+    DRAWTEXT("Per-clip text"),
+    /** One ASS track burnt in by a single {@code subtitles} filter over the whole video. */
+    BURN_IN("Subtitles (burned in)"),
+    /** A soft mov_text track; the video stays a stream copy, players can toggle it. */
+    SOFT("Subtitles (soft track)");
+
+    private final String label;
+
+    OverlayMode(String label) { this.label = label; }
+
+    /** Captions are taken off the clips and rendered from a {@link SubtitleTrack}. */
+    public boolean usesTrack() { return this != DRAWTEXT; }
+
+    @Override public String toString() { return label; }
+}
@@ -0,0 +1,155 @@
+package extraordinary.render;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import extraordinary.helpers.FileStamp;
+import extraordinary.media.MediaInfo;
+
+/**
+ * Low-resolution preview proxies of source clips. The preview windows play the proxy when one
+ * is ready; exports always read the original.
+ *
+ * Recipe: short side {@link #SHORT_SIDE} px (never upscaled), source frame rate, H.264 with a
+ * keyframe every {@link #GOP_FRAMES} frames and no B-frames, so any seek decodes at most a
+ * handful of small frames; AAC stereo; faststart MP4 (a container JavaFX always plays, unlike
+ * e.g. MKV sources).
+ *
+ * Notes:
+ *  - Stored in their own {@link SegmentCache} (LRU byte budget), keyed by the source's
+ *    {@link FileStamp}, so an edited source gets a new proxy and old ones age out.
+ *  - Transcodes run one at a time on a private {@link RenderJobService}, never in an export's
+ *    slot, with half the cores so an export started meanwhile is not starved.
+ *  - Sources that already scrub well (small H.264 with short GOPs in MP4/MOV) and stills get none.
+ */
+public final class ProxyMedia implements AutoCloseable {
+
+    /** Proxies are disposable: deleting this folder only means previews play the sources until rebuilt. */
+    public static final Path DEFAULT_DIR = Paths.get("cache", "proxies");
+    public static final long DEFAULT_MAX_BYTES = 10L << 30; // 10 GiB
+
+    public static final int SHORT_SIDE = 540;
+    public static final int GOP_FRAMES = 6;
+    static final String EXT = "mp4";
+
+    /** Part of every key: bump with any change to {@link #command} (size, GOP, codec) to rebuild existing proxies. */
+    private static final String RECIPE_VERSION = "proxy-v1";
+
+    private final SegmentCache store;
+    private final RenderJobService jobs;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /** @param uiExecutor where job progress is delivered (see {@link RenderJobService}) */
+    public ProxyMedia(SegmentCache store, Executor uiExecutor) {
+        this.store = store;
+        this.jobs = new RenderJobService(1, uiExecutor);
+    }
+
+    public static ProxyMedia openDefault(Executor uiExecutor) throws IOException {
+        return new ProxyMedia(new SegmentCache(DEFAULT_DIR, DEFAULT_MAX_BYTES), uiExecutor);
+    }
+
+    /** Cache key of the proxy for the source file as it is now. */
+    public static String key(Path source) throws IOException {
+        FileStamp s = FileStamp.of(source);
+        return SegmentCache.hash(RECIPE_VERSION, s.path(), String.valueOf(s.size()), String.valueOf(s.mtimeMillis()));
+    }
+
+    /** The finished proxy of this source, if any. */
+    public Optional<Path> find(Path source) {
+        try {
+            return store.lookup(key(source), EXT);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** What a preview should play: the proxy when ready, else the source itself. */
+    public Path previewPath(Path source) {
+        return find(source).orElse(source);
+    }
+
+    /** Proxies not finished yet (queued or running). */
+    public int pending() {
+        return pending.size();
+    }
+
+    /** Whether scrubbing the source directly would be slow (or impossible in JavaFX). */
+    public static boolean needsProxy(Path source, MediaInfo info) {
+        if (info == null || !info.hasVideo() || StillImages.isStill(source.toString())) return false;
+        MediaInfo.VideoStream v = info.video();
+        String name = source.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean playable = name.endsWith(".mp4") || name.endsWith(".m4v") || name.endsWith(".mov");
+        boolean small = Math.min(v.displayWidth(), v.displayHeight()) <= 720;
+        return !(playable && small && "h264".equals(v.codec()) && gopSec(info) <= 1.0);
+    }
+
+    /** Average keyframe distance; unknown counts as long. */
+    static double gopSec(MediaInfo info) {
+        if (!info.hasKeyframes() || info.durationSec() <= 0) return Double.POSITIVE_INFINITY;
+        return info.durationSec() / info.keyframes().length;
+    }
+
+    /**
+     * Queue a proxy for {@code source} unless it is ready, already queued or not needed.
+     * Thread-safe (callable from a probe callback).
+     * @return the queued job, or null
+     */
+    public RenderJobService.Handle request(Path source, MediaInfo info) {
+        if (!needsProxy(source, info)) return null;
+        String key;
+        try {
+            key = key(source);
+        } catch (IOException e) {
+            return null; // gone since it was probed
+        }
+        if (store.lookup(key, EXT).isPresent() || !pending.add(key)) return null;
+        RenderJobService.Handle h = jobs.submit("proxy " + source.getFileName(), ctx -> {
+            ctx.setStage("proxy");
+            Path tmp = store.newTemp(key, EXT);
+            try {
+                ctx.runFfmpeg(command(source, threads(), tmp), info.durationSec());
+                Path out = store.commit(key, EXT, tmp);
+                store.evict(List.of(key));
+                return out;
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }, null);
+        h.result().whenComplete((r, err) -> pending.remove(key)); // done, failed or cancelled while queued
+        return h;
+    }
+
+    private static int threads() {
+        return Math.max(1, SegmentExport.cores() / 2);
+    }
+
+    /** Transcode a source to a proxy (see class notes). */
+    public static List<String> command(Path source, int threads, Path out) {
+        String shortSide = String.valueOf(SHORT_SIDE);
+        String scale = "scale=w='if(gte(iw,ih),-2,min(" + shortSide + ",iw))':h='if(gte(iw,ih),min(" + shortSide + ",ih),-2)'";
+        return List.of("ffmpeg", "-y", "-i", source.toAbsolutePath().toString(),
+                "-map", "0:v:0", "-map", "0:a:0?",
+                "-vf", scale + ",format=yuv420p",
+                "-c:v", "libx264", "-preset", "veryfast", "-tune", "fastdecode", "-crf", "26",
+                "-g", String.valueOf(GOP_FRAMES), "-bf", "0",
+                "-threads", String.valueOf(threads),
+                "-c:a", "aac", "-b:a", "96k", "-ac", "2",
+                "-movflags", "+faststart",
+                out.toAbsolutePath().toString());
+    }
+
+    /** Stops the running transcode; unfinished proxies are simply built again on next request. */
+    @Override
+    public void close() {
+        jobs.close();
+    }
+}
@@ -0,0 +1,33 @@
+package extraordinary.render;
+
+import java.util.Objects;
+
+/**
+ * UI-free snapshot of one timeline clip, taken on the FX thread before a job is submitted.
+ *
+ * path        : source file
+ * inSec       : trim start (>= 0)
+ * outSec      : trim end; 0 = play to the end of the source (stills: {@link StillImages#DEFAULT_SEC})
+ * overlayText : caption drawn over the clip (blank = none)
+ */
+public record RenderClip(String path, double inSec, double outSec, String overlayText) {
+
+    public RenderClip {
+        Objects.requireNonNull(path, "path");
+        if (path.isBlank()) throw new IllegalArgumentException("path is blank");
+        inSec = Math.max(0, inSec);
+        outSec = (outSec > inSec) ? outSec : (StillImages.isStill(path) ? inSec + StillImages.DEFAULT_SEC : 0);
+        overlayText = (overlayText == null) ? "" : overlayText;
+    }
+
+    public boolean hasOverlay() { return !overlayText.isBlank(); }
+
+    /** A still image (always has a length, never an audio stream). */
+    public boolean isStill() { return StillImages.isStill(path); }
+
+    /** True when the clip plays to the end of its source (length unknown without probing). */
+    public boolean openEnded() { return outSec <= 0; }
+
+    /** Trimmed length, or -1 if open-ended. */
+    public double durationSec() { return openEnded() ? -1 : outSec - inSec; }
+}
@@ -0,0 +1,210 @@
+package extraordinary.render;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * What a running {@link RenderJob} sees: runs ffmpeg processes with progress reporting,
+ * and stops them when the job is cancelled.
+ *
+ * Notes:
+ *  - Thread-safe: a job may run several processes in parallel from its own worker threads.
+ *  - Progress is aggregated over all processes against {@link #setExpectedSeconds(double)}.
+ *  - Cancelling sends 'q' (ffmpeg's graceful stop), then destroy(), then destroyForcibly().
+ */
+public final class RenderContext {
+
+    private static final int STDERR_TAIL_LINES = 40;
+    private static final long STOP_GRACE_MS = 2000;
+
+    private final Consumer<RenderProgress> sink;
+    private final Set<Process> live = ConcurrentHashMap.newKeySet();
+    private final Set<Run> running = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean cancelled;
+    private volatile String stage = "render";
+    private volatile double expectedSec = -1;
+    private double completedSec; // guarded by this
+
+    /** Per-process progress state. */
+    private static final class Run {
+        final double expectedSec;
+        volatile FfmpegProgressParser.Sample last;
+        Run(double expectedSec) { this.expectedSec = expectedSec; }
+        double doneSec() {
+            FfmpegProgressParser.Sample s = last;
+            if (s == null || s.outTimeSec() < 0) return 0;
+            return expectedSec > 0 ? Math.min(s.outTimeSec(), expectedSec) : s.outTimeSec();
+        }
+    }
+
+    RenderContext(Consumer<RenderProgress> sink) {
+        this.sink = sink;
+    }
+
+    // ---------- job-facing API ----------
+
+    /** Total media seconds the whole job will encode (sum over its processes); -1 if unknown. */
+    public void setExpectedSeconds(double seconds) {
+        this.expectedSec = seconds;
+    }
+
+    /** Short label shown with the progress, e.g. "concat" or "encode 3/40". */
+    public void setStage(String stage) {
+        this.stage = stage;
+        publish();
+    }
+
+    public boolean isCancelled() { return cancelled; }
+
+    /** @throws CancellationException if the job has been cancelled */
+    public void checkCancelled() {
+        if (cancelled) throw new CancellationException("Render cancelled");
+    }
+
+    /**
+     * Run one ffmpeg command to completion. {@code -progress pipe:1 -nostats} is inserted after
+     * the executable, so {@code cmd} is exactly what would be typed on a shell.
+     *
+     * @param expectedSec media seconds this process will produce (for progress/ETA); -1 if unknown
+     * @throws IOException if ffmpeg cannot start or exits non-zero (message has the stderr tail)
+     * @throws CancellationException if the job was cancelled while it ran
+     */
+    public void runFfmpeg(List<String> cmd, double expectedSec) throws IOException, InterruptedException {
+        checkCancelled();
+        List<String> full = new ArrayList<>(cmd.size() + 4);
+        full.add(cmd.get(0));
+        full.add("-progress"); full.add("pipe:1");
+        full.add("-nostats");
+        full.addAll(cmd.subList(1, cmd.size()));
+
+        Process p = new ProcessBuilder(full).start();
+        live.add(p);
+        if (cancelled) stop(p); // cancel raced with start
+
+        Run run = new Run(expectedSec);
+        running.add(run);
+        Deque<String> tail = new ArrayDeque<>();
+        Thread errPump = new Thread(() -> drainTail(p, tail), "ffmpeg-stderr");
+        errPump.setDaemon(true);
+        errPump.start();
+        try {
+            FfmpegProgressParser parser = new FfmpegProgressParser();
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    FfmpegProgressParser.Sample s = parser.accept(line);
+                    if (s != null) {
+                        run.last = s;
+                        publish();
+                    }
+                }
+            }
+            int exit = p.waitFor();
+            errPump.join(STOP_GRACE_MS);
+            checkCancelled();
+            if (exit != 0) {
+                String err;
+                synchronized (tail) { err = String.join("\n", tail); }
+                throw new IOException("ffmpeg exited with code " + exit + (err.isEmpty() ? "" : ":\n" + err));
+            }
+            synchronized (this) { completedSec += Math.max(expectedSec, run.doneSec()); }
+        } finally {
+            running.remove(run);
+            live.remove(p);
+            if (p.isAlive()) p.destroyForcibly();
+        }
+        publish();
+    }
+
+    // ---------- service-facing ----------
+
+    /** Marks the job cancelled and stops its processes on a helper thread (never blocks the caller). */
+    void cancel() {
+        if (cancelled) return;
+        cancelled = true;
+        List<Process> procs = new ArrayList<>(live);
+        if (procs.isEmpty()) return;
+        Thread t = new Thread(() -> procs.forEach(RenderContext::stop), "render-cancel");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Stops the processes running right now without cancelling the job, e.g. when one of several
+     * parallel encodes failed and the others' output is no longer needed.
+     */
+    void abortRunning() {
+        List<Process> procs = new ArrayList<>(live);
+        if (procs.isEmpty()) return;
+        Thread t = new Thread(() -> procs.forEach(RenderContext::stop), "render-abort");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // ---------- internals ----------
+
+    private void publish() {
+        double done;
+        synchronized (this) { done = completedSec; }
+        long frame = 0;
+        double fps = 0, speed = 0;
+        boolean speedKnown = false;
+        for (Run r : running) {
+            done += r.doneSec();
+            FfmpegProgressParser.Sample s = r.last;
+            if (s == null) continue;
+            if (s.frame() > 0) frame += s.frame();
+            if (s.fps() > 0) fps += s.fps();
+            if (s.speed() > 0) { speed += s.speed(); speedKnown = true; }
+        }
+        double total = expectedSec;
+        double eta = (total > 0 && speedKnown) ? Math.max(0, total - done) / speed : -1;
+        sink.accept(new RenderProgress(frame, fps, speedKnown ? speed : -1, done, total, eta, stage));
+    }
+
+    private static void drainTail(Process p, Deque<String> tail) {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                synchronized (tail) {
+                    if (tail.size() == STDERR_TAIL_LINES) tail.removeFirst();
+                    tail.addLast(line);
+                }
+            }
+        } catch (IOException ignored) {
+            // process went away; whatever we collected is the tail
+        }
+    }
+
+    private static void stop(Process p) {
+        try {
+            OutputStream in = p.getOutputStream();
+            in.write('q');
+            in.flush();
+            in.close();
+        } catch (IOException ignored) {
+            // stdin already closed
+        }
+        try {
+            if (p.waitFor(STOP_GRACE_MS, TimeUnit.MILLISECONDS)) return;
+            p.destroy();
+            if (p.waitFor(STOP_GRACE_MS, TimeUnit.MILLISECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        p.destroyForcibly();
+    }
+}
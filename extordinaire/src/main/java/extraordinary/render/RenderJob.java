@@ -0,0 +1,17 @@
+package extraordinary.render;
+
+import java.nio.file.Path;
+
+/**
+ * A unit of export work run on the {@link RenderJobService} executor.
+ *
+ * Implementations run their ffmpeg processes through the supplied {@link RenderContext}
+ * (never ProcessBuilder directly) so progress, cancellation and error reporting work.
+ * They must not touch JavaFX state: snapshot everything they need before submitting.
+ */
+@FunctionalInterface
+public interface RenderJob {
+
+    /** Runs the job and returns the produced file (or directory). */
+    Path run(RenderContext ctx) throws Exception;
+}
@@ -0,0 +1,155 @@
+package extraordinary.render;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs {@link RenderJob}s on background threads so exports never block the UI thread.
+ *
+ * Usage (JavaFX):
+ *   RenderJobService svc = new RenderJobService(1, Platform::runLater);
+ *   RenderJobService.Handle h = svc.submit("export", job, p -> status.set(p.describe()));
+ *   h.result().thenAcceptAsync(r -> status.set(r.message()), Platform::runLater);
+ *   h.cancel();
+ *
+ * Notes:
+ *  - Progress listeners run on the UI executor and are coalesced: while one delivery is
+ *    pending, newer snapshots replace it instead of queueing more runnables.
+ *  - Jobs beyond {@code maxConcurrentJobs} wait in FIFO order; cancelling a waiting job
+ *    removes it without running anything.
+ *  - {@link Handle#result()} always completes normally with a {@link RenderResult}.
+ */
+public final class RenderJobService implements AutoCloseable {
+
+    private final ExecutorService pool;
+    private final Executor uiExecutor;
+    private final AtomicLong ids = new AtomicLong();
+    private final ConcurrentHashMap<Long, Handle> active = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConcurrentJobs jobs running at once (each job may still run parallel processes)
+     * @param uiExecutor        where progress listeners run, e.g. {@code Platform::runLater}
+     */
+    public RenderJobService(int maxConcurrentJobs, Executor uiExecutor) {
+        if (maxConcurrentJobs < 1) throw new IllegalArgumentException("maxConcurrentJobs must be >= 1");
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(maxConcurrentJobs, r -> {
+            Thread t = new Thread(r, "render-job-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.uiExecutor = uiExecutor;
+    }
+
+    /** Queue a job; {@code onProgress} may be null. */
+    public Handle submit(String name, RenderJob job, Consumer<RenderProgress> onProgress) {
+        Handle h = new Handle(ids.incrementAndGet(), name, onProgress);
+        active.put(h.id, h);
+        h.future = pool.submit(() -> h.execute(job));
+        return h;
+    }
+
+    /** Jobs queued or running, oldest first. */
+    public List<Handle> active() {
+        List<Handle> out = new ArrayList<>(active.values());
+        out.sort((a, b) -> Long.compare(a.id, b.id));
+        return out;
+    }
+
+    /** Cancels every job and stops the worker threads. */
+    @Override
+    public void close() {
+        for (Handle h : active()) h.cancel();
+        pool.shutdownNow();
+    }
+
+    // ---------- Handle ----------
+
+    /** A submitted job: progress, cancel, result. */
+    public final class Handle {
+        private final long id;
+        private final String name;
+        private final Consumer<RenderProgress> listener;
+        private final RenderContext ctx;
+        private final CompletableFuture<RenderResult> result = new CompletableFuture<>();
+        private final AtomicReference<RenderProgress> latest = new AtomicReference<>();
+        private final AtomicBoolean deliveryPending = new AtomicBoolean();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile Future<?> future;
+
+        private Handle(long id, String name, Consumer<RenderProgress> listener) {
+            this.id = id;
+            this.name = name;
+            this.listener = listener;
+            this.ctx = new RenderContext(this::offer);
+        }
+
+        public long id() { return id; }
+        public String name() { return name; }
+        public boolean isDone() { return result.isDone(); }
+
+        /** Completes (on a worker thread) when the job finishes, fails or is cancelled. */
+        public CompletableFuture<RenderResult> result() { return result; }
+
+        /** Latest progress snapshot, or null before the first one. */
+        public RenderProgress progress() { return latest.get(); }
+
+        /** Stop the job: waiting jobs never start; running ffmpeg processes are asked to quit, then killed. */
+        public void cancel() {
+            ctx.cancel();
+            if (started.compareAndSet(false, true)) {
+                Future<?> f = future;
+                if (f != null) f.cancel(false);
+                finish(RenderResult.cancelled(0));
+            }
+        }
+
+        private void execute(RenderJob job) {
+            if (!started.compareAndSet(false, true)) return; // cancelled while queued
+            long t0 = System.currentTimeMillis();
+            RenderResult r;
+            try {
+                Path out = job.run(ctx);
+                r = ctx.isCancelled()
+                        ? RenderResult.cancelled(System.currentTimeMillis() - t0)
+                        : RenderResult.completed(out, System.currentTimeMillis() - t0);
+            } catch (CancellationException | InterruptedException e) {
+                r = RenderResult.cancelled(System.currentTimeMillis() - t0);
+            } catch (Exception e) {
+                r = ctx.isCancelled()
+                        ? RenderResult.cancelled(System.currentTimeMillis() - t0)
+                        : RenderResult.failed("Export failed: " + e.getMessage(), System.currentTimeMillis() - t0);
+            }
+            finish(r);
+        }
+
+        private void finish(RenderResult r) {
+            active.remove(id);
+            result.complete(r);
+        }
+
+        /** Coalescing hand-off to the UI executor. */
+        private void offer(RenderProgress p) {
+            latest.set(p);
+            if (listener == null || !deliveryPending.compareAndSet(false, true)) return;
+            uiExecutor.execute(() -> {
+                deliveryPending.set(false);
+                RenderProgress now = latest.get();
+                if (now != null && !result.isDone()) listener.accept(now);
+            });
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package extraordinary.render;
+
+/**
+ * Job-level progress snapshot, aggregated over every ffmpeg process the job has run.
+ *
+ * frame     : frames written by the running process(es)
+ * fps       : encode rate (sum over parallel processes)
+ * speed     : realtime multiple (e.g. 2.5 = 2.5x realtime), -1 if unknown
+ * doneSec   : media seconds finished so far
+ * totalSec  : expected media seconds, -1 if unknown
+ * etaSec    : estimated seconds left, -1 if unknown
+ * stage     : short label of what is running (e.g. "encode 3/40")
+ */
+public record RenderProgress(long frame, double fps, double speed,
+                             double doneSec, double totalSec, double etaSec, String stage) {
+
+    /** 0..1, or -1 when the total is unknown. */
+    public double fraction() {
+        if (totalSec <= 0) return -1;
+        return Math.max(0, Math.min(1, doneSec / totalSec));
+    }
+
+    /** Compact status line, e.g. "encode 3/40 · 42% · 61 fps · 2.1x · ETA 0:37". */
+    public String describe() {
+        StringBuilder sb = new StringBuilder(stage == null ? "render" : stage);
+        double f = fraction();
+        if (f >= 0) sb.append(" · ").append(Math.round(f * 100)).append('%');
+        if (fps > 0) sb.append(" · ").append(Math.round(fps)).append(" fps");
+        if (speed > 0) sb.append(" · ").append(String.format(java.util.Locale.US, "%.1fx", speed));
+        if (etaSec >= 0) {
+            long s = Math.round(etaSec);
+            sb.append(" · ETA ").append(s / 60).append(':').append(String.format("%02d", s % 60));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,28 @@
+package extraordinary.render;
+
+import java.nio.file.Path;
+
+/**
+ * Outcome of a render job.
+ *
+ * output  : file or directory produced (null unless COMPLETED)
+ * message : human-readable summary; for FAILED, includes the tail of ffmpeg's stderr
+ */
+public record RenderResult(Status status, Path output, String message, long elapsedMillis) {
+
+    public enum Status { COMPLETED, FAILED, CANCELLED }
+
+    public boolean ok() { return status == Status.COMPLETED; }
+
+    public static RenderResult completed(Path output, long elapsedMillis) {
+        return new RenderResult(Status.COMPLETED, output, "Export complete: " + output, elapsedMillis);
+    }
+
+    public static RenderResult failed(String message, long elapsedMillis) {
+        return new RenderResult(Status.FAILED, null, message, elapsedMillis);
+    }
+
+    public static RenderResult cancelled(long elapsedMillis) {
+        return new RenderResult(Status.CANCELLED, null, "Export cancelled.", elapsedMillis);
+    }
+}
@@ -0,0 +1,204 @@
+package extraordinary.render;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import extraordinary.helpers.FileStamp;
+
+/**
+ * On-disk cache of normalised clip segments, keyed by content hash.
+ *
+ * Key = SHA-256 over (source {@link FileStamp}, in/out, overlay text, frame target, encoder
+ * settings). Editing one clip changes only that clip's key, so a re-export re-encodes one
+ * segment and stream-copies the rest. Still images are keyed by content instead of path
+ * (see {@link StillImages}).
+ *
+ * Notes:
+ *  - Files are {@code <key>.<ext>}; a hit touches the mtime, and eviction removes the
+ *    least recently used files until the cache is under its byte budget.
+ *  - New segments are written to a temp name and renamed into place, so a crashed or
+ *    cancelled encode never leaves a truncated entry.
+ *  - Safe to share between processes: the worst case is two writers producing the same key.
+ */
+public final class SegmentCache {
+
+    /** Default location, next to drafts/ and data/. */
+    public static final Path DEFAULT_DIR = Paths.get("cache", "segments");
+    public static final long DEFAULT_MAX_BYTES = 20L << 30; // 20 GiB
+
+    /** Bump when the segment recipe changes so old entries stop matching. */
+    private static final String RECIPE_VERSION = "seg-v1";
+
+    private final Path dir;
+    private final long maxBytes;
+
+    public SegmentCache(Path dir, long maxBytes) throws IOException {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be > 0");
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+    }
+
+    public static SegmentCache openDefault() throws IOException {
+        return new SegmentCache(DEFAULT_DIR, DEFAULT_MAX_BYTES);
+    }
+
+    public Path dir() { return dir; }
+
+    // ---------- keys ----------
+
+    /** Cache key for a clip rendered to a target with the given encoder. */
+    public static String key(RenderClip clip, FrameTarget target, EncoderSettings enc) throws IOException {
+        Path src = Paths.get(clip.path()).toAbsolutePath().normalize();
+        if (clip.isStill()) {
+            return hash(RECIPE_VERSION, "still", fileHash(src), Filters.sec(clip.durationSec()),
+                    clip.overlayText(), target.fingerprint(), enc.fingerprint());
+        }
+        FileStamp s = FileStamp.of(src);
+        return hash(RECIPE_VERSION,
+                s.path(), String.valueOf(s.size()), String.valueOf(s.mtimeMillis()),
+                Filters.sec(clip.inSec()), Filters.sec(clip.outSec()),
+                clip.overlayText(),
+                target.fingerprint(),
+                enc.fingerprint());
+    }
+
+    /** SHA-256 hex of a file's bytes. */
+    public static String fileHash(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[64 * 1024];
+            for (int n; (n = in.read(buf)) > 0; ) md.update(buf, 0, n);
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    /** SHA-256 hex over NUL-separated parts. */
+    public static String hash(String... parts) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String p : parts) {
+                md.update(p.getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    // ---------- entries ----------
+
+    public Path pathFor(String key, String ext) {
+        return dir.resolve(key + "." + ext);
+    }
+
+    /** The cached file, with its mtime bumped so LRU eviction sees the use. */
+    public Optional<Path> lookup(String key, String ext) {
+        Path p = pathFor(key, ext);
+        if (!Files.isRegularFile(p)) return Optional.empty();
+        try {
+            Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // still a hit; it just ages a little sooner
+        }
+        return Optional.of(p);
+    }
+
+    /** A fresh temp path in the cache directory for an encode that will be {@link #commit committed}. */
+    public Path newTemp(String key, String ext) throws IOException {
+        return Files.createTempFile(dir, key + ".", ".tmp." + ext);
+    }
+
+    /** Move a finished temp file into place under its key. */
+    public Path commit(String key, String ext, Path tmp) throws IOException {
+        Path target = pathFor(key, ext);
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    // ---------- eviction ----------
+
+    /** Total bytes of committed entries. */
+    public long sizeBytes() throws IOException {
+        long total = 0;
+        for (Entry e : entries()) total += e.size;
+        return total;
+    }
+
+    /**
+     * Delete least-recently-used entries until the cache fits its budget. Entries whose key is in
+     * {@code pinned} (e.g. the segments of the export that just finished) are never removed.
+     * Also drops temp files left behind by crashed encodes more than a day ago.
+     * @return bytes freed
+     */
+    public long evict(Collection<String> pinned) throws IOException {
+        Set<String> keep = new HashSet<>(pinned);
+        List<Entry> all = entries();
+        long total = 0;
+        for (Entry e : all) total += e.size;
+        long freed = 0;
+
+        all.sort(Comparator.comparingLong(e -> e.lastUsed));
+        for (Entry e : all) {
+            if (total - freed <= maxBytes) break;
+            if (keep.contains(e.key)) continue;
+            if (Files.deleteIfExists(e.path)) freed += e.size;
+        }
+
+        long staleBefore = System.currentTimeMillis() - 24L * 3600_000L;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.tmp.*")) {
+            for (Path p : ds) {
+                if (Files.getLastModifiedTime(p).toMillis() < staleBefore) Files.deleteIfExists(p);
+            }
+        }
+        return freed;
+    }
+
+    private record Entry(Path path, String key, long size, long lastUsed) {}
+
+    private List<Entry> entries() throws IOException {
+        List<Entry> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                int dot = name.indexOf('.');
+                if (dot <= 0 || name.contains(".tmp.")) continue;
+                BasicFileAttributes a;
+                try {
+                    a = Files.readAttributes(p, BasicFileAttributes.class);
+                } catch (IOException gone) {
+                    continue; // evicted by another process meanwhile
+                }
+                if (!a.isRegularFile()) continue;
+                out.add(new Entry(p, name.substring(0, dot), a.size(), a.lastModifiedTime().toMillis()));
+            }
+        }
+        return out;
+    }
+}
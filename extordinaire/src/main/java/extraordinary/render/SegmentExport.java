@@ -0,0 +1,463 @@
+package extraordinary.render;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import extraordinary.media.MediaInfo;
+import extraordinary.media.MediaProbe;
+import extraordinary.media.MediaProbeService;
+
+/**
+ * Cached export: every clip becomes a normalised segment in the {@link SegmentCache}, and the
+ * output is assembled with the concat demuxer and {@code -c:v copy}.
+ *
+ * Steps:
+ *  1) key every clip; reuse cached segments, encode only the misses (same key = one encode),
+ *     one ffmpeg process per clip, up to {@code parallelism} at once
+ *  2) write an ffconcat list of the segment files
+ *  3) one pass: concat (video copied) + narration ducking on the audio
+ *  4) evict old cache entries, never the ones this export used
+ *
+ * Parallel encodes split the cores between processes ({@code -threads}), so a 16-core box runs
+ * e.g. 16 single-threaded encodes for many short clips, or 4x4 when only four clips changed.
+ * Narration mixing and the concat run once, at the end, without re-encoding video.
+ *
+ * Smart render (optional): an uncaptioned clip whose source already conforms (see
+ * {@link SmartRenderPlanner}) is stream-copied from keyframe to keyframe; only the partial GOPs
+ * at its trim points are encoded. Such segments are cached under their own key, so a clip
+ * never mixes a copied and a fully encoded segment; clips that do not conform fall back to the
+ * normal segment and share its cache entry.
+ *
+ * Subtitle overlays (optional, {@link OverlayMode}): captions are taken off the clips before
+ * keying, so editing a caption never re-encodes a segment. The whole {@link SubtitleTrack} is
+ * then burnt in by one {@code subtitles} filter in the assemble pass (the only video encode),
+ * or muxed as a soft mov_text track with the video still copied.
+ */
+public final class SegmentExport implements RenderJob {
+
+    /** Matroska intermediates keep timestamps clean across concat. */
+    public static final String SEGMENT_EXT = "mkv";
+
+    private final List<RenderClip> clips;
+    private final Path narration;
+    private final Path output;
+    private final FrameTarget target;
+    private final EncoderSettings enc;
+    private final SegmentCache cache;
+    private final int parallelism;
+    private final boolean smart;
+    private final Path bedAudio; // null = none
+    private final SubtitleTrack subtitles;
+    private final OverlayMode overlays;
+    private final MediaProbeService probes; // null = run ffprobe per clip
+
+    /** Sequential encodes (one ffmpeg at a time). */
+    public SegmentExport(List<RenderClip> clips, Path narration, Path output,
+                         FrameTarget target, EncoderSettings enc, SegmentCache cache) {
+        this(clips, narration, output, target, enc, cache, 1);
+    }
+
+    /** @param parallelism max concurrent segment encodes; capped at the core count */
+    public SegmentExport(List<RenderClip> clips, Path narration, Path output,
+                         FrameTarget target, EncoderSettings enc, SegmentCache cache, int parallelism) {
+        this(clips, narration, output, target, enc, cache, parallelism, false);
+    }
+
+    /** @param smart stream-copy conforming clips between keyframes (probes each missing clip) */
+    public SegmentExport(List<RenderClip> clips, Path narration, Path output,
+                         FrameTarget target, EncoderSettings enc, SegmentCache cache, int parallelism, boolean smart) {
+        this(clips, narration, output, target, enc, cache, parallelism, smart, null, SubtitleTrack.empty(), OverlayMode.DRAWTEXT, null);
+    }
+
+    private SegmentExport(List<RenderClip> clips, Path narration, Path output, FrameTarget target, EncoderSettings enc,
+                          SegmentCache cache, int parallelism, boolean smart, Path bedAudio,
+                          SubtitleTrack subtitles, OverlayMode overlays, MediaProbeService probes) {
+        if (clips.isEmpty()) throw new IllegalArgumentException("no clips");
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be >= 1");
+        this.clips = List.copyOf(clips);
+        this.narration = narration;
+        this.output = output;
+        this.target = target;
+        this.enc = enc;
+        this.cache = cache;
+        this.parallelism = Math.min(parallelism, cores());
+        this.smart = smart;
+        this.bedAudio = bedAudio;
+        this.subtitles = subtitles;
+        this.overlays = overlays;
+        this.probes = probes;
+    }
+
+    /** Returns a copy that also writes the clips' un-ducked audio to {@code bed} (see {@link NarrationRemix}). */
+    public SegmentExport withBedAudio(Path bed) {
+        return new SegmentExport(clips, narration, output, target, enc, cache, parallelism, smart, bed, subtitles, overlays, probes);
+    }
+
+    /**
+     * Returns a copy that renders its text per {@code mode}: DRAWTEXT keeps the per-clip captions,
+     * the other modes drop them from the segments and use {@code track} (usually
+     * {@link SubtitleTrack#of} the same clips, plus the plan's segments) instead.
+     */
+    public SegmentExport withSubtitles(SubtitleTrack track, OverlayMode mode) {
+        return new SegmentExport(clips, narration, output, target, enc, cache, parallelism, smart, bedAudio, track, mode, probes);
+    }
+
+    /** Returns a copy that takes smart-render probes from {@code service} (cached across exports). */
+    public SegmentExport withProbes(MediaProbeService service) {
+        return new SegmentExport(clips, narration, output, target, enc, cache, parallelism, smart, bedAudio, subtitles, overlays, service);
+    }
+
+    /** One encode per core. */
+    public static int cores() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public Path run(RenderContext ctx) throws Exception {
+        Path work = Files.createTempDirectory("extord_export");
+        try {
+            // 1) keys, hits, misses
+            List<String> used = ensureSegments(ctx, overlays.usesTrack() ? SubtitleTrack.stripOverlays(clips) : clips, work);
+
+            // 2) concat list (+ subtitle file)
+            Path list = concatList(used).write(work.resolve("segments.ffconcat"));
+            Path subs = (overlays.usesTrack() && !subtitles.isEmpty()) ? subtitles.write(work, overlays, target) : null;
+
+            // 3) assemble
+            ctx.setStage(overlays == OverlayMode.BURN_IN && subs != null ? "assemble + subtitles" : "assemble");
+            List<String> cmd = new ArrayList<>(subs == null
+                    ? assembleCommand(list, narration, enc, output)
+                    : assembleCommand(list, narration, enc, output, overlays, subs));
+            if (bedAudio != null) cmd.addAll(NarrationRemix.bedOutputArgs("0:a", true, bedAudio));
+            ctx.runFfmpeg(cmd, -1);
+
+            // 4) keep the cache within budget
+            cache.evict(used);
+            return output;
+        } finally {
+            deleteTree(work);
+        }
+    }
+
+    /**
+     * Make sure every clip has a cached segment, encoding the misses (same key = one encode).
+     * @return the cache key of each clip's segment, in clip order
+     */
+    List<String> ensureSegments(RenderContext ctx, List<RenderClip> wanted, Path work) throws IOException, InterruptedException {
+        List<String> keys = new ArrayList<>(wanted.size());
+        Map<String, RenderClip> misses = new LinkedHashMap<>();
+        Map<String, String> stored = new ConcurrentHashMap<>(); // key -> key its segment is cached under
+        for (RenderClip c : wanted) {
+            String key = SegmentCache.key(c, target, enc);
+            keys.add(key);
+            if (stored.containsKey(key) || misses.containsKey(key)) continue;
+            if (smart && !c.hasOverlay() && !c.isStill() && cache.lookup(smartKey(key), SEGMENT_EXT).isPresent()) {
+                stored.put(key, smartKey(key));
+            } else if (cache.lookup(key, SEGMENT_EXT).isPresent()) {
+                stored.put(key, key);
+            } else {
+                misses.put(key, c);
+            }
+        }
+        ctx.setExpectedSeconds(expectedSeconds(misses.values()));
+
+        encodeAll(ctx, misses, work, stored, keys.size() - misses.size());
+
+        List<String> used = new ArrayList<>(keys.size());
+        for (String k : keys) used.add(stored.get(k));
+        return used;
+    }
+
+    /** ffconcat list of cached segments. */
+    ConcatList concatList(List<String> segmentKeys) {
+        ConcatList segments = new ConcatList();
+        for (String k : segmentKeys) segments.add(cache.pathFor(k, SEGMENT_EXT));
+        return segments;
+    }
+
+    private void encodeAll(RenderContext ctx, Map<String, RenderClip> misses, Path work,
+                           Map<String, String> stored, int cached) throws IOException, InterruptedException {
+        int n = misses.size();
+        int workers = Math.max(1, Math.min(parallelism, n));
+        int threads = (workers > 1) ? Math.max(1, cores() / workers) : 0; // 0 = ffmpeg decides
+
+        if (workers == 1) {
+            int i = 0;
+            for (Map.Entry<String, RenderClip> m : misses.entrySet()) {
+                ctx.setStage("encode " + (++i) + "/" + n + " (" + cached + " cached)");
+                stored.put(m.getKey(), encodeSegment(ctx, m.getKey(), m.getValue(), work, threads));
+            }
+            return;
+        }
+
+        AtomicInteger seq = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "segment-encode-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger done = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        ctx.setStage("encode 0/" + n + " (" + cached + " cached, " + workers + " parallel)");
+        try {
+            List<Future<?>> futures = new ArrayList<>(n);
+            for (Map.Entry<String, RenderClip> m : misses.entrySet()) {
+                futures.add(pool.submit(() -> {
+                    if (failed.get()) return null; // another segment already failed
+                    stored.put(m.getKey(), encodeSegment(ctx, m.getKey(), m.getValue(), work, threads));
+                    ctx.setStage("encode " + done.incrementAndGet() + "/" + n + " (" + cached + " cached, " + workers + " parallel)");
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (failed.compareAndSet(false, true)) ctx.abortRunning();
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException io) throw io;
+                    if (cause instanceof CancellationException ce) throw ce;
+                    if (cause instanceof InterruptedException ie) throw ie;
+                    throw new IOException("Segment encode failed: " + cause, cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Encode one clip into the cache (temp file, then rename under its key).
+     * @return the key the segment was stored under ({@code key}, or its smart key)
+     */
+    String encodeSegment(RenderContext ctx, String key, RenderClip c, Path work, int threads) throws IOException, InterruptedException {
+        if (smart && !c.hasOverlay() && !c.isStill()) {
+            SmartRenderPlanner.Plan plan = SmartRenderPlanner.plan(c, probe(c), target, enc);
+            if (plan.copyable()) {
+                smartSegment(ctx, smartKey(key), c, plan, work, threads);
+                return smartKey(key);
+            }
+        }
+        Path textFile = null;
+        if (c.hasOverlay()) {
+            textFile = work.resolve(key + ".txt");
+            Files.writeString(textFile, c.overlayText(), StandardCharsets.UTF_8);
+        }
+        Path tmp = cache.newTemp(key, SEGMENT_EXT);
+        try {
+            List<String> cmd = c.isStill()
+                    ? StillImages.segmentCommand(scaledStill(ctx, c), c.durationSec(), target, enc, threads, textFile, tmp)
+                    : segmentCommand(c, target, enc, threads, textFile, tmp);
+            ctx.runFfmpeg(cmd, c.durationSec());
+            cache.commit(key, SEGMENT_EXT, tmp);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return key;
+    }
+
+    /** The image scaled to the target frame, from the cache or made now (once per image content). */
+    private Path scaledStill(RenderContext ctx, RenderClip c) throws IOException, InterruptedException {
+        String key = StillImages.scaledKey(SegmentCache.fileHash(Path.of(c.path())), target);
+        Optional<Path> hit = cache.lookup(key, "png");
+        if (hit.isPresent()) return hit.get();
+        Path tmp = cache.newTemp(key, "png");
+        try {
+            ctx.runFfmpeg(StillImages.scaleCommand(Path.of(c.path()), target, tmp), -1);
+            return cache.commit(key, "png", tmp);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Encode the head/tail pieces, copy the body, join them and add the trimmed source audio. */
+    private void smartSegment(RenderContext ctx, String key, RenderClip c, SmartRenderPlanner.Plan plan,
+                              Path work, int threads) throws IOException, InterruptedException {
+        Path src = Path.of(c.path());
+        ConcatList pieces = new ConcatList();
+        for (int i = 0; i < plan.pieces().size(); i++) {
+            SmartRenderPlanner.Piece p = plan.pieces().get(i);
+            Path piece = work.resolve(key + "-" + i + ".ts");
+            ctx.runFfmpeg(pieceCommand(src, p, target, enc, plan.encodeArgs(), threads, piece), p.copy() ? -1 : p.durationSec());
+            pieces.add(piece);
+        }
+        Path list = pieces.write(work.resolve(key + ".ffconcat"));
+        SmartRenderPlanner.Piece first = plan.pieces().get(0);
+        SmartRenderPlanner.Piece last = plan.pieces().get(plan.pieces().size() - 1);
+
+        Path tmp = cache.newTemp(key, SEGMENT_EXT);
+        try {
+            ctx.runFfmpeg(joinCommand(list, src, first.start(), last.end(), enc, tmp), -1);
+            cache.commit(key, SEGMENT_EXT, tmp);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Keyframes are only needed here, so they are probed per missing clip rather than up front. */
+    private MediaInfo probe(RenderClip c) throws InterruptedException {
+        if (probes != null) return probes.probeNow(Path.of(c.path())); // null: full encode, as below
+        try {
+            return MediaProbe.probe(Path.of(c.path()), true);
+        } catch (IOException | IllegalArgumentException e) {
+            return null; // no ffprobe / unreadable: the planner falls back to a full encode
+        }
+    }
+
+    /**
+     * Smart segments differ from fully encoded ones (copied GOPs keep the source's quality).
+     * v2: stricter conformance; segments copied from sources now rejected are not reused.
+     */
+    static String smartKey(String key) {
+        return SegmentCache.hash(key, "smart-v2");
+    }
+
+    // ---------- commands ----------
+
+    /**
+     * Decode one trimmed clip, conform it to the target (plus caption) and encode it.
+     * @param threads encoder threads for this process; 0 lets ffmpeg pick
+     */
+    public static List<String> segmentCommand(RenderClip c, FrameTarget t, EncoderSettings enc, int threads, Path textFile, Path out) {
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y", "-ss", Filters.sec(c.inSec())));
+        if (!c.openEnded()) { cmd.add("-to"); cmd.add(Filters.sec(c.outSec())); }
+        cmd.add("-i"); cmd.add(c.path());
+
+        String vf = Filters.conform(t) + (textFile != null ? "," + Filters.drawtextFile(textFile) : "");
+        cmd.add("-vf"); cmd.add(vf);
+        cmd.add("-map"); cmd.add("0:v:0");
+        cmd.add("-map"); cmd.add("0:a:0");
+        cmd.addAll(enc.videoArgs());
+        if (threads > 0) { cmd.add("-threads"); cmd.add(String.valueOf(threads)); }
+        cmd.add("-r"); cmd.add(String.valueOf(t.fps()));
+        cmd.addAll(enc.audioArgs());
+        cmd.add(out.toAbsolutePath().toString());
+        return cmd;
+    }
+
+    /**
+     * One smart-render piece as MPEG-TS video: copied GOPs keep their bitstream (Annex B, so the
+     * parameter sets travel in-band); boundary pieces are encoded with the export's settings
+     * plus {@code encodeArgs} (see {@link SmartRenderPlanner.Plan#encodeArgs()}).
+     */
+    public static List<String> pieceCommand(Path src, SmartRenderPlanner.Piece p, FrameTarget t,
+                                            EncoderSettings enc, List<String> encodeArgs, int threads, Path out) {
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y",
+                "-ss", Filters.sec(p.start()), "-to", Filters.sec(p.end()),
+                "-i", src.toAbsolutePath().toString(),
+                "-map", "0:v:0", "-an"));
+        if (p.copy()) {
+            cmd.addAll(List.of("-c:v", "copy", "-bsf:v", "h264_mp4toannexb", "-avoid_negative_ts", "make_zero"));
+        } else {
+            cmd.addAll(enc.videoArgs());
+            cmd.addAll(encodeArgs);
+            if (threads > 0) { cmd.add("-threads"); cmd.add(String.valueOf(threads)); }
+            cmd.add("-r"); cmd.add(String.valueOf(t.fps()));
+        }
+        cmd.add("-f"); cmd.add("mpegts");
+        cmd.add(out.toAbsolutePath().toString());
+        return cmd;
+    }
+
+    /** Join smart-render pieces (video copied) with the source audio of the same range. */
+    public static List<String> joinCommand(Path pieceList, Path src, double inSec, double outSec,
+                                           EncoderSettings enc, Path out) {
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y"));
+        cmd.addAll(ConcatList.inputArgs(pieceList));
+        cmd.addAll(List.of(
+                "-ss", Filters.sec(inSec), "-to", Filters.sec(outSec),
+                "-i", src.toAbsolutePath().toString(),
+                "-map", "0:v:0", "-map", "1:a:0",
+                "-c:v", "copy"));
+        cmd.addAll(enc.audioArgs());
+        cmd.add("-shortest");
+        cmd.add(out.toAbsolutePath().toString());
+        return cmd;
+    }
+
+    /** Concat segments (video stream-copied) and duck their audio under the narration. */
+    public static List<String> assembleCommand(Path concatList, Path narration, EncoderSettings enc, Path out) {
+        return assembleCommand(concatList, narration, enc, out, -1);
+    }
+
+    /** Same, stopping at {@code maxSec} (> 0) so a longer narration does not extend the output. */
+    public static List<String> assembleCommand(Path concatList, Path narration, EncoderSettings enc, Path out, double maxSec) {
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y"));
+        cmd.addAll(ConcatList.inputArgs(concatList));
+        cmd.addAll(List.of(
+                "-i", narration.toAbsolutePath().toString(),
+                "-filter_complex", "[0:a][1:a]" + Filters.DUCK + "[mix]",
+                "-map", "0:v", "-map", "[mix]",
+                "-c:v", "copy"));
+        cmd.addAll(enc.audioArgs());
+        if (maxSec > 0) { cmd.add("-t"); cmd.add(Filters.sec(maxSec)); }
+        cmd.add("-movflags"); cmd.add("+faststart");
+        cmd.add(out.toAbsolutePath().toString());
+        return cmd;
+    }
+
+    /**
+     * Same, with a {@link SubtitleTrack} file: BURN_IN re-encodes the video once through the
+     * {@code subtitles} filter (ASS file); SOFT keeps the copy and adds the SRT as a mov_text track.
+     */
+    public static List<String> assembleCommand(Path concatList, Path narration, EncoderSettings enc, Path out,
+                                               OverlayMode mode, Path subtitleFile) {
+        if (!mode.usesTrack()) throw new IllegalArgumentException("mode has no subtitle track: " + mode);
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y"));
+        cmd.addAll(ConcatList.inputArgs(concatList));
+        cmd.add("-i"); cmd.add(narration.toAbsolutePath().toString());
+        if (mode == OverlayMode.BURN_IN) {
+            cmd.addAll(List.of(
+                    "-filter_complex", "[0:v]" + Filters.subtitlesFile(subtitleFile) + "[v];[0:a][1:a]" + Filters.DUCK + "[mix]",
+                    "-map", "[v]", "-map", "[mix]"));
+            cmd.addAll(enc.videoArgs());
+        } else {
+            cmd.addAll(List.of(
+                    "-i", subtitleFile.toAbsolutePath().toString(),
+                    "-filter_complex", "[0:a][1:a]" + Filters.DUCK + "[mix]",
+                    "-map", "0:v", "-map", "[mix]", "-map", "2:s",
+                    "-c:v", "copy", "-c:s", "mov_text"));
+        }
+        cmd.addAll(enc.audioArgs());
+        cmd.add("-movflags"); cmd.add("+faststart");
+        cmd.add(out.toAbsolutePath().toString());
+        return cmd;
+    }
+
+    /** Sum of clip lengths, or -1 if any is open-ended. */
+    static double expectedSeconds(Iterable<RenderClip> clips) {
+        double total = 0;
+        for (RenderClip c : clips) {
+            if (c.openEnded()) return -1;
+            total += c.durationSec();
+        }
+        return total;
+    }
+
+    static void deleteTree(Path root) {
+        try (Stream<Path> s = Files.walk(root)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+            });
+        } catch (IOException ignored) {
+            // temp dir; the OS cleans up eventually
+        }
+    }
+}
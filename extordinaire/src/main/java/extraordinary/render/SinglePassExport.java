@@ -0,0 +1,335 @@
+package extraordinary.render;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+import extraordinary.media.MediaInfo;
+import extraordinary.media.MediaProbe;
+import extraordinary.media.MediaProbeService;
+
+/**
+ * Single-pass export: one ffmpeg process, one filtergraph, no intermediate segments.
+ *
+ * The compiler keeps the command line short whatever the clip count:
+ *  - runs of compatible clips become one concat-demuxer input (a list file with inpoint/outpoint);
+ *  - the graph goes to a {@code -filter_complex_script} file;
+ *  - captions are text files drawn with {@code drawtext textfile=}, enabled for their clip's time range.
+ *
+ * Notes:
+ *  - A run breaks when the group key changes (default: {@link #byStreams}, the probed stream
+ *    parameters the concat demuxer needs to match) or after a clip with no out point, whose
+ *    length is unknown here. A clip without a key (not probed) gets an input of its own.
+ *  - For long-GOP sources the concat demuxer also delivers frames from the keyframe before an
+ *    inpoint; they carry earlier timestamps and are dropped by {@code fps=..:start_time=0}.
+ *  - Still images form their own runs: one frame per entry (each with its clip's duration),
+ *    filled to constant rate by {@code fps}, the last frame held, and silence as their audio.
+ *  - With a subtitle {@link OverlayMode} the clips' captions are replaced by one
+ *    {@code subtitles} filter after the concat (BURN_IN) or a mov_text track (SOFT).
+ */
+public final class SinglePassExport implements RenderJob {
+
+    /** Output labels of a compiled graph. */
+    public static final String VIDEO_OUT = "vcat";
+    public static final String AUDIO_OUT = "mix";
+    /** Clip audio before ducking; only in plans compiled with a bed. */
+    public static final String BED_OUT = "bed";
+
+    /** Grouping by lower-case file extension (stills; callers that know their sources match). */
+    public static final Function<RenderClip, String> BY_EXTENSION = c -> {
+        String p = c.path().toLowerCase(Locale.ROOT);
+        int dot = p.lastIndexOf('.');
+        return dot >= 0 ? p.substring(dot + 1) : "";
+    };
+
+    /**
+     * Default grouping: clips share an input only if their probed streams match (video codec,
+     * profile, size, pix_fmt; audio codec, rate, channels), since one concat input is decoded
+     * with the first file's parameters. Null (an input of its own) if {@code probe} has nothing.
+     * Stills group by extension, one frame per entry.
+     */
+    public static Function<RenderClip, String> byStreams(Function<Path, MediaInfo> probe) {
+        return c -> {
+            if (c.isStill()) return BY_EXTENSION.apply(c);
+            MediaInfo m = probe.apply(Path.of(c.path()));
+            return m == null ? null : streamKey(m);
+        };
+    }
+
+    static String streamKey(MediaInfo m) {
+        MediaInfo.VideoStream v = m.video();
+        MediaInfo.AudioStream a = m.audio();
+        String video = (v == null) ? "-" : String.join(",", v.codec(), String.valueOf(v.profile()),
+                v.width() + "x" + v.height(), String.valueOf(v.pixFmt()));
+        String audio = (a == null) ? "-" : String.join(",", a.codec(), String.valueOf(a.sampleRate()),
+                String.valueOf(a.channels()));
+        return video + "|" + audio;
+    }
+
+    /** Streams only (no keyframe scan), through {@code probes} when given, else ffprobe; null if the file cannot be probed. */
+    public static Function<Path, MediaInfo> prober(MediaProbeService probes) {
+        return p -> {
+            try {
+                return (probes != null) ? probes.probeStreamsNow(p) : MediaProbe.probe(p, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (IOException | IllegalArgumentException e) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Compiled export, independent of the file system until {@link #write()}.
+     *
+     * inputs      : one concat list per input run, in order (input index = list index)
+     * graph       : the whole filtergraph; narration is input {@code inputs.size()}
+     * captions    : caption file name (in workDir) -> text
+     * durationSec : output length, -1 if some clip has no out point
+     */
+    public record Plan(Path workDir, List<ConcatList> inputs, FilterGraph graph,
+                       Map<String, String> captions, double durationSec) {
+
+        public Path listFile(int i) { return workDir.resolve(String.format(Locale.ROOT, "input-%04d.ffconcat", i)); }
+        public Path graphFile() { return workDir.resolve("graph.txt"); }
+
+        /** Writes list files, caption files and the graph script into workDir. */
+        public void write() throws IOException {
+            Files.createDirectories(workDir);
+            for (int i = 0; i < inputs.size(); i++) inputs.get(i).write(listFile(i));
+            for (Map.Entry<String, String> c : captions.entrySet()) {
+                Files.writeString(workDir.resolve(c.getKey()), c.getValue(), StandardCharsets.UTF_8);
+            }
+            graph.writeScript(graphFile());
+        }
+
+        /** Full ffmpeg command; {@link #write()} must have run. */
+        public List<String> command(Path narration, FrameTarget t, EncoderSettings enc, Path out) {
+            return command(narration, t, enc, out, null);
+        }
+
+        /** Same, muxing {@code softSubtitles} (SRT, null = none) as a mov_text track. */
+        public List<String> command(Path narration, FrameTarget t, EncoderSettings enc, Path out, Path softSubtitles) {
+            List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y"));
+            for (int i = 0; i < inputs.size(); i++) cmd.addAll(ConcatList.inputArgs(listFile(i)));
+            cmd.add("-i"); cmd.add(narration.toAbsolutePath().toString());
+            if (softSubtitles != null) { cmd.add("-i"); cmd.add(softSubtitles.toAbsolutePath().toString()); }
+            cmd.add("-filter_complex_script"); cmd.add(graphFile().toAbsolutePath().toString());
+            cmd.add("-map"); cmd.add("[" + VIDEO_OUT + "]");
+            cmd.add("-map"); cmd.add("[" + AUDIO_OUT + "]");
+            if (softSubtitles != null) {
+                cmd.add("-map"); cmd.add((inputs.size() + 1) + ":s");
+                cmd.add("-c:s"); cmd.add("mov_text");
+            }
+            cmd.addAll(enc.videoArgs());
+            cmd.add("-r"); cmd.add(String.valueOf(t.fps()));
+            cmd.addAll(enc.audioArgs());
+            cmd.add("-movflags"); cmd.add("+faststart");
+            cmd.add(out.toAbsolutePath().toString());
+            return cmd;
+        }
+    }
+
+    private final List<RenderClip> clips;
+    private final Path narration;
+    private final Path output;
+    private final FrameTarget target;
+    private final EncoderSettings enc;
+    private final Path bedAudio; // null = none
+    private final SubtitleTrack subtitles;
+    private final OverlayMode overlays;
+    private final MediaProbeService probes; // null = run ffprobe per clip
+
+    public SinglePassExport(List<RenderClip> clips, Path narration, Path output, FrameTarget target, EncoderSettings enc) {
+        this(clips, narration, output, target, enc, null, SubtitleTrack.empty(), OverlayMode.DRAWTEXT, null);
+    }
+
+    private SinglePassExport(List<RenderClip> clips, Path narration, Path output, FrameTarget target,
+                             EncoderSettings enc, Path bedAudio, SubtitleTrack subtitles, OverlayMode overlays,
+                             MediaProbeService probes) {
+        if (clips.isEmpty()) throw new IllegalArgumentException("no clips");
+        this.clips = List.copyOf(clips);
+        this.narration = narration;
+        this.output = output;
+        this.target = target;
+        this.enc = enc;
+        this.bedAudio = bedAudio;
+        this.subtitles = subtitles;
+        this.overlays = overlays;
+        this.probes = probes;
+    }
+
+    /** Returns a copy that also writes the clips' un-ducked audio to {@code bed} (see {@link NarrationRemix}). */
+    public SinglePassExport withBedAudio(Path bed) {
+        return new SinglePassExport(clips, narration, output, target, enc, bed, subtitles, overlays, probes);
+    }
+
+    /** Returns a copy that renders its text per {@code mode}, from {@code track} unless DRAWTEXT. */
+    public SinglePassExport withSubtitles(SubtitleTrack track, OverlayMode mode) {
+        return new SinglePassExport(clips, narration, output, target, enc, bedAudio, track, mode, probes);
+    }
+
+    /** Returns a copy that groups clips using probes from {@code service} (cached, shared). */
+    public SinglePassExport withProbes(MediaProbeService service) {
+        return new SinglePassExport(clips, narration, output, target, enc, bedAudio, subtitles, overlays, service);
+    }
+
+    @Override
+    public Path run(RenderContext ctx) throws Exception {
+        Path work = Files.createTempDirectory("extord_export");
+        try {
+            boolean track = overlays.usesTrack();
+            Path subs = (track && !subtitles.isEmpty()) ? subtitles.write(work, overlays, target) : null;
+            Plan plan = compile(track ? SubtitleTrack.stripOverlays(clips) : clips, target, work, byStreams(prober(probes)),
+                    bedAudio != null, overlays == OverlayMode.BURN_IN && subs != null ? Filters.subtitlesFile(subs) : null);
+            plan.write();
+            ctx.setExpectedSeconds(plan.durationSec());
+            ctx.setStage("render (" + clips.size() + " clips, " + plan.inputs().size() + " inputs)");
+            List<String> cmd = new ArrayList<>(plan.command(narration, target, enc, output,
+                    overlays == OverlayMode.SOFT ? subs : null));
+            if (bedAudio != null) cmd.addAll(NarrationRemix.bedOutputArgs("[" + BED_OUT + "]", false, bedAudio));
+            ctx.runFfmpeg(cmd, plan.durationSec());
+            return output;
+        } finally {
+            SegmentExport.deleteTree(work);
+        }
+    }
+
+    // ---------- compiler ----------
+
+    /** Compile clips into inputs + graph. Pure: same arguments, same plan. */
+    public static Plan compile(List<RenderClip> clips, FrameTarget t, Path workDir, Function<RenderClip, String> groupKey) {
+        return compile(clips, t, workDir, groupKey, false);
+    }
+
+    /** @param bed also expose the clip audio before ducking as {@link #BED_OUT} */
+    public static Plan compile(List<RenderClip> clips, FrameTarget t, Path workDir, Function<RenderClip, String> groupKey,
+                               boolean bed) {
+        return compile(clips, t, workDir, groupKey, bed, null);
+    }
+
+    /** @param subtitles filter applied once to the concatenated video (e.g. {@link Filters#subtitlesFile}), null = none */
+    public static Plan compile(List<RenderClip> clips, FrameTarget t, Path workDir, Function<RenderClip, String> groupKey,
+                               boolean bed, String subtitles) {
+        Runs runs = group(clips, workDir, groupKey);
+
+        FilterGraph g = new FilterGraph();
+        int n = runs.inputs().size();
+        List<String> concatIn = new ArrayList<>(2 * n);
+        for (int i = 0; i < n; i++) {
+            g.chain(List.of(i + ":v"), videoFilters(runs, i, t), List.of("v" + i));
+            audioChain(g, runs, i, "a" + i);
+            concatIn.add("v" + i);
+            concatIn.add("a" + i);
+        }
+        String vcat = (subtitles != null) ? "vsub" : VIDEO_OUT;
+        if (n > 1) {
+            g.chain(concatIn, List.of("concat=n=" + n + ":v=1:a=1"), List.of(vcat, "acat"));
+        } else {
+            g.chain("v0", "null", vcat);
+            g.chain("a0", "anull", "acat");
+        }
+        if (subtitles != null) g.chain(vcat, subtitles, VIDEO_OUT);
+        String duckIn = "acat";
+        if (bed) {
+            duckIn = "aduck";
+            g.chain(List.of("acat"), List.of("asplit=2"), List.of(duckIn, BED_OUT));
+        }
+        g.chain(n + ":a", "anull", "nar");
+        g.chain(List.of(duckIn, "nar"), List.of(Filters.DUCK), List.of(AUDIO_OUT));
+
+        return new Plan(workDir, runs.inputs(), g, runs.captions(), runs.durationSec());
+    }
+
+    /** Every clip's audio is brought to the rate/layout the encoder settings assume. */
+    static final List<String> AUDIO_NORMALISE = List.of("aresample=48000", "aformat=channel_layouts=stereo");
+
+    /** Input run i conformed to the target: fps, (stills: hold the last frame), letterbox, captions. */
+    static List<String> videoFilters(Runs runs, int i, FrameTarget t) {
+        List<String> vf = new ArrayList<>();
+        vf.add("fps=" + t.fps() + ":start_time=0");
+        StillRun still = runs.stills().get(i);
+        if (still != null) vf.addAll(StillImages.holdFilters(still.lastSec(), still.totalSec()));
+        vf.add(Filters.scalePad(t));
+        vf.addAll(runs.captionFilters().get(i));
+        return vf;
+    }
+
+    /** Input run i's audio, normalised; still runs have none, so they get silence of their length. */
+    static void audioChain(FilterGraph g, Runs runs, int i, String label) {
+        StillRun still = runs.stills().get(i);
+        if (still == null) {
+            g.chain(List.of(i + ":a"), AUDIO_NORMALISE, List.of(label));
+        } else {
+            g.chain(List.of(), List.of("anullsrc=r=48000:cl=stereo", "atrim=duration=" + Filters.sec(still.totalSec())),
+                    List.of(label));
+        }
+    }
+
+    /**
+     * Clips grouped into concat-demuxer inputs.
+     * captionFilters : drawtext filters per input, timed within that input's run
+     * captions       : caption file name (in workDir) -> text
+     * stills         : per input, null for video runs
+     * durationSec    : total length, -1 if some clip has no out point
+     */
+    record Runs(List<ConcatList> inputs, List<List<String>> captionFilters,
+                Map<String, String> captions, List<StillRun> stills, double durationSec) {}
+
+    /** A run of still images: one frame per entry, so the last one must be held for lastSec. */
+    record StillRun(double lastSec, double totalSec) {}
+
+    static Runs group(List<RenderClip> clips, Path workDir, Function<RenderClip, String> groupKey) {
+        List<ConcatList> inputs = new ArrayList<>();
+        List<List<String>> captionFilters = new ArrayList<>();
+        Map<String, String> captions = new LinkedHashMap<>();
+        List<StillRun> stills = new ArrayList<>();
+
+        ConcatList cur = null;
+        List<String> curCaptions = null;
+        String curKey = null;
+        double offset = 0;       // position inside the current run
+        boolean runOpen = false; // previous clip had no out point
+        double total = 0;
+        boolean totalKnown = true;
+
+        for (RenderClip c : clips) {
+            String key = groupKey.apply(c);
+            boolean curStill = !stills.isEmpty() && stills.get(stills.size() - 1) != null;
+            if (cur == null || runOpen || key == null || !key.equals(curKey) || c.isStill() != curStill) {
+                cur = new ConcatList();
+                curCaptions = new ArrayList<>();
+                inputs.add(cur);
+                captionFilters.add(curCaptions);
+                stills.add(c.isStill() ? new StillRun(0, 0) : null);
+                curKey = key;
+                offset = 0;
+            }
+            double dur = c.durationSec();
+            if (c.isStill()) {
+                cur.add(Path.of(c.path()), 0, dur); // an image has no timeline: show it for dur
+                stills.set(stills.size() - 1, new StillRun(dur, offset + dur));
+            } else {
+                cur.add(Path.of(c.path()), c.inSec(), c.outSec());
+            }
+
+            if (c.hasOverlay()) {
+                String name = String.format(Locale.ROOT, "caption-%05d.txt", captions.size());
+                captions.put(name, c.overlayText());
+                curCaptions.add(Filters.drawtextFile(workDir.resolve(name), offset, dur > 0 ? offset + dur : 0));
+            }
+            runOpen = c.openEnded();
+            if (runOpen) totalKnown = false;
+            else { offset += dur; total += dur; }
+        }
+        return new Runs(inputs, captionFilters, captions, stills, totalKnown ? total : -1);
+    }
+}
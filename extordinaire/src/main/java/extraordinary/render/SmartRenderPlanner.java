@@ -0,0 +1,111 @@
+package extraordinary.render;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import extraordinary.media.MediaInfo;
+
+/**
+ * Decides whether a clip can be stream-copied instead of re-encoded, and where to cut.
+ *
+ * A clip conforms when its video already is what the export would produce: H.264 High profile
+ * at a known level, target size, target fps, progressive yuv420p, square pixels, no rotation,
+ * no caption. For such a clip only the partial GOPs at the trim points are re-encoded:
+ *
+ *   in ── head (encode) ── k1 ══ body (copy) ══ k2 ── tail (encode) ── out
+ *
+ * where k1 is the first keyframe at/after the in point and k2 the last one at/before the out
+ * point. Pure: the plan depends only on the clip, the probe, the target and the encoder.
+ *
+ * Notes:
+ *  - The head and tail are encoded as High profile at the source's level
+ *    ({@link Plan#encodeArgs()}), so every piece of the segment declares the same profile and
+ *    level as the copied body.
+ *  - ffprobe's keyframe flag is also set on non-IDR recovery points, where the body would start
+ *    with leading B-frames that reference the dropped GOP. Sources that reorder frames at all
+ *    (has_b_frames > 0) are therefore encoded; without reordering no frame after a keyframe can
+ *    be shown before it, so every keyframe is a clean cut.
+ */
+public final class SmartRenderPlanner {
+    private SmartRenderPlanner() {}
+
+    /** Below this much copyable video, a full encode is simpler and barely slower. */
+    public static final double MIN_COPY_SEC = 1.0;
+
+    private static final double EPS = 0.001;
+
+    /**
+     * One piece of a clip.
+     * start/end : seconds in the source
+     * copy      : true = stream copy (starts on a keyframe), false = re-encode
+     */
+    public record Piece(double start, double end, boolean copy) {
+        public double durationSec() { return end - start; }
+    }
+
+    /**
+     * copyable : false = encode the clip normally ({@code reason} says why)
+     * pieces   : head/body/tail in order (only when copyable; head/tail omitted if empty)
+     * encodeArgs : extra encoder arguments for the head/tail (profile and level of the body)
+     */
+    public record Plan(boolean copyable, String reason, List<Piece> pieces, List<String> encodeArgs) {
+        static Plan reencode(String reason) { return new Plan(false, reason, List.of(), List.of()); }
+
+        /** Seconds that still go through the encoder. */
+        public double encodeSec() {
+            double s = 0;
+            for (Piece p : pieces) if (!p.copy()) s += p.durationSec();
+            return s;
+        }
+    }
+
+    public static Plan plan(RenderClip clip, MediaInfo info, FrameTarget target, EncoderSettings enc) {
+        if (!"libx264".equals(enc.videoCodec()) || !"yuv420p".equals(enc.pixFmt())) {
+            return Plan.reencode("encoder " + enc.videoCodec() + "/" + enc.pixFmt());
+        }
+        if (clip.hasOverlay()) return Plan.reencode("caption");
+        if (info == null || !info.hasVideo()) return Plan.reencode("no video stream");
+        if (!info.hasAudio()) return Plan.reencode("no audio stream");
+        MediaInfo.VideoStream v = info.video();
+        if (!"h264".equals(v.codec())) return Plan.reencode("codec " + v.codec());
+        // libx264 emits High for 8-bit 4:2:0; other profiles would mix parameter sets in one segment
+        if (v.profile() == null || !"high".equals(v.profile().toLowerCase(Locale.ROOT))) {
+            return Plan.reencode("profile " + v.profile());
+        }
+        if (v.level() <= 0) return Plan.reencode("level not probed");
+        if (v.fieldOrder() != null && !"progressive".equals(v.fieldOrder())) return Plan.reencode("interlaced " + v.fieldOrder());
+        if (v.reorderDepth() != 0) return Plan.reencode("B-frames (open GOP possible)");
+        if (v.width() != target.width() || v.height() != target.height()) {
+            return Plan.reencode("size " + v.width() + "x" + v.height());
+        }
+        if (Math.abs(v.fps() - target.fps()) > 0.01) return Plan.reencode("fps " + v.fps());
+        if (!"yuv420p".equals(v.pixFmt())) return Plan.reencode("pix_fmt " + v.pixFmt());
+        if (v.rotation() != 0) return Plan.reencode("rotated " + v.rotation());
+        if (!"1:1".equals(v.sar())) return Plan.reencode("sar " + v.sar());
+        if (!info.hasKeyframes()) return Plan.reencode("keyframes not probed");
+
+        double in = clip.inSec();
+        double out = clip.openEnded() ? info.durationSec() : clip.outSec();
+        if (info.durationSec() > 0) out = Math.min(out, info.durationSec());
+        if (out <= in) return Plan.reencode("unknown duration");
+
+        double k1 = info.keyframeAtOrAfter(in);
+        double k2 = info.keyframeAtOrBefore(out);
+        // The tail needs its own keyframe to start on; cutting the body at the source end needs none.
+        boolean toSourceEnd = info.durationSec() > 0 && out >= info.durationSec() - EPS;
+        double bodyEnd = toSourceEnd ? out : k2;
+        if (k1 < 0 || bodyEnd - k1 < MIN_COPY_SEC) return Plan.reencode("no whole GOP inside trim");
+
+        List<Piece> pieces = new ArrayList<>(3);
+        if (k1 - in > EPS) pieces.add(new Piece(in, k1, false));
+        pieces.add(new Piece(k1, bodyEnd, true));
+        if (out - bodyEnd > EPS) pieces.add(new Piece(bodyEnd, out, false));
+        return new Plan(true, "conforming", pieces, List.of("-profile:v", "high", "-level:v", level(v.level())));
+    }
+
+    /** ffprobe's 31 -> "3.1", as libx264 takes it. */
+    static String level(int probed) {
+        return (probed / 10) + "." + (probed % 10);
+    }
+}
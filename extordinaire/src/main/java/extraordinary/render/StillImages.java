@@ -0,0 +1,78 @@
+package extraordinary.render;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Still-image clips (png/jpg) in exports.
+ *
+ * An image has no audio and a single frame, so it cannot go through the video recipe. Instead:
+ *  1) it is scaled/padded to the target frame once ({@code <key>.png} in the segment cache);
+ *  2) the scaled frame is looped at the target fps for the clip's length, with silent audio
+ *     from {@code anullsrc}, into a normal segment.
+ * Both steps are keyed by the image's content hash, so a still reused anywhere in a project
+ * (or copied under another name) is scaled and encoded once.
+ */
+public final class StillImages {
+    private StillImages() {}
+
+    /** Length of a still clip with no out point. */
+    public static final double DEFAULT_SEC = 3.0;
+
+    /** By extension, like the clip chooser and the preview windows. */
+    public static boolean isStill(String path) {
+        String s = path.toLowerCase(Locale.ROOT);
+        return s.endsWith(".png") || s.endsWith(".jpg") || s.endsWith(".jpeg");
+    }
+
+    /** Cache key of the scaled frame. */
+    public static String scaledKey(String imageHash, FrameTarget t) {
+        return SegmentCache.hash("still-scaled-v1", imageHash, t.fingerprint());
+    }
+
+    /** Scale/pad one image to the target frame, as PNG (lossless; encoded only once per segment). */
+    public static List<String> scaleCommand(Path image, FrameTarget t, Path out) {
+        return List.of("ffmpeg", "-y", "-i", image.toAbsolutePath().toString(),
+                "-vf", Filters.scalePad(t) + ",format=rgb24",
+                "-frames:v", "1", "-f", "image2", "-c:v", "png", out.toAbsolutePath().toString());
+    }
+
+    /**
+     * Loop a scaled frame (plus caption) for {@code sec} seconds with silent audio, encoded with
+     * the same settings as every other segment so the concat stays a stream copy.
+     */
+    public static List<String> segmentCommand(Path scaled, double sec, FrameTarget t, EncoderSettings enc,
+                                              int threads, Path textFile, Path out) {
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y",
+                "-loop", "1", "-framerate", String.valueOf(t.fps()), "-t", Filters.sec(sec),
+                "-i", scaled.toAbsolutePath().toString(),
+                "-f", "lavfi", "-t", Filters.sec(sec),
+                "-i", silence(enc)));
+        if (textFile != null) { cmd.add("-vf"); cmd.add(Filters.drawtextFile(textFile)); }
+        cmd.add("-map"); cmd.add("0:v:0");
+        cmd.add("-map"); cmd.add("1:a:0");
+        cmd.addAll(enc.videoArgs());
+        cmd.add("-tune"); cmd.add("stillimage");
+        if (threads > 0) { cmd.add("-threads"); cmd.add(String.valueOf(threads)); }
+        cmd.add("-r"); cmd.add(String.valueOf(t.fps()));
+        cmd.addAll(enc.audioArgs());
+        cmd.add(out.toAbsolutePath().toString());
+        return cmd;
+    }
+
+    /** Silent audio at the encoder's rate/layout. */
+    public static String silence(EncoderSettings enc) {
+        return "anullsrc=r=" + enc.audioRate() + ":cl=" + (enc.audioChannels() == 1 ? "mono" : "stereo");
+    }
+
+    /**
+     * Filters that turn a concat-demuxer run of images (one frame per entry) into constant-rate
+     * video of {@code totalSec}: the last frame is held for its own duration, then trimmed.
+     */
+    public static List<String> holdFilters(double lastSec, double totalSec) {
+        return List.of("tpad=stop_mode=clone:stop_duration=" + Filters.sec(lastSec),
+                "trim=duration=" + Filters.sec(totalSec), "setpts=PTS-STARTPTS");
+    }
+}
@@ -0,0 +1,163 @@
+package extraordinary.render;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import extraordinary.models.VideoPlan;
+
+/**
+ * All on-screen text of an export as one subtitle track, instead of a drawtext filter per clip.
+ *
+ * Cues come from clip overlay text (placed on the output timeline by clip lengths) and from
+ * VideoPlan segments. The track renders as ASS (styled like the old drawtext captions, for the
+ * {@code subtitles} filter) or SRT (for a soft {@code mov_text} track). Immutable, UI-free.
+ *
+ * Notes:
+ *  - Clip captions use the bottom "Caption" style, plan text the top "Plan" style, so both can
+ *    show at once.
+ *  - After a clip with no out point later clip times are unknown; their captions are dropped
+ *    and that clip's caption runs to the end ({@code endSec} < 0).
+ */
+public final class SubtitleTrack {
+
+    public enum Style { CAPTION, PLAN }
+
+    /** One cue on the output timeline; endSec < 0 = until the end. */
+    public record Cue(double startSec, double endSec, String text, Style style) {}
+
+    private final List<Cue> cues;
+
+    private SubtitleTrack(List<Cue> cues) {
+        List<Cue> sorted = new ArrayList<>(cues);
+        sorted.sort(Comparator.comparingDouble(Cue::startSec));
+        this.cues = List.copyOf(sorted);
+    }
+
+    public static SubtitleTrack empty() { return new SubtitleTrack(List.of()); }
+
+    /** A track of exactly these cues (e.g. read back from a saved job). */
+    public static SubtitleTrack ofCues(List<Cue> cues) { return new SubtitleTrack(cues); }
+
+    /** Captions of the clips, timed by the clips' lengths in order. */
+    public static SubtitleTrack of(List<RenderClip> clips) {
+        List<Cue> out = new ArrayList<>();
+        double t = 0;
+        for (RenderClip c : clips) {
+            double dur = c.durationSec();
+            if (c.hasOverlay()) out.add(new Cue(t, dur > 0 ? t + dur : -1, c.overlayText(), Style.CAPTION));
+            if (c.openEnded()) break;
+            t += dur;
+        }
+        return new SubtitleTrack(out);
+    }
+
+    /** Returns a copy that also shows the plan's segment texts (null plan = unchanged). */
+    public SubtitleTrack withPlan(VideoPlan plan) {
+        if (plan == null) return this;
+        List<Cue> out = new ArrayList<>(cues);
+        for (VideoPlan.Segment s : plan.segments()) {
+            if (s.text == null || s.text.isBlank()) continue;
+            out.add(new Cue(s.startSec, s.endSec, s.text, Style.PLAN));
+        }
+        return new SubtitleTrack(out);
+    }
+
+    public List<Cue> cues() { return cues; }
+    public boolean isEmpty() { return cues.isEmpty(); }
+
+    /** The clips without overlay text (their captions now live in the track). */
+    public static List<RenderClip> stripOverlays(List<RenderClip> clips) {
+        List<RenderClip> out = new ArrayList<>(clips.size());
+        for (RenderClip c : clips) {
+            out.add(c.hasOverlay() ? new RenderClip(c.path(), c.inSec(), c.outSec(), null) : c);
+        }
+        return out;
+    }
+
+    // ---------- ASS ----------
+
+    /** ASS script for the {@code subtitles} filter, laid out for the target frame. */
+    public String toAss(FrameTarget t) {
+        StringBuilder sb = new StringBuilder(256 + cues.size() * 80);
+        sb.append("[Script Info]\n")
+          .append("ScriptType: v4.00+\n")
+          .append("PlayResX: ").append(t.width()).append('\n')
+          .append("PlayResY: ").append(t.height()).append('\n')
+          .append("WrapStyle: 0\n")
+          .append("ScaledBorderAndShadow: yes\n\n");
+        sb.append("[V4+ Styles]\n")
+          .append("Format: Name, Fontname, Fontsize, PrimaryColour, SecondaryColour, OutlineColour, BackColour, ")
+          .append("Bold, Italic, Underline, StrikeOut, ScaleX, ScaleY, Spacing, Angle, BorderStyle, Outline, Shadow, ")
+          .append("Alignment, MarginL, MarginR, MarginV, Encoding\n")
+          // BorderStyle 3 = opaque box in OutlineColour (black, ~50% alpha), like drawtext box=1
+          .append("Style: Caption,Arial,48,&H00FFFFFF,&H00FFFFFF,&H80000000,&H80000000,0,0,0,0,100,100,0,0,3,10,0,2,40,40,200,1\n")
+          .append("Style: Plan,Arial,56,&H00FFFFFF,&H00FFFFFF,&H80000000,&H80000000,1,0,0,0,100,100,0,0,3,10,0,8,40,40,120,1\n\n");
+        sb.append("[Events]\n")
+          .append("Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text\n");
+        for (Cue c : cues) {
+            sb.append("Dialogue: 0,").append(assTime(c.startSec())).append(',')
+              .append(assTime(c.endSec() >= 0 ? c.endSec() : 35999)).append(',')
+              .append(c.style() == Style.PLAN ? "Plan" : "Caption").append(",,0,0,0,,")
+              .append(assText(c.text())).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** h:mm:ss.cc */
+    static String assTime(double sec) {
+        long cs = Math.round(sec * 100);
+        return String.format(Locale.ROOT, "%d:%02d:%02d.%02d", cs / 360000, (cs / 6000) % 60, (cs / 100) % 60, cs % 100);
+    }
+
+    /**
+     * Literal text: braces would start override blocks and newlines end the line. A backslash gets
+     * a word joiner (U+2060) after it so "\N", "\h" etc. typed in a caption stay literal.
+     */
+    static String assText(String s) {
+        return s.replace("\\", "\\⁠")
+                .replace("{", "\\{").replace("}", "\\}")
+                .replace("\r\n", "\n").replace("\n", "\\N");
+    }
+
+    // ---------- SRT ----------
+
+    /** SRT for a soft subtitle track (mov_text in MP4). Cues with no text are left out. */
+    public String toSrt() {
+        StringBuilder sb = new StringBuilder(cues.size() * 64);
+        int i = 1;
+        for (Cue c : cues) {
+            String text = srtText(c.text());
+            if (text.isEmpty()) continue;
+            sb.append(i++).append('\n')
+              .append(srtTime(c.startSec())).append(" --> ").append(srtTime(c.endSec() >= 0 ? c.endSec() : 35999)).append('\n')
+              .append(text).append("\n\n");
+        }
+        return sb.toString();
+    }
+
+    /** A blank line ends an SRT cue: drop {@code \r} and collapse blank-line runs inside the text. */
+    static String srtText(String s) {
+        return s.replace("\r", "").replaceAll("\n\\s*\n", "\n").strip();
+    }
+
+    /** hh:mm:ss,mmm */
+    static String srtTime(double sec) {
+        long ms = Math.round(sec * 1000);
+        return String.format(Locale.ROOT, "%02d:%02d:%02d,%03d", ms / 3600000, (ms / 60000) % 60, (ms / 1000) % 60, ms % 1000);
+    }
+
+    // ---------- files ----------
+
+    /** Writes the form the mode needs ({@code .ass} to burn in, {@code .srt} for a soft track). */
+    public Path write(Path dir, OverlayMode mode, FrameTarget t) throws IOException {
+        Path f = dir.resolve(mode == OverlayMode.SOFT ? "subtitles.srt" : "subtitles.ass");
+        Files.writeString(f, mode == OverlayMode.SOFT ? toSrt() : toAss(t), StandardCharsets.UTF_8);
+        return f;
+    }
+}
@@ -0,0 +1,43 @@
+package extraordinary.render;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Which frame targets one export produces. Chosen at export time in App; a set with several
+ * targets is rendered by {@link MultiTargetExport}, decoding every source once.
+ */
+public enum TargetSet {
+    LANDSCAPE("Landscape", List.of(FrameTarget.LANDSCAPE)),
+    SHORTS("Shorts (portrait)", List.of(FrameTarget.PORTRAIT)),
+    SQUARE("Square", List.of(FrameTarget.SQUARE)),
+    LANDSCAPE_AND_SHORTS("Landscape + Shorts", List.of(FrameTarget.LANDSCAPE, FrameTarget.PORTRAIT)),
+    ALL("Landscape + Shorts + Square", List.of(FrameTarget.LANDSCAPE, FrameTarget.PORTRAIT, FrameTarget.SQUARE));
+
+    private final String label;
+    private final List<FrameTarget> targets;
+
+    TargetSet(String label, List<FrameTarget> targets) {
+        this.label = label;
+        this.targets = targets;
+    }
+
+    public List<FrameTarget> targets() { return targets; }
+
+    public boolean isMulti() { return targets.size() > 1; }
+
+    /**
+     * Output file for one target: the chosen path itself for a single-target set, otherwise
+     * {@code <name>_<target>.<ext>} next to it.
+     */
+    public Path outputFor(Path chosen, FrameTarget t) {
+        if (!isMulti()) return chosen;
+        String file = chosen.getFileName().toString();
+        int dot = file.lastIndexOf('.');
+        String base = dot > 0 ? file.substring(0, dot) : file;
+        String ext = dot > 0 ? file.substring(dot) : ".mp4";
+        return chosen.resolveSibling(base + "_" + t.name() + ext);
+    }
+
+    @Override public String toString() { return label; }
+}
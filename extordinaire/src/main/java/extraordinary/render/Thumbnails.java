@@ -0,0 +1,162 @@
+package extraordinary.render;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import extraordinary.helpers.FileStamp;
+
+/**
+ * Poster frames and filmstrips of clips, as JPEG files on disk. UI-free; the JavaFX side
+ * ({@code gui.ThumbnailCache}) decodes and keeps them in memory.
+ *
+ * A strip is N frames side by side at a fixed height; a poster is a strip of one. Each frame is
+ * the keyframe at or before its time ({@code -noaccurate_seek} input seek, then
+ * {@code -skip_frame nokey}), which always exists, even near the end of a long-GOP clip. So a
+ * strip costs N seeks and N keyframe decodes in one ffmpeg process, never a decode of the
+ * whole clip.
+ *
+ * Notes:
+ *  - Stored in their own {@link SegmentCache} (LRU byte budget). The key is the source's
+ *    identity ({@link FileStamp}, or the content hash for stills, as for segments) plus the
+ *    frame times and height, so the same strip is extracted once however often it is shown.
+ *  - {@link #ensure} blocks while ffmpeg runs; call it from a background thread. It trims the
+ *    store to its budget every {@link #EVICT_STEP_BYTES} extracted, so the budget holds during a
+ *    long session, not just at close.
+ */
+public final class Thumbnails {
+
+    /** Its own store, so thumbnails never compete with export segments for the segment budget. */
+    public static final Path DEFAULT_DIR = Paths.get("cache", "thumbs");
+    public static final long DEFAULT_MAX_BYTES = 1L << 30; // 1 GiB
+
+    static final String EXT = "jpg";
+
+    /** Part of every key: bump with any change to {@link #command} (seek flags, scaling, JPEG quality). */
+    private static final String RECIPE_VERSION = "thumb-v1";
+
+    /** Bytes extracted between disk trims; a trim lists the whole store, so not after every strip. */
+    static final long EVICT_STEP_BYTES = 16L << 20;
+
+    private final SegmentCache store;
+    private final AtomicLong sinceEvict = new AtomicLong(EVICT_STEP_BYTES); // first extraction trims old sessions' leftovers
+
+    public Thumbnails(SegmentCache store) {
+        this.store = store;
+    }
+
+    public static Thumbnails openDefault() throws IOException {
+        return new Thumbnails(new SegmentCache(DEFAULT_DIR, DEFAULT_MAX_BYTES));
+    }
+
+    /** Cache key of a strip. */
+    public static String key(Path source, double[] times, int height) throws IOException {
+        Path src = source.toAbsolutePath().normalize();
+        String identity = StillImages.isStill(src.toString()) ? SegmentCache.fileHash(src) : FileStamp.of(src).id();
+        StringBuilder t = new StringBuilder();
+        for (double x : times) t.append(Filters.sec(x)).append(',');
+        return SegmentCache.hash(RECIPE_VERSION, identity, t.toString(), String.valueOf(height));
+    }
+
+    /** The strip if it was extracted before. */
+    public Optional<Path> find(Path source, double[] times, int height) {
+        try {
+            return store.lookup(key(source, times, height), EXT);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** The strip, extracting it first if needed (blocking). */
+    public Path ensure(Path source, double[] times, int height) throws IOException, InterruptedException {
+        if (times.length == 0) throw new IllegalArgumentException("no frame times");
+        if (height < 2) throw new IllegalArgumentException("height must be >= 2");
+        String key = key(source, times, height);
+        Optional<Path> hit = store.lookup(key, EXT);
+        if (hit.isPresent()) return hit.get();
+        Path tmp = store.newTemp(key, EXT);
+        try {
+            new RenderContext(p -> {}).runFfmpeg(command(source, times, height, tmp), -1);
+            Path out = store.commit(key, EXT, tmp);
+            if (sinceEvict.addAndGet(Files.size(out)) >= EVICT_STEP_BYTES && sinceEvict.getAndSet(0) >= EVICT_STEP_BYTES) {
+                try {
+                    store.evict(List.of(key));
+                } catch (IOException ignored) {
+                    // trimmed after the next step
+                }
+            }
+            return out;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Drop least recently shown thumbnails beyond the budget. */
+    public long evict() throws IOException {
+        return store.evict(List.of());
+    }
+
+    // ---------- times ----------
+
+    /**
+     * Frame times for a strip of {@code n} frames over a trimmed clip: the middle of n equal
+     * slices, so the first and last frames avoid fades at the cut points.
+     * @param outSec  trim out point, <= 0 = end of source
+     * @param durationSec source length, <= 0 if unknown (then only the in point is usable)
+     */
+    public static double[] stripTimes(double inSec, double outSec, double durationSec, int n) {
+        if (n < 1) throw new IllegalArgumentException("n must be >= 1");
+        double in = Math.max(0, inSec);
+        double out = outSec > 0 ? outSec : durationSec;
+        double[] t = new double[n];
+        if (out <= in) {
+            Arrays.fill(t, in);
+            return t;
+        }
+        double slice = (out - in) / n;
+        for (int i = 0; i < n; i++) t[i] = in + slice * (i + 0.5);
+        return t;
+    }
+
+    // ---------- commands ----------
+
+    /** Seek to the keyframe at/before each time, decode it, scale to {@code height}, stack horizontally, one JPEG. */
+    public static List<String> command(Path source, double[] times, int height, Path out) {
+        String src = source.toAbsolutePath().toString();
+        boolean still = StillImages.isStill(src);
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y"));
+        for (double t : times) {
+            if (!still) {
+                cmd.add("-skip_frame"); cmd.add("nokey");
+                cmd.add("-noaccurate_seek");
+                cmd.add("-ss"); cmd.add(Filters.sec(t));
+            }
+            cmd.add("-i"); cmd.add(src);
+        }
+        StringBuilder g = new StringBuilder();
+        for (int i = 0; i < times.length; i++) {
+            g.append('[').append(i).append(":v:0]setpts=PTS-STARTPTS,scale=-2:").append(height)
+             .append(",setsar=1[f").append(i).append("];");
+        }
+        if (times.length == 1) {
+            g.append("[f0]null[strip]");
+        } else {
+            for (int i = 0; i < times.length; i++) g.append("[f").append(i).append(']');
+            g.append("hstack=inputs=").append(times.length).append("[strip]");
+        }
+        cmd.add("-filter_complex"); cmd.add(g.toString());
+        cmd.add("-map"); cmd.add("[strip]");
+        cmd.add("-frames:v"); cmd.add("1");
+        cmd.add("-q:v"); cmd.add("4");
+        cmd.add("-threads"); cmd.add("1");
+        cmd.add("-f"); cmd.add("image2");
+        cmd.add(out.toAbsolutePath().toString());
+        return cmd;
+    }
+}
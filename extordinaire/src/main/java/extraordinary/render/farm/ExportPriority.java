@@ -0,0 +1,24 @@
+package extraordinary.render.farm;
+
+/**
+ * Scheduling class of a farm job; lower ordinal runs first (see {@link ExportScheduler}).
+ */
+public enum ExportPriority {
+    /** Explicitly requested: ahead of everything else. */
+    URGENT,
+    /** Up to {@link #SHORTS_MAX_SEC} of output (Shorts/Reels, cutdowns). */
+    SHORTS,
+    /** Length unknown (some clip plays to the end of its source). */
+    STANDARD,
+    /** Longer than a Short, e.g. {@code LayoutRule.videoPreset2min()} exports. */
+    LONG;
+
+    /** Longest output still scheduled as a Short. */
+    public static final double SHORTS_MAX_SEC = 60;
+
+    /** Class for an export of {@code sec} seconds (-1 = unknown). */
+    public static ExportPriority forDuration(double sec) {
+        if (sec < 0) return STANDARD;
+        return sec <= SHORTS_MAX_SEC ? SHORTS : LONG;
+    }
+}
@@ -0,0 +1,91 @@
+package extraordinary.render.farm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which farm job runs next, and how many run at once.
+ *
+ * Order of the queue:
+ *  1) priority class ({@link ExportPriority}: urgent, shorts, unknown length, long), where a
+ *     job moves up one class for every {@link #AGING_MS} it has waited, so a steady stream of
+ *     Shorts delays a 2-minute export but never starves it;
+ *  2) weighted fair share between projects: the project with the least output seconds
+ *     (finished in the last {@link #SHARE_WINDOW_MS} plus running) per unit of weight goes first;
+ *  3) age (oldest first).
+ *
+ * Admission (per worker):
+ *  - slots = cores / cores one job actually keeps busy (measured from its ffmpeg processes),
+ *    at least 1, at most the worker's limit;
+ *  - no new job while any scratch directory has less than {@code minFreeBytes} left.
+ *
+ * Pure apart from {@link #diskOk}; the spool supplies waiting jobs and usage, so the whole
+ * state lives in spool files and a restarted worker carries on where the last one stopped.
+ */
+public final class ExportScheduler {
+    private ExportScheduler() {}
+
+    /** Waiting time that raises a job by one priority class. */
+    public static final long AGING_MS = 15 * 60_000;
+    /** How far back finished jobs count against their project's share. */
+    public static final long SHARE_WINDOW_MS = 60 * 60_000;
+    /** Default scratch reserve: below this no new job is started. */
+    public static final long DEFAULT_MIN_FREE_BYTES = 5L << 30; // 5 GiB
+    /** Charge for a job whose length is unknown. */
+    static final double UNKNOWN_SEC = 60;
+
+    /**
+     * A queued job as the scheduler sees it.
+     * queuedMillis : first submit time (kept across requeues)
+     */
+    public record Waiting(String id, ExportPriority priority, String project, double weight, long queuedMillis) {}
+
+    /** The waiting jobs in the order they should be claimed. */
+    public static List<Waiting> order(List<Waiting> waiting, Map<String, Double> usageSec, long now) {
+        List<Waiting> out = new ArrayList<>(waiting);
+        out.sort(Comparator.<Waiting>comparingInt(w -> effectiveClass(w, now))
+                .thenComparingDouble(w -> usageSec.getOrDefault(w.project(), 0.0) / w.weight())
+                .thenComparingLong(Waiting::queuedMillis)
+                .thenComparing(Waiting::id));
+        return out;
+    }
+
+    /** Class ordinal after aging (0 = most urgent). */
+    static int effectiveClass(Waiting w, long now) {
+        long raised = Math.max(0, now - w.queuedMillis()) / AGING_MS;
+        return (int) Math.max(0, w.priority().ordinal() - raised);
+    }
+
+    /** What a job is charged against its project's share. */
+    public static double charge(double expectedSec) {
+        return expectedSec >= 0 ? expectedSec : UNKNOWN_SEC;
+    }
+
+    // ---------- admission ----------
+
+    /**
+     * Concurrent jobs for a worker.
+     * @param coresPerJob measured cores one running job keeps busy; <= 0 = not measured yet (one job)
+     */
+    public static int slots(int cores, double coresPerJob, int maxJobs) {
+        if (coresPerJob <= 0) return 1;
+        int n = (int) Math.floor(cores / Math.max(0.5, coresPerJob));
+        return Math.max(1, Math.min(maxJobs, n));
+    }
+
+    /** True when every scratch directory has at least {@code minFreeBytes} usable. */
+    public static boolean diskOk(List<Path> scratch, long minFreeBytes) throws IOException {
+        for (Path p : scratch) {
+            Path existing = p.toAbsolutePath();
+            while (existing != null && !Files.exists(existing)) existing = existing.getParent();
+            if (existing == null) continue;
+            if (Files.getFileStore(existing).getUsableSpace() < minFreeBytes) return false;
+        }
+        return true;
+    }
+}
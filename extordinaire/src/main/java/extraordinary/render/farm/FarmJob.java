@@ -0,0 +1,213 @@
+package extraordinary.render.farm;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import extraordinary.render.EncoderSettings;
+import extraordinary.render.ExportMode;
+import extraordinary.render.FrameTarget;
+import extraordinary.render.OverlayMode;
+import extraordinary.render.RenderClip;
+import extraordinary.render.RenderJob;
+import extraordinary.render.SegmentCache;
+import extraordinary.render.SegmentExport;
+import extraordinary.render.SinglePassExport;
+import extraordinary.render.SubtitleTrack;
+
+/**
+ * Everything a worker in another JVM needs to run one export: a plain, serialisable
+ * description that {@link #toRenderJob(SegmentCache)} turns back into the same export App
+ * would have run locally.
+ *
+ * Notes:
+ *  - Paths are stored as given; workers on other machines need them at the same location
+ *    (a shared mount), just like the spool itself.
+ *  - Only the single-file modes are farmable (segments, smart, single pass); HLS, multi-target
+ *    and cutdown exports stay local.
+ *  - project/weight/priority only steer the {@link ExportScheduler}; they do not change the output.
+ *  - Hand-written JSON (no reflection), like the rest of the render state.
+ */
+public record FarmJob(String id, String name, ExportMode mode, List<RenderClip> clips, Path narration, Path output,
+                      FrameTarget target, EncoderSettings enc, OverlayMode overlays, List<SubtitleTrack.Cue> cues,
+                      String project, double weight, ExportPriority priority) {
+
+    /** Project of jobs submitted without one. */
+    public static final String DEFAULT_PROJECT = "default";
+
+    public FarmJob {
+        Objects.requireNonNull(id, "id");
+        if (id.isBlank() || id.indexOf(RenderSpool.ATTEMPT_SEP) >= 0 || id.indexOf('/') >= 0 || id.indexOf('\\') >= 0) {
+            throw new IllegalArgumentException("bad job id: " + id);
+        }
+        if (!farmable(mode)) throw new IllegalArgumentException("not a farm export mode: " + mode);
+        if (clips.isEmpty()) throw new IllegalArgumentException("no clips");
+        Objects.requireNonNull(narration, "narration");
+        Objects.requireNonNull(output, "output");
+        Objects.requireNonNull(target, "target");
+        Objects.requireNonNull(enc, "enc");
+        clips = List.copyOf(clips);
+        overlays = (overlays == null) ? OverlayMode.DRAWTEXT : overlays;
+        cues = (cues == null) ? List.of() : List.copyOf(cues);
+        project = (project == null || project.isBlank()) ? DEFAULT_PROJECT : project.strip();
+        if (!(weight > 0) || Double.isInfinite(weight)) throw new IllegalArgumentException("weight must be > 0");
+        priority = (priority == null) ? ExportPriority.forDuration(expectedSec(clips)) : priority;
+    }
+
+    /** A new job with a fresh, time-ordered id. */
+    public static FarmJob of(String name, ExportMode mode, List<RenderClip> clips, Path narration, Path output,
+                             FrameTarget target, EncoderSettings enc, OverlayMode overlays, SubtitleTrack track) {
+        return new FarmJob(RenderSpool.newId(), name, mode, clips, narration, output, target, enc, overlays,
+                track == null ? List.of() : track.cues(), DEFAULT_PROJECT, 1.0, null);
+    }
+
+    /** The same job under another id (e.g. a saved job file queued again). */
+    public FarmJob withId(String newId) {
+        return new FarmJob(newId, name, mode, clips, narration, output, target, enc, overlays, cues, project, weight, priority);
+    }
+
+    /** Returns a copy scheduled under {@code newProject} with fair-share {@code newWeight}. */
+    public FarmJob withProject(String newProject, double newWeight) {
+        return new FarmJob(id, name, mode, clips, narration, output, target, enc, overlays, cues, newProject, newWeight, priority);
+    }
+
+    /** Returns a copy in another scheduling class (null = derive from the length again). */
+    public FarmJob withPriority(ExportPriority newPriority) {
+        return new FarmJob(id, name, mode, clips, narration, output, target, enc, overlays, cues, project, weight, newPriority);
+    }
+
+    /** Output length in seconds, -1 if some clip has no out point. */
+    public double expectedSec() {
+        return expectedSec(clips);
+    }
+
+    private static double expectedSec(List<RenderClip> clips) {
+        double s = 0;
+        for (RenderClip c : clips) {
+            if (c.openEnded()) return -1;
+            s += c.durationSec();
+        }
+        return s;
+    }
+
+    public static boolean farmable(ExportMode mode) {
+        return mode == ExportMode.CACHED || mode == ExportMode.PARALLEL
+                || mode == ExportMode.SMART || mode == ExportMode.SINGLE_PASS;
+    }
+
+    /** The export this job describes; segment modes use {@code cache} (shared by the worker's jobs). */
+    public RenderJob toRenderJob(SegmentCache cache) {
+        SubtitleTrack track = SubtitleTrack.ofCues(cues);
+        if (mode == ExportMode.SINGLE_PASS) {
+            return new SinglePassExport(clips, narration, output, target, enc).withSubtitles(track, overlays);
+        }
+        int parallelism = (mode == ExportMode.CACHED) ? 1 : SegmentExport.cores();
+        return new SegmentExport(clips, narration, output, target, enc, cache, parallelism, mode == ExportMode.SMART)
+                .withSubtitles(track, overlays);
+    }
+
+    // ---------- JSON ----------
+
+    public String toJson() {
+        JsonObject o = new JsonObject();
+        o.addProperty("id", id);
+        o.addProperty("name", name);
+        o.addProperty("mode", mode.name());
+        JsonArray cl = new JsonArray();
+        for (RenderClip c : clips) {
+            JsonObject j = new JsonObject();
+            j.addProperty("path", c.path());
+            j.addProperty("inSec", c.inSec());
+            j.addProperty("outSec", c.outSec());
+            j.addProperty("overlayText", c.overlayText());
+            cl.add(j);
+        }
+        o.add("clips", cl);
+        o.addProperty("narration", narration.toString());
+        o.addProperty("output", output.toString());
+
+        JsonObject t = new JsonObject();
+        t.addProperty("name", target.name());
+        t.addProperty("width", target.width());
+        t.addProperty("height", target.height());
+        t.addProperty("fps", target.fps());
+        o.add("target", t);
+
+        JsonObject e = new JsonObject();
+        e.addProperty("videoCodec", enc.videoCodec());
+        e.addProperty("pixFmt", enc.pixFmt());
+        e.addProperty("crf", enc.crf());
+        e.addProperty("preset", enc.preset());
+        e.addProperty("audioCodec", enc.audioCodec());
+        e.addProperty("audioBitrate", enc.audioBitrate());
+        e.addProperty("audioRate", enc.audioRate());
+        e.addProperty("audioChannels", enc.audioChannels());
+        o.add("encoder", e);
+
+        o.addProperty("overlays", overlays.name());
+        JsonArray cs = new JsonArray();
+        for (SubtitleTrack.Cue c : cues) {
+            JsonObject j = new JsonObject();
+            j.addProperty("startSec", c.startSec());
+            j.addProperty("endSec", c.endSec());
+            j.addProperty("text", c.text());
+            j.addProperty("style", c.style().name());
+            cs.add(j);
+        }
+        o.add("cues", cs);
+        o.addProperty("project", project);
+        o.addProperty("weight", weight);
+        o.addProperty("priority", priority.name());
+        return o.toString();
+    }
+
+    /** @throws IllegalArgumentException if the text is not a valid job */
+    public static FarmJob fromJson(String json) {
+        try {
+            JsonObject o = JsonParser.parseString(json).getAsJsonObject();
+            List<RenderClip> clips = new ArrayList<>();
+            for (JsonElement el : o.getAsJsonArray("clips")) {
+                JsonObject j = el.getAsJsonObject();
+                clips.add(new RenderClip(j.get("path").getAsString(), j.get("inSec").getAsDouble(),
+                        j.get("outSec").getAsDouble(), j.get("overlayText").getAsString()));
+            }
+            JsonObject t = o.getAsJsonObject("target");
+            JsonObject e = o.getAsJsonObject("encoder");
+            List<SubtitleTrack.Cue> cues = new ArrayList<>();
+            if (o.has("cues")) {
+                for (JsonElement el : o.getAsJsonArray("cues")) {
+                    JsonObject j = el.getAsJsonObject();
+                    cues.add(new SubtitleTrack.Cue(j.get("startSec").getAsDouble(), j.get("endSec").getAsDouble(),
+                            j.get("text").getAsString(), SubtitleTrack.Style.valueOf(j.get("style").getAsString())));
+                }
+            }
+            return new FarmJob(
+                    o.get("id").getAsString(),
+                    o.get("name").getAsString(),
+                    ExportMode.valueOf(o.get("mode").getAsString()),
+                    clips,
+                    Path.of(o.get("narration").getAsString()),
+                    Path.of(o.get("output").getAsString()),
+                    new FrameTarget(t.get("name").getAsString(), t.get("width").getAsInt(),
+                            t.get("height").getAsInt(), t.get("fps").getAsInt()),
+                    new EncoderSettings(e.get("videoCodec").getAsString(), e.get("pixFmt").getAsString(),
+                            e.get("crf").getAsInt(), e.get("preset").getAsString(),
+                            e.get("audioCodec").getAsString(), e.get("audioBitrate").getAsString(),
+                            e.get("audioRate").getAsInt(), e.get("audioChannels").getAsInt()),
+                    o.has("overlays") ? OverlayMode.valueOf(o.get("overlays").getAsString()) : OverlayMode.DRAWTEXT,
+                    cues,
+                    o.has("project") ? o.get("project").getAsString() : null,
+                    o.has("weight") ? o.get("weight").getAsDouble() : 1.0,
+                    o.has("priority") ? ExportPriority.valueOf(o.get("priority").getAsString()) : null);
+        } catch (IllegalStateException | JsonParseException | NullPointerException | UnsupportedOperationException e) {
+            throw new IllegalArgumentException("invalid farm job: " + e.getMessage(), e);
+        }
+    }
+}
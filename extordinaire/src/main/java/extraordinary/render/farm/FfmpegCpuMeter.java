@@ -0,0 +1,44 @@
+package extraordinary.render.farm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How many cores this JVM's ffmpeg processes are using, from their CPU time between samples.
+ *
+ * Notes:
+ *  - A process that exits between two samples loses its last slice, so short encodes read a
+ *    little low; over a long job the error averages out.
+ *  - Where the OS does not report CPU time for child processes, samples are 0 (and the
+ *    scheduler keeps its previous estimate).
+ */
+final class FfmpegCpuMeter {
+
+    private Map<Long, Long> lastCpuNanos = new HashMap<>();
+    private long lastWallNanos = System.nanoTime();
+
+    /** Average cores in use since the previous call. */
+    synchronized double sample() {
+        Map<Long, Long> now = new HashMap<>();
+        ProcessHandle.current().descendants().forEach(ph -> {
+            ProcessHandle.Info info = ph.info();
+            boolean ffmpeg = info.command().map(FfmpegCpuMeter::isFfmpeg).orElse(false);
+            if (ffmpeg) info.totalCpuDuration().ifPresent(d -> now.put(ph.pid(), d.toNanos()));
+        });
+        long cpu = 0;
+        for (Map.Entry<Long, Long> e : now.entrySet()) {
+            cpu += Math.max(0, e.getValue() - lastCpuNanos.getOrDefault(e.getKey(), 0L));
+        }
+        long wallNow = System.nanoTime();
+        long wall = wallNow - lastWallNanos;
+        lastWallNanos = wallNow;
+        lastCpuNanos = now;
+        return wall > 0 ? (double) cpu / wall : 0;
+    }
+
+    private static boolean isFfmpeg(String command) {
+        String c = command.replace('\\', '/');
+        String name = c.substring(c.lastIndexOf('/') + 1);
+        return name.equals("ffmpeg") || name.equals("ffmpeg.exe");
+    }
+}
@@ -0,0 +1,160 @@
+package extraordinary.render.farm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import extraordinary.render.SegmentCache;
+import extraordinary.render.SegmentExport;
+
+/**
+ * Command line for the render farm (also reachable as {@code Main farm ...}).
+ *
+ *   worker <spool> [--cache <dir>] [--name <name>] [--max-jobs <n>] [--min-free-gb <gb>] [--once]
+ *                                           serve jobs (headless)
+ *   submit <spool> [--project <p>] [--weight <w>] [--priority <class>] <job.json>...
+ *                                           queue saved jobs, print their ids
+ *   status <spool> [<id>]                   queue overview (in claim order), or one job
+ *   cancel <spool> <id>                     stop a queued or running job
+ *
+ * Job files are {@link FarmJob#toJson()} documents; their id is replaced by a fresh one on
+ * submit, so one file can be queued repeatedly. Submit options override the file's scheduling
+ * fields (see {@link ExportScheduler}).
+ */
+public final class RenderFarm {
+    private RenderFarm() {}
+
+    public static void main(String[] args) throws Exception {
+        int code = run(args);
+        if (code != 0) System.exit(code);
+    }
+
+    /** @return process exit code */
+    public static int run(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) return usage();
+        RenderSpool spool = new RenderSpool(Path.of(args[1]));
+        List<String> rest = Arrays.asList(args).subList(2, args.length);
+        switch (args[0]) {
+            case "worker" -> { return worker(spool, rest); }
+            case "submit" -> { return submit(spool, rest); }
+            case "status" -> { return status(spool, rest); }
+            case "cancel" -> {
+                if (rest.size() != 1) return usage();
+                spool.cancel(rest.get(0));
+                System.out.println("cancel requested: " + rest.get(0));
+                return 0;
+            }
+            default -> { return usage(); }
+        }
+    }
+
+    private static int worker(RenderSpool spool, List<String> opts) throws IOException, InterruptedException {
+        Path cacheDir = SegmentCache.DEFAULT_DIR;
+        String name = RenderWorker.defaultName();
+        int maxJobs = SegmentExport.cores();
+        long minFree = ExportScheduler.DEFAULT_MIN_FREE_BYTES;
+        boolean once = false;
+        try {
+            for (int i = 0; i < opts.size(); i++) {
+                switch (opts.get(i)) {
+                    case "--cache"       -> { if (++i >= opts.size()) return usage(); cacheDir = Path.of(opts.get(i)); }
+                    case "--name"        -> { if (++i >= opts.size()) return usage(); name = opts.get(i); }
+                    case "--max-jobs"    -> { if (++i >= opts.size()) return usage(); maxJobs = Integer.parseInt(opts.get(i)); }
+                    case "--min-free-gb" -> { if (++i >= opts.size()) return usage(); minFree = (long) (Double.parseDouble(opts.get(i)) * (1L << 30)); }
+                    case "--once"        -> once = true;
+                    default -> { return usage(); }
+                }
+            }
+        } catch (NumberFormatException e) {
+            return usage();
+        }
+        SegmentCache cache = new SegmentCache(cacheDir, SegmentCache.DEFAULT_MAX_BYTES);
+        try (RenderWorker w = new RenderWorker(spool, cache, name, maxJobs, minFree)) {
+            // Ctrl-C / SIGTERM: the JVM halts once hooks return, so wait for the serving thread to
+            // hand its jobs back (bounded: after STALE_MS they would be reaped anyway).
+            Thread serving = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                w.stop();
+                try {
+                    serving.join(RenderSpool.STALE_MS);
+                } catch (InterruptedException ignored) {
+                    // exit now; unreturned claims are reaped
+                }
+            }, "render-worker-stop"));
+            System.out.println("[" + w.name() + "] serving " + spool.root() + " (" + w.slots() + " slot(s) now, max " + maxJobs + ")");
+            if (once) w.runOne();
+            else w.runLoop();
+        }
+        return 0;
+    }
+
+    private static int submit(RenderSpool spool, List<String> args) throws IOException {
+        String project = null;
+        double weight = -1;
+        ExportPriority priority = null;
+        List<String> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.size(); i++) {
+                switch (args.get(i)) {
+                    case "--project"  -> { if (++i >= args.size()) return usage(); project = args.get(i); }
+                    case "--weight"   -> { if (++i >= args.size()) return usage(); weight = Double.parseDouble(args.get(i)); }
+                    case "--priority" -> { if (++i >= args.size()) return usage(); priority = ExportPriority.valueOf(args.get(i).toUpperCase(Locale.ROOT)); }
+                    default -> files.add(args.get(i));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return usage();
+        }
+        if (files.isEmpty()) return usage();
+        for (String f : files) {
+            FarmJob job = FarmJob.fromJson(Files.readString(Path.of(f), StandardCharsets.UTF_8)).withId(RenderSpool.newId());
+            if (project != null || weight > 0) {
+                job = job.withProject(project != null ? project : job.project(), weight > 0 ? weight : job.weight());
+            }
+            if (priority != null) job = job.withPriority(priority);
+            System.out.println(spool.submit(job) + "  " + job.priority() + "  " + job.project() + "  " + job.name() + " -> " + job.output());
+        }
+        return 0;
+    }
+
+    private static int status(RenderSpool spool, List<String> ids) throws IOException {
+        if (ids.isEmpty()) {
+            List<Path> order = spool.scheduled();
+            System.out.println("queued : " + order.size());
+            for (Path q : order) System.out.println("  next : " + RenderSpool.idOf(q));
+            for (String id : spool.claimed()) {
+                Optional<RenderSpool.Heartbeat> hb = spool.heartbeat(id);
+                System.out.println("running: " + id + hb.map(h -> "  " + h.worker() + "  " + h.stage()).orElse(""));
+            }
+            return 0;
+        }
+        String id = ids.get(0);
+        Optional<RenderSpool.Result> r = spool.result(id);
+        if (r.isPresent()) {
+            System.out.println(id + ": " + r.get().status() + "  " + r.get().message());
+        } else if (spool.claimed().contains(id)) {
+            System.out.println(id + ": running" + spool.heartbeat(id).map(h -> "  " + h.worker() + "  " + h.stage()).orElse(""));
+        } else if (spool.queued().contains(id)) {
+            System.out.println(id + ": queued");
+        } else {
+            System.out.println(id + ": unknown");
+            return 1;
+        }
+        return 0;
+    }
+
+    private static int usage() {
+        System.err.println("""
+                usage: RenderFarm worker <spool> [--cache <dir>] [--name <name>] [--max-jobs <n>] [--min-free-gb <gb>] [--once]
+                       RenderFarm submit <spool> [--project <p>] [--weight <w>] [--priority URGENT|SHORTS|STANDARD|LONG] <job.json>...
+                       RenderFarm status <spool> [<id>]
+                       RenderFarm cancel <spool> <id>""");
+        return 2;
+    }
+}
@@ -0,0 +1,493 @@
+package extraordinary.render.farm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import extraordinary.helpers.AtomicFiles;
+import extraordinary.render.RenderProgress;
+import extraordinary.render.RenderResult;
+
+/**
+ * File-based job queue shared by GUI, CLI and {@link RenderWorker}s: a plain directory (local or
+ * on a shared mount), no broker.
+ *
+ * Layout:
+ *   queue/<id>~<attempt>.json    submitted, waiting
+ *   claimed/<id>~<attempt>.json  taken by a worker
+ *   heartbeats/<id>.json         the claiming worker's liveness + progress, rewritten every few seconds
+ *   results/<id>.json            final status (the job is done once this exists), deleted once it
+ *                                falls out of the fair-share window
+ *   cancel/<id>                  cancel request from the submitter
+ *   scheduler/<host>.json        measured cores per job on that host (see {@link ExportScheduler})
+ *
+ * Notes:
+ *  - Every hand-over is one atomic rename, so exactly one worker wins a claim and exactly one
+ *    reaper wins a requeue. Files are written to a dot-prefixed temp and renamed into place,
+ *    so readers never see a partial job or result.
+ *  - A claim whose heartbeat is older than {@link #STALE_MS} belongs to a dead worker: any
+ *    worker moves it back to the queue with the attempt count raised; after
+ *    {@link #MAX_ATTEMPTS} it fails instead of taking down worker after worker.
+ *  - A worker that finds its claim gone (requeued under it) stops its job and reports nothing.
+ *  - Claims follow {@link ExportScheduler#order}; project shares are rebuilt from results/ and
+ *    claimed/, so nothing but the files themselves needs to survive a restart.
+ *  - Staleness compares file times with the local clock; machines sharing a spool need
+ *    roughly synchronised clocks (well within {@link #STALE_MS}).
+ */
+public final class RenderSpool {
+
+    public static final long HEARTBEAT_MS = 5_000;
+    public static final long STALE_MS = 30_000;
+    public static final int MAX_ATTEMPTS = 3;
+    /** Separates job id and attempt in queue/claimed file names. */
+    static final char ATTEMPT_SEP = '~';
+
+    /** A job taken by a worker. */
+    public record Claim(String id, int attempt, Path file, FarmJob job) {}
+
+    /** What the claiming worker last reported. */
+    public record Heartbeat(String worker, long timeMillis, String stage, double fraction) {}
+
+    /**
+     * Final outcome, as written by the worker (or by the spool for dead/cancelled jobs).
+     * project/chargedSec : what the job counts against its project's fair share
+     */
+    public record Result(String id, RenderResult.Status status, String output, String message,
+                         long elapsedMillis, String worker, int attempts, String project, double chargedSec) {
+
+        public RenderResult toRenderResult() {
+            return new RenderResult(status, output == null ? null : Path.of(output), message, elapsedMillis);
+        }
+    }
+
+    /** Scheduler view of a finished job (results are immutable once written). */
+    private record Charge(String project, double sec, long finishedMillis) {}
+    /** Cached for a result file that has no result: always outside the share window. */
+    private static final Charge NO_CHARGE = new Charge(null, 0, 0);
+
+    private final Path root;
+    // job and result files never change under one name, so parsed views are cached by file name
+    private final Map<String, ExportScheduler.Waiting> waitingCache = new HashMap<>();
+    private final Map<String, Charge> chargeCache = new HashMap<>(); // kept until the result file is pruned
+
+    public RenderSpool(Path root) throws IOException {
+        this.root = root.toAbsolutePath();
+        for (String d : List.of("queue", "claimed", "heartbeats", "results", "cancel", "scheduler")) {
+            Files.createDirectories(this.root.resolve(d));
+        }
+    }
+
+    public Path root() { return root; }
+
+    /** Time-ordered unique id: the queue is served oldest first by name. */
+    public static String newId() {
+        return String.format(Locale.ROOT, "%013d-%08x", System.currentTimeMillis(), ThreadLocalRandom.current().nextInt());
+    }
+
+    // ---------- submitter side ----------
+
+    /** Queue a job; returns its id. */
+    public String submit(FarmJob job) throws IOException {
+        AtomicFiles.writeString(dir("queue").resolve(fileName(job.id(), 0)), job.toJson());
+        return job.id();
+    }
+
+    public Optional<Result> result(String id) throws IOException {
+        Path f = dir("results").resolve(id + ".json");
+        if (!Files.exists(f)) return Optional.empty();
+        try {
+            JsonObject o = JsonParser.parseString(Files.readString(f, StandardCharsets.UTF_8)).getAsJsonObject();
+            return Optional.of(new Result(
+                    o.get("id").getAsString(),
+                    RenderResult.Status.valueOf(o.get("status").getAsString()),
+                    o.has("output") ? o.get("output").getAsString() : null,
+                    o.get("message").getAsString(),
+                    o.get("elapsedMillis").getAsLong(),
+                    o.get("worker").getAsString(),
+                    o.get("attempts").getAsInt(),
+                    o.has("project") ? o.get("project").getAsString() : FarmJob.DEFAULT_PROJECT,
+                    o.has("chargedSec") ? o.get("chargedSec").getAsDouble() : 0));
+        } catch (IllegalStateException | IllegalArgumentException | JsonParseException | NullPointerException e) {
+            throw new IOException("unreadable result " + f + ": " + e.getMessage(), e);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Optional<Heartbeat> heartbeat(String id) throws IOException {
+        Path f = dir("heartbeats").resolve(id + ".json");
+        try {
+            JsonObject o = JsonParser.parseString(Files.readString(f, StandardCharsets.UTF_8)).getAsJsonObject();
+            return Optional.of(new Heartbeat(o.get("worker").getAsString(), o.get("timeMillis").getAsLong(),
+                    o.get("stage").getAsString(), o.get("fraction").getAsDouble()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IllegalStateException | JsonParseException | NullPointerException e) {
+            return Optional.empty(); // being replaced; the next poll reads the new one
+        }
+    }
+
+    /**
+     * Ask for a job to stop. A job still waiting is taken out of the queue right here; a
+     * running one is stopped by its worker at the next heartbeat.
+     */
+    public void cancel(String id) throws IOException {
+        try {
+            Files.createFile(dir("cancel").resolve(id));
+        } catch (FileAlreadyExistsException ignored) {
+        }
+        for (Path q : list("queue")) {
+            if (!idOf(q).equals(id)) continue;
+            try {
+                Files.delete(q); // a worker that renamed it first owns it and sees the marker
+                writeResult(new Result(id, RenderResult.Status.CANCELLED, null, "Export cancelled.", 0, "", attemptOf(q),
+                        FarmJob.DEFAULT_PROJECT, 0));
+                Files.deleteIfExists(dir("cancel").resolve(id));
+            } catch (NoSuchFileException ignored) {
+            }
+        }
+    }
+
+    /** Jobs waiting / claimed, oldest first (ids). */
+    public List<String> queued() throws IOException { return ids(list("queue")); }
+    public List<String> claimed() throws IOException { return ids(list("claimed")); }
+
+    // ---------- worker side ----------
+
+    /** Take the waiting job the {@link ExportScheduler} puts first, if any. */
+    public synchronized Optional<Claim> claim(String worker) throws IOException {
+        for (Path q : scheduled()) {
+            Path c = dir("claimed").resolve(q.getFileName());
+            try {
+                Files.move(q, c, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException | FileAlreadyExistsException lost) {
+                continue; // another worker was faster
+            } catch (AtomicMoveNotSupportedException e) {
+                throw new IOException("spool file system cannot rename atomically: " + root, e);
+            }
+            String id = idOf(c);
+            int attempt = attemptOf(c);
+            try {
+                Files.setLastModifiedTime(c, FileTime.fromMillis(System.currentTimeMillis())); // rename keeps the old mtime
+            } catch (NoSuchFileException reaped) {
+                continue;
+            }
+            Claim claim;
+            try {
+                claim = new Claim(id, attempt, c, FarmJob.fromJson(Files.readString(c, StandardCharsets.UTF_8)));
+            } catch (IllegalArgumentException bad) {
+                fail(id, c, attempt, worker, "Export failed: " + bad.getMessage());
+                continue;
+            }
+            if (!beat(claim, worker, null)) continue;
+            return Optional.of(claim);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Record that the worker is alive (with its progress).
+     * @return false if the claim was taken away (requeued as dead); the worker must stop
+     */
+    public boolean beat(Claim claim, String worker, RenderProgress p) throws IOException {
+        if (!Files.exists(claim.file())) return false;
+        JsonObject o = new JsonObject();
+        o.addProperty("worker", worker);
+        o.addProperty("timeMillis", System.currentTimeMillis());
+        o.addProperty("stage", p == null ? "starting" : p.describe());
+        o.addProperty("fraction", p == null ? -1 : p.fraction());
+        AtomicFiles.writeString(dir("heartbeats").resolve(claim.id() + ".json"), o.toString());
+        return Files.exists(claim.file());
+    }
+
+    public boolean cancelRequested(String id) {
+        return Files.exists(dir("cancel").resolve(id));
+    }
+
+    /** Publish the outcome and release the claim (no-op if the claim was lost meanwhile). */
+    public boolean complete(Claim claim, String worker, RenderResult r) throws IOException {
+        if (!Files.exists(claim.file())) return false;
+        writeResult(new Result(claim.id(), r.status(), r.output() == null ? null : r.output().toString(),
+                r.message(), r.elapsedMillis(), worker, claim.attempt() + 1,
+                claim.job().project(), ExportScheduler.charge(claim.job().expectedSec())));
+        release(claim.id(), claim.file());
+        return true;
+    }
+
+    /** Hand a claim back unfinished (worker shutting down); it keeps its attempt count. */
+    public boolean giveBack(Claim claim) throws IOException {
+        try {
+            Files.move(claim.file(), dir("queue").resolve(claim.file().getFileName()), StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException | FileAlreadyExistsException lost) {
+            return false;
+        }
+        Files.deleteIfExists(dir("heartbeats").resolve(claim.id() + ".json"));
+        return true;
+    }
+
+    // ---------- scheduling ----------
+
+    /** Queue files in claim order. */
+    List<Path> scheduled() throws IOException {
+        long now = System.currentTimeMillis();
+        List<Path> files = list("queue");
+        Map<String, Path> byId = new HashMap<>();
+        List<ExportScheduler.Waiting> waiting = new ArrayList<>(files.size());
+        List<Path> unreadable = new ArrayList<>();
+        Map<String, ExportScheduler.Waiting> seen = new HashMap<>();
+        for (Path q : files) {
+            String key = q.getFileName().toString();
+            ExportScheduler.Waiting w = waitingCache.get(key);
+            if (w == null) {
+                FarmJob job = jobOf(q);
+                if (job == null) { unreadable.add(q); continue; } // claimed and failed with its error
+                w = new ExportScheduler.Waiting(job.id(), job.priority(), job.project(), job.weight(),
+                        submittedMillis(job.id(), q));
+            }
+            seen.put(key, w);
+            waiting.add(w);
+            byId.put(w.id(), q);
+        }
+        waitingCache.keySet().retainAll(seen.keySet());
+        waitingCache.putAll(seen);
+
+        List<Path> out = new ArrayList<>(files.size());
+        for (ExportScheduler.Waiting w : ExportScheduler.order(waiting, usage(now), now)) out.add(byId.get(w.id()));
+        out.addAll(unreadable);
+        return out;
+    }
+
+    /**
+     * Output seconds per project: finished within the share window, plus everything running.
+     * Results older than the window no longer count and are deleted here; submitters read theirs
+     * within a poll or two of it being written.
+     */
+    Map<String, Double> usage(long now) throws IOException {
+        Map<String, Double> out = new HashMap<>();
+        Map<String, Charge> seen = new HashMap<>();
+        for (Path r : list("results")) {
+            String key = r.getFileName().toString();
+            Charge c = chargeCache.get(key);
+            if (c == null) {
+                String id = key.substring(0, key.length() - ".json".length());
+                try {
+                    Optional<Result> res = result(id);
+                    c = res.isPresent()
+                            ? new Charge(res.get().project(), res.get().chargedSec(), Files.getLastModifiedTime(r).toMillis())
+                            : NO_CHARGE;
+                } catch (IOException unreadable) {
+                    if (expired(r, now)) prune(r);
+                    continue; // retried next pass
+                }
+            }
+            if (now - c.finishedMillis() > ExportScheduler.SHARE_WINDOW_MS) {
+                prune(r);
+                continue;
+            }
+            seen.put(key, c);
+            out.merge(c.project(), c.sec(), Double::sum);
+        }
+        chargeCache.keySet().retainAll(seen.keySet());
+        chargeCache.putAll(seen);
+
+        for (Path c : list("claimed")) {
+            FarmJob job = jobOf(c);
+            if (job != null) out.merge(job.project(), ExportScheduler.charge(job.expectedSec()), Double::sum);
+        }
+        return out;
+    }
+
+    private static boolean expired(Path result, long now) {
+        try {
+            return now - Files.getLastModifiedTime(result).toMillis() > ExportScheduler.SHARE_WINDOW_MS;
+        } catch (IOException gone) {
+            return false;
+        }
+    }
+
+    /** Best effort: another worker may prune the same result, or it is retried next pass. */
+    private static void prune(Path result) {
+        try {
+            Files.deleteIfExists(result);
+        } catch (IOException ignored) {
+            // retried next pass
+        }
+    }
+
+    /** Submit time from a {@link #newId()} id, else the file's time. */
+    private static long submittedMillis(String id, Path file) throws IOException {
+        int dash = id.indexOf('-');
+        if (dash == 13) {
+            try {
+                return Long.parseLong(id.substring(0, dash));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return Files.getLastModifiedTime(file).toMillis();
+    }
+
+    private static FarmJob jobOf(Path jobFile) {
+        try {
+            return FarmJob.fromJson(Files.readString(jobFile, StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // ---------- host stats ----------
+
+    /** Last measured cores per job on {@code host}, or -1 if never measured. */
+    public double coresPerJob(String host) {
+        try {
+            JsonObject o = JsonParser.parseString(Files.readString(hostFile(host), StandardCharsets.UTF_8)).getAsJsonObject();
+            return o.get("coresPerJob").getAsDouble();
+        } catch (IOException | IllegalStateException | JsonParseException | NullPointerException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    public void saveCoresPerJob(String host, double coresPerJob) throws IOException {
+        JsonObject o = new JsonObject();
+        o.addProperty("coresPerJob", coresPerJob);
+        o.addProperty("updatedMillis", System.currentTimeMillis());
+        AtomicFiles.writeString(hostFile(host), o.toString());
+    }
+
+    private Path hostFile(String host) {
+        return dir("scheduler").resolve(host.replaceAll("[^A-Za-z0-9._-]", "_") + ".json");
+    }
+
+    /**
+     * Requeue claims whose worker stopped beating (or fail them after {@link #MAX_ATTEMPTS}).
+     * Safe to run from every worker at once.
+     * @return claims taken back
+     */
+    public int reap() throws IOException {
+        long now = System.currentTimeMillis();
+        int n = 0;
+        for (Path c : list("claimed")) {
+            String id = idOf(c);
+            long last;
+            try {
+                last = Files.getLastModifiedTime(c).toMillis();
+                Path hb = dir("heartbeats").resolve(id + ".json");
+                if (Files.exists(hb)) last = Math.max(last, Files.getLastModifiedTime(hb).toMillis());
+            } catch (NoSuchFileException gone) {
+                continue;
+            }
+            if (now - last < STALE_MS) continue;
+
+            int next = attemptOf(c) + 1;
+            if (next < MAX_ATTEMPTS && !cancelRequested(id)) {
+                try {
+                    Files.move(c, dir("queue").resolve(fileName(id, next)), StandardCopyOption.ATOMIC_MOVE);
+                } catch (NoSuchFileException | FileAlreadyExistsException lost) {
+                    continue;
+                }
+                Files.deleteIfExists(dir("heartbeats").resolve(id + ".json"));
+            } else {
+                Path dead = dir("claimed").resolve("." + c.getFileName() + ".dead");
+                try {
+                    Files.move(c, dead, StandardCopyOption.ATOMIC_MOVE); // win the claim before failing it
+                } catch (NoSuchFileException | FileAlreadyExistsException lost) {
+                    continue;
+                }
+                String msg = cancelRequested(id) ? "Export cancelled." : "Export failed: worker died " + next + " times";
+                FarmJob job = jobOf(dead);
+                writeResult(new Result(id, cancelRequested(id) ? RenderResult.Status.CANCELLED : RenderResult.Status.FAILED,
+                        null, msg, 0, "", next, job != null ? job.project() : FarmJob.DEFAULT_PROJECT,
+                        job != null ? ExportScheduler.charge(job.expectedSec()) : 0));
+                release(id, dead);
+            }
+            n++;
+        }
+        return n;
+    }
+
+    // ---------- files ----------
+
+    private Path dir(String name) { return root.resolve(name); }
+
+    private void fail(String id, Path claimFile, int attempt, String worker, String message) throws IOException {
+        writeResult(new Result(id, RenderResult.Status.FAILED, null, message, 0, worker, attempt + 1,
+                FarmJob.DEFAULT_PROJECT, 0));
+        release(id, claimFile);
+    }
+
+    private void release(String id, Path claimFile) throws IOException {
+        Files.deleteIfExists(claimFile);
+        Files.deleteIfExists(dir("heartbeats").resolve(id + ".json"));
+        Files.deleteIfExists(dir("cancel").resolve(id));
+    }
+
+    private void writeResult(Result r) throws IOException {
+        JsonObject o = new JsonObject();
+        o.addProperty("id", r.id());
+        o.addProperty("status", r.status().name());
+        if (r.output() != null) o.addProperty("output", r.output());
+        o.addProperty("message", r.message());
+        o.addProperty("elapsedMillis", r.elapsedMillis());
+        o.addProperty("worker", r.worker());
+        o.addProperty("attempts", r.attempts());
+        o.addProperty("project", r.project());
+        o.addProperty("chargedSec", r.chargedSec());
+        AtomicFiles.writeString(dir("results").resolve(r.id() + ".json"), o.toString());
+    }
+
+    /** Committed job files in a directory, oldest first (temp files start with '.'). */
+    private List<Path> list(String name) throws IOException {
+        List<Path> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir(name), "*.json")) {
+            for (Path p : ds) {
+                if (!p.getFileName().toString().startsWith(".")) out.add(p);
+            }
+        }
+        out.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+        return out;
+    }
+
+    private static List<String> ids(List<Path> files) {
+        List<String> out = new ArrayList<>(files.size());
+        for (Path p : files) out.add(idOf(p));
+        return out;
+    }
+
+    static String fileName(String id, int attempt) {
+        return id + ATTEMPT_SEP + attempt + ".json";
+    }
+
+    static String idOf(Path jobFile) {
+        String n = jobFile.getFileName().toString();
+        int sep = n.lastIndexOf(ATTEMPT_SEP);
+        return sep >= 0 ? n.substring(0, sep) : n.substring(0, n.length() - ".json".length());
+    }
+
+    static int attemptOf(Path jobFile) {
+        String n = jobFile.getFileName().toString();
+        int sep = n.lastIndexOf(ATTEMPT_SEP);
+        if (sep < 0) return 0;
+        try {
+            return Integer.parseInt(n.substring(sep + 1, n.length() - ".json".length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
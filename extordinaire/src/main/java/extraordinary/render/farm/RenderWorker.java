@@ -0,0 +1,267 @@
+package extraordinary.render.farm;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import extraordinary.render.RenderJobService;
+import extraordinary.render.RenderResult;
+import extraordinary.render.SegmentCache;
+import extraordinary.render.SegmentExport;
+
+/**
+ * Headless render worker: claims jobs from a {@link RenderSpool} in {@link ExportScheduler}
+ * order and runs them like App would, beating every {@link RenderSpool#HEARTBEAT_MS} per job.
+ *
+ * Run one per machine (it sizes itself) or several on a shared spool. Every worker also reaps
+ * claims of dead workers.
+ *
+ * Concurrency: the worker samples the CPU its ffmpeg processes use and keeps a running
+ * average of cores per job (saved in the spool per host, so a restart starts from it). It
+ * runs as many jobs as the cores allow, e.g. one x264 export that fills the box, or several
+ * smart renders that mostly copy. It starts nothing new while scratch disk is low.
+ */
+public final class RenderWorker implements AutoCloseable {
+
+    /** Idle poll interval. */
+    public static final long POLL_MS = 1_000;
+    /** CPU sampling interval. */
+    static final long SAMPLE_MS = 2_000;
+    /** Weight of a new sample in the cores-per-job average. */
+    static final double SAMPLE_WEIGHT = 0.2;
+    /** Samples between saves of the average (about a minute). */
+    static final int SAVE_EVERY = 30;
+
+    private final RenderSpool spool;
+    private final SegmentCache cache;
+    private final String name;
+    private final String host;
+    private final int maxJobs;
+    private final long minFreeBytes;
+    private final RenderJobService jobs;
+    private final ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "render-worker-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final FfmpegCpuMeter meter = new FfmpegCpuMeter();
+    private final Set<Running> running = ConcurrentHashMap.newKeySet();
+    private volatile double coresPerJob;
+    private volatile boolean stopped;
+    private boolean diskLow; // last logged state
+    private int samples;     // timer thread only
+
+    /** A claimed job in progress. */
+    private record Running(RenderSpool.Claim claim, RenderJobService.Handle handle, AtomicBoolean lost,
+                           ScheduledFuture<?> beat, CompletableFuture<Void> done, long startedAt) {}
+
+    public RenderWorker(RenderSpool spool, SegmentCache cache, String name) {
+        this(spool, cache, name, SegmentExport.cores(), ExportScheduler.DEFAULT_MIN_FREE_BYTES);
+    }
+
+    /**
+     * @param maxJobs      upper bound on concurrent jobs, whatever the measurements say
+     * @param minFreeBytes scratch reserve (temp dir, segment cache, spool) below which no job starts
+     */
+    public RenderWorker(RenderSpool spool, SegmentCache cache, String name, int maxJobs, long minFreeBytes) {
+        if (maxJobs < 1) throw new IllegalArgumentException("maxJobs must be >= 1");
+        this.spool = spool;
+        this.cache = cache;
+        this.name = name;
+        this.host = hostName();
+        this.maxJobs = maxJobs;
+        this.minFreeBytes = minFreeBytes;
+        this.jobs = new RenderJobService(maxJobs, Runnable::run);
+        this.coresPerJob = spool.coresPerJob(host);
+        timers.scheduleWithFixedDelay(this::sample, SAMPLE_MS, SAMPLE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** {@code host:pid}, unique enough for heartbeats and results. */
+    public static String defaultName() {
+        return hostName() + ":" + ProcessHandle.current().pid();
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "localhost";
+        }
+    }
+
+    public String name() { return name; }
+
+    /** Jobs this worker would run at once right now. */
+    public int slots() {
+        return ExportScheduler.slots(SegmentExport.cores(), coresPerJob, maxJobs);
+    }
+
+    /** Serve jobs until {@link #stop()} (or interrupt); running jobs are handed back on the way out. */
+    public void runLoop() throws IOException, InterruptedException {
+        try {
+            while (!stopped) {
+                if (!startNext()) Thread.sleep(POLL_MS);
+            }
+        } finally {
+            handBack();
+        }
+    }
+
+    /**
+     * Reap dead claims, then run one job to completion, or until {@link #stop()} (the job is then
+     * handed back by {@link #close()}). @return false if nothing could start
+     */
+    public boolean runOne() throws IOException, InterruptedException {
+        if (!startNext()) return false;
+        for (Running r : running) {
+            while (!stopped) {
+                try {
+                    r.done().get(POLL_MS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException stillRunning) {
+                    // check stopped again
+                } catch (ExecutionException ignored) {
+                    break; // logged by finish()
+                }
+            }
+        }
+        return true;
+    }
+
+    public void stop() { stopped = true; }
+
+    /**
+     * One scheduling step: reap, then claim one job if a slot is free and disk allows.
+     * @return true if a job was started
+     */
+    private boolean startNext() throws IOException {
+        int reaped = spool.reap();
+        if (reaped > 0) log("requeued " + reaped + " job(s) of dead workers");
+        if (running.size() >= slots()) return false;
+        boolean ok = ExportScheduler.diskOk(List.of(Path.of(System.getProperty("java.io.tmpdir")), cache.dir(), spool.root()),
+                minFreeBytes);
+        if (ok == diskLow) {
+            diskLow = !ok;
+            log(ok ? "scratch disk ok again, claiming jobs" : "scratch disk below " + (minFreeBytes >> 20) + " MiB, not claiming");
+        }
+        if (!ok) return false;
+        Optional<RenderSpool.Claim> claim = spool.claim(name);
+        if (claim.isEmpty()) return false;
+        start(claim.get());
+        return true;
+    }
+
+    private void start(RenderSpool.Claim claim) {
+        FarmJob job = claim.job();
+        log("start " + claim.id() + " (" + job.name() + ", " + job.priority() + ", project " + job.project()
+                + ", attempt " + (claim.attempt() + 1) + ", " + (running.size() + 1) + "/" + slots() + " slots)");
+        RenderJobService.Handle h = jobs.submit(job.name(), job.toRenderJob(cache), null);
+        AtomicBoolean lost = new AtomicBoolean();
+        ScheduledFuture<?> beat = timers.scheduleWithFixedDelay(() -> {
+            try {
+                if (!spool.beat(claim, name, h.progress())) {
+                    lost.set(true);
+                    h.cancel();
+                } else if (spool.cancelRequested(claim.id())) {
+                    h.cancel();
+                }
+            } catch (IOException e) {
+                log("heartbeat failed: " + e.getMessage()); // retried next beat; stale only after STALE_MS
+            }
+        }, RenderSpool.HEARTBEAT_MS, RenderSpool.HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Running r = new Running(claim, h, lost, beat, done, System.currentTimeMillis());
+        running.add(r);
+        h.result().whenComplete((res, err) -> finish(r, res != null ? res : failure(err, System.currentTimeMillis() - r.startedAt())));
+    }
+
+    /** The result of a job whose future completed exceptionally instead of with a result. */
+    private static RenderResult failure(Throwable err, long elapsedMillis) {
+        Throwable cause = (err instanceof CompletionException && err.getCause() != null) ? err.getCause() : err;
+        if (cause instanceof CancellationException) return RenderResult.cancelled(elapsedMillis);
+        return RenderResult.failed("Export failed: " + cause, elapsedMillis);
+    }
+
+    private void finish(Running r, RenderResult res) {
+        r.beat().cancel(false);
+        try {
+            if (stopped && res.status() == RenderResult.Status.CANCELLED) {
+                if (spool.giveBack(r.claim())) log("handed back " + r.claim().id());
+            } else if (r.lost().get() || !spool.complete(r.claim(), name, res)) {
+                log("lost claim on " + r.claim().id() + " (requeued as dead); result dropped");
+            } else {
+                log(r.claim().id() + ": " + res.status() + (res.ok() ? "" : " " + firstLine(res.message())));
+            }
+        } catch (IOException e) {
+            log("could not record " + r.claim().id() + ": " + e.getMessage()); // reaped and retried later
+        } finally {
+            running.remove(r);
+            r.done().complete(null);
+        }
+    }
+
+    /** Stop running jobs and put them back in the queue for another worker. */
+    private void handBack() {
+        for (Running r : running) r.handle().cancel();
+        for (Running r : running) {
+            try {
+                r.done().get(RenderSpool.STALE_MS, TimeUnit.MILLISECONDS);
+            } catch (Exception ignored) {
+                // left claimed; reaped once its heartbeat is stale
+            }
+        }
+    }
+
+    /** Fold the ffmpeg CPU in use into the cores-per-job average. */
+    private void sample() {
+        double inUse = meter.sample();
+        int n = running.size();
+        if (n == 0 || inUse <= 0) return;
+        double perJob = inUse / n;
+        double prev = coresPerJob;
+        coresPerJob = (prev > 0) ? prev + SAMPLE_WEIGHT * (perJob - prev) : perJob;
+        if (++samples % SAVE_EVERY == 0) {
+            try {
+                spool.saveCoresPerJob(host, coresPerJob);
+            } catch (IOException e) {
+                log("could not save cores per job: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+        handBack();
+        jobs.close();
+        timers.shutdownNow();
+        try {
+            if (coresPerJob > 0) spool.saveCoresPerJob(host, coresPerJob);
+        } catch (IOException e) {
+            log("could not save cores per job: " + e.getMessage());
+        }
+    }
+
+    private void log(String msg) {
+        System.out.println("[" + name + "] " + msg);
+    }
+
+    private static String firstLine(String s) {
+        int nl = s.indexOf('\n');
+        return nl > 0 ? s.substring(0, nl) : s;
+    }
+}
@@ -0,0 +1,59 @@
+package extraordinary.render.farm;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+
+import extraordinary.render.RenderContext;
+import extraordinary.render.RenderJob;
+
+/**
+ * Runs a job on the render farm instead of in this JVM: submits it to the {@link RenderSpool}
+ * and waits for its result, so App's progress line and cancel button work as for a local export.
+ *
+ * Remote progress arrives with the heartbeats and is shown as the stage text; cancelling writes
+ * the spool's cancel marker, which the worker picks up at its next heartbeat.
+ */
+public final class SpoolSubmission implements RenderJob {
+
+    /** How often the spool is polled for a result. */
+    public static final long POLL_MS = 500;
+
+    private final RenderSpool spool;
+    private final FarmJob job;
+
+    public SpoolSubmission(RenderSpool spool, FarmJob job) {
+        this.spool = spool;
+        this.job = job;
+    }
+
+    @Override
+    public Path run(RenderContext ctx) throws Exception {
+        String id = spool.submit(job);
+        ctx.setStage("queued on farm");
+        String shown = null;
+        while (true) {
+            Optional<RenderSpool.Result> r = spool.result(id);
+            if (r.isPresent()) {
+                RenderSpool.Result res = r.get();
+                switch (res.status()) {
+                    case COMPLETED -> { return Path.of(res.output()); }
+                    case CANCELLED -> throw new CancellationException("Render cancelled");
+                    default -> throw new IOException(res.message() + " (worker " + res.worker() + ")");
+                }
+            }
+            if (ctx.isCancelled()) {
+                spool.cancel(id);
+                throw new CancellationException("Render cancelled");
+            }
+            Optional<RenderSpool.Heartbeat> hb = spool.heartbeat(id);
+            String stage = hb.map(h -> h.worker() + ": " + h.stage()).orElse(null);
+            if (stage != null && !stage.equals(shown)) {
+                ctx.setStage(stage);
+                shown = stage;
+            }
+            Thread.sleep(POLL_MS);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package extraordinary.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import extraordinary.media.MediaInfo;
+
+class SinglePassExportTest {
+
+    private static final Path WORK = Path.of("work");
+    private static final FrameTarget T = FrameTarget.LANDSCAPE;
+
+    private static RenderClip clip(String path, double in, double out) {
+        return new RenderClip(path, in, out, "");
+    }
+
+    private static SinglePassExport.Plan compile(List<RenderClip> clips) {
+        return SinglePassExport.compile(clips, T, WORK, SinglePassExport.BY_EXTENSION);
+    }
+
+    /** The chain writing {@code label}. */
+    private static FilterGraph.Chain producing(FilterGraph g, String label) {
+        for (FilterGraph.Chain c : g.chains()) if (c.outputs().contains(label)) return c;
+        return fail("no chain outputs [" + label + "] in\n" + g.render());
+    }
+
+    private static boolean hasFilter(FilterGraph g, String prefix) {
+        return g.chains().stream().flatMap(c -> c.filters().stream()).anyMatch(f -> f.startsWith(prefix));
+    }
+
+    // ---------- grouping ----------
+
+    @Test
+    void matchingClipsShareOneInput() {
+        SinglePassExport.Plan p = compile(List.of(clip("a.mp4", 0, 2), clip("b.mp4", 1, 3)));
+
+        assertEquals(1, p.inputs().size());
+        assertEquals(2, p.inputs().get(0).entries().size());
+        assertEquals(4.0, p.durationSec(), 1e-9);
+        assertEquals(List.of("v0"), producing(p.graph(), SinglePassExport.VIDEO_OUT).inputs());
+        assertEquals(List.of("null"), producing(p.graph(), SinglePassExport.VIDEO_OUT).filters());
+        assertEquals(List.of("anull"), producing(p.graph(), "acat").filters());
+        assertFalse(hasFilter(p.graph(), "concat="), "one input needs no concat filter");
+    }
+
+    @Test
+    void differentKeysConcatOneSegmentPerInput() {
+        SinglePassExport.Plan p = compile(List.of(clip("a.mp4", 0, 2), clip("b.mov", 0, 2), clip("c.mp4", 0, 2)));
+
+        assertEquals(3, p.inputs().size());
+        FilterGraph.Chain concat = producing(p.graph(), SinglePassExport.VIDEO_OUT);
+        assertEquals(List.of("concat=n=3:v=1:a=1"), concat.filters());
+        assertEquals(List.of("v0", "a0", "v1", "a1", "v2", "a2"), concat.inputs());
+        assertEquals(List.of(SinglePassExport.VIDEO_OUT, "acat"), concat.outputs());
+    }
+
+    @Test
+    void nullKeyGetsAnInputOfItsOwn() {
+        SinglePassExport.Plan p = SinglePassExport.compile(List.of(clip("a.mp4", 0, 2), clip("b.mp4", 0, 2)),
+                T, WORK, c -> null);
+        assertEquals(2, p.inputs().size());
+    }
+
+    @Test
+    void openEndedClipEndsItsRun() {
+        SinglePassExport.Plan p = compile(List.of(clip("a.mp4", 0, 0), clip("b.mp4", 0, 2)));
+        assertEquals(2, p.inputs().size());
+        assertEquals(-1, p.durationSec(), 1e-9);
+    }
+
+    // ---------- audio ----------
+
+    @Test
+    void videoRunsNormaliseTheirOwnAudio() {
+        SinglePassExport.Plan p = compile(List.of(clip("a.mp4", 0, 2)));
+        FilterGraph.Chain a0 = producing(p.graph(), "a0");
+        assertEquals(List.of("0:a"), a0.inputs());
+        assertEquals(SinglePassExport.AUDIO_NORMALISE, a0.filters());
+    }
+
+    @Test
+    void stillRunsGetSilenceOfTheirLength() {
+        SinglePassExport.Plan p = compile(List.of(clip("a.mp4", 0, 2), clip("x.png", 0, 2), clip("y.png", 0, 3)));
+
+        assertEquals(2, p.inputs().size());
+        FilterGraph.Chain a1 = producing(p.graph(), "a1");
+        assertEquals(List.of(), a1.inputs());
+        assertEquals(List.of("anullsrc=r=48000:cl=stereo", "atrim=duration=5.000"), a1.filters());
+        assertTrue(producing(p.graph(), "v1").filters().containsAll(StillImages.holdFilters(3, 5)));
+        assertEquals(List.of("0:a"), producing(p.graph(), "a0").inputs());
+    }
+
+    @Test
+    void narrationIsDuckedUnderTheClipAudio() {
+        SinglePassExport.Plan p = compile(List.of(clip("a.mp4", 0, 2), clip("b.mov", 0, 2)));
+
+        assertEquals(List.of("2:a"), producing(p.graph(), "nar").inputs());
+        FilterGraph.Chain mix = producing(p.graph(), SinglePassExport.AUDIO_OUT);
+        assertEquals(List.of("acat", "nar"), mix.inputs());
+        assertEquals(List.of(Filters.DUCK), mix.filters());
+    }
+
+    @Test
+    void bedSplitsTheClipAudioBeforeDucking() {
+        SinglePassExport.Plan p = SinglePassExport.compile(List.of(clip("a.mp4", 0, 2)), T, WORK,
+                SinglePassExport.BY_EXTENSION, true);
+
+        FilterGraph.Chain split = producing(p.graph(), SinglePassExport.BED_OUT);
+        assertEquals(List.of("acat"), split.inputs());
+        assertEquals(List.of("aduck", SinglePassExport.BED_OUT), split.outputs());
+        assertEquals(List.of("aduck", "nar"), producing(p.graph(), SinglePassExport.AUDIO_OUT).inputs());
+    }
+
+    // ---------- video ----------
+
+    @Test
+    void subtitlesApplyOnceAfterTheConcat() {
+        SinglePassExport.Plan p = SinglePassExport.compile(List.of(clip("a.mp4", 0, 2), clip("b.mov", 0, 2)),
+                T, WORK, SinglePassExport.BY_EXTENSION, false, "subtitles=f.ass");
+
+        assertEquals(List.of("vsub", "acat"), producing(p.graph(), "acat").outputs());
+        FilterGraph.Chain sub = producing(p.graph(), SinglePassExport.VIDEO_OUT);
+        assertEquals(List.of("vsub"), sub.inputs());
+        assertEquals(List.of("subtitles=f.ass"), sub.filters());
+    }
+
+    @Test
+    void captionsAreTimedWithinTheirRun() {
+        SinglePassExport.Plan p = compile(List.of(clip("a.mp4", 0, 2), new RenderClip("b.mp4", 0, 3, "Hello")));
+
+        assertEquals(Map.of("caption-00000.txt", "Hello"), p.captions());
+        String drawtext = Filters.drawtextFile(WORK.resolve("caption-00000.txt"), 2, 5);
+        assertTrue(producing(p.graph(), "v0").filters().contains(drawtext));
+    }
+
+    @Test
+    void everyRunIsConformedToTheTarget() {
+        SinglePassExport.Plan p = compile(List.of(clip("a.mp4", 0, 2), clip("b.mov", 0, 2)));
+        for (String v : List.of("v0", "v1")) {
+            List<String> f = producing(p.graph(), v).filters();
+            assertEquals("fps=" + T.fps() + ":start_time=0", f.get(0));
+            assertTrue(f.contains(Filters.scalePad(T)));
+        }
+    }
+
+    // ---------- stream keys ----------
+
+    private static MediaInfo info(String vcodec, int w, String acodec, int rate) {
+        return new MediaInfo(10,
+                new MediaInfo.VideoStream(vcodec, "High", w, w * 9 / 16, 30, "yuv420p", 0, "1:1", 40, "progressive", 2),
+                new MediaInfo.AudioStream(acodec, rate, 2), new double[0]);
+    }
+
+    @Test
+    void byStreamsGroupsOnlyMatchingStreams() {
+        Map<String, MediaInfo> probes = Map.of(
+                "a.mp4", info("h264", 1920, "aac", 48000),
+                "b.mp4", info("h264", 1920, "aac", 48000),
+                "c.mp4", info("h264", 1280, "aac", 48000),
+                "d.mp4", info("h264", 1920, "aac", 44100));
+        Function<RenderClip, String> key = SinglePassExport.byStreams(p -> probes.get(p.toString()));
+
+        assertEquals(key.apply(clip("a.mp4", 0, 1)), key.apply(clip("b.mp4", 0, 1)));
+        assertNotEquals(key.apply(clip("a.mp4", 0, 1)), key.apply(clip("c.mp4", 0, 1)));
+        assertNotEquals(key.apply(clip("a.mp4", 0, 1)), key.apply(clip("d.mp4", 0, 1)));
+        assertNull(key.apply(clip("unprobed.mp4", 0, 1)));
+        assertEquals("png", key.apply(clip("x.png", 0, 1)));
+    }
+}
@@ -0,0 +1,114 @@
+package extraordinary.render.farm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import extraordinary.render.farm.ExportScheduler.Waiting;
+
+class ExportSchedulerTest {
+
+    private static final long NOW = 10 * ExportScheduler.SHARE_WINDOW_MS;
+
+    private static Waiting job(String id, ExportPriority p, String project, double weight, long waitedMs) {
+        return new Waiting(id, p, project, weight, NOW - waitedMs);
+    }
+
+    private static List<String> order(Map<String, Double> usage, Waiting... waiting) {
+        return ExportScheduler.order(List.of(waiting), usage, NOW).stream().map(Waiting::id).toList();
+    }
+
+    // ---------- priority and aging ----------
+
+    @Test
+    void higherClassGoesFirst() {
+        assertEquals(List.of("urgent", "shorts", "long"), order(Map.of(),
+                job("long", ExportPriority.LONG, "p", 1, 0),
+                job("shorts", ExportPriority.SHORTS, "p", 1, 0),
+                job("urgent", ExportPriority.URGENT, "p", 1, 0)));
+    }
+
+    @Test
+    void waitingRaisesOneClassPerAgingStep() {
+        Waiting longJob = job("long", ExportPriority.LONG, "p", 1, 2 * ExportScheduler.AGING_MS);
+        assertEquals(ExportPriority.SHORTS.ordinal(), ExportScheduler.effectiveClass(longJob, NOW));
+
+        // a steady stream of fresh Shorts delays the long export but does not starve it
+        assertEquals(List.of("long", "shorts"), order(Map.of(),
+                job("shorts", ExportPriority.SHORTS, "p", 1, 0),
+                job("long", ExportPriority.LONG, "p", 1, 3 * ExportScheduler.AGING_MS)));
+        assertEquals(List.of("shorts", "long"), order(Map.of(),
+                job("shorts", ExportPriority.SHORTS, "p", 1, 0),
+                job("long", ExportPriority.LONG, "p", 1, ExportScheduler.AGING_MS)));
+    }
+
+    @Test
+    void agingStopsAtTheTopClass() {
+        Waiting old = job("old", ExportPriority.SHORTS, "p", 1, 100 * ExportScheduler.AGING_MS);
+        assertEquals(0, ExportScheduler.effectiveClass(old, NOW));
+    }
+
+    @Test
+    void jobsFromTheFutureDoNotAgeBackwards() {
+        Waiting skewed = new Waiting("skewed", ExportPriority.LONG, "p", 1, NOW + ExportScheduler.AGING_MS);
+        assertEquals(ExportPriority.LONG.ordinal(), ExportScheduler.effectiveClass(skewed, NOW));
+    }
+
+    // ---------- fair share ----------
+
+    @Test
+    void projectWithLessRecentOutputGoesFirst() {
+        assertEquals(List.of("b", "a"), order(Map.of("A", 300.0, "B", 30.0),
+                job("a", ExportPriority.SHORTS, "A", 1, 60_000),
+                job("b", ExportPriority.SHORTS, "B", 1, 0)));
+    }
+
+    @Test
+    void shareIsPerUnitOfWeight() {
+        // A: 300 s / weight 10 = 30 per unit; B: 60 s / weight 1 = 60 per unit
+        assertEquals(List.of("a", "b"), order(Map.of("A", 300.0, "B", 60.0),
+                job("a", ExportPriority.SHORTS, "A", 10, 0),
+                job("b", ExportPriority.SHORTS, "B", 1, 60_000)));
+    }
+
+    @Test
+    void projectWithoutUsageCountsAsZero() {
+        assertEquals(List.of("new", "busy"), order(Map.of("busy", 1.0),
+                job("busy", ExportPriority.SHORTS, "busy", 1, 60_000),
+                job("new", ExportPriority.SHORTS, "new", 1, 0)));
+    }
+
+    @Test
+    void classBeatsFairShare() {
+        assertEquals(List.of("a", "b"), order(Map.of("A", 1000.0),
+                job("a", ExportPriority.URGENT, "A", 1, 0),
+                job("b", ExportPriority.SHORTS, "B", 1, 0)));
+    }
+
+    @Test
+    void tiesGoOldestFirstThenById() {
+        assertEquals(List.of("older", "x", "y"), order(Map.of(),
+                job("y", ExportPriority.SHORTS, "p", 1, 0),
+                job("x", ExportPriority.SHORTS, "p", 1, 0),
+                job("older", ExportPriority.SHORTS, "p", 1, 1)));
+    }
+
+    // ---------- charge and admission ----------
+
+    @Test
+    void unknownLengthIsChargedAMinute() {
+        assertEquals(ExportScheduler.UNKNOWN_SEC, ExportScheduler.charge(-1));
+        assertEquals(42.0, ExportScheduler.charge(42));
+    }
+
+    @Test
+    void slotsFollowMeasuredCoresPerJob() {
+        assertEquals(1, ExportScheduler.slots(16, 0, 8));   // not measured yet
+        assertEquals(4, ExportScheduler.slots(16, 4, 8));
+        assertEquals(8, ExportScheduler.slots(16, 1, 8));   // capped by the worker limit
+        assertEquals(1, ExportScheduler.slots(4, 6, 8));    // at least one
+    }
+}